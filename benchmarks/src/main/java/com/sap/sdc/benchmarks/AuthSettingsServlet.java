@@ -0,0 +1,58 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.benchmarks;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.chemistry.opencmis.commons.impl.json.JSONArray;
+import org.apache.chemistry.opencmis.commons.impl.json.JSONObject;
+
+/**
+ * Serves {@code /mcm/public/rest/v1/settings/auth}.
+ * <p>
+ * The stand-in only supports basic authentication, so the list contains no
+ * OAuth entry and the login tab falls back to username and password.
+ */
+public class AuthSettingsServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		JSONObject basic = new JSONObject();
+		basic.put("type", "basic");
+
+		JSONArray authentication = new JSONArray();
+		authentication.add(basic);
+
+		JSONObject entry = new JSONObject();
+		entry.put("authentication", authentication);
+
+		JSONArray result = new JSONArray();
+		result.add(entry);
+
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		result.writeJSONString(response.getWriter());
+		response.getWriter().flush();
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.ContentStream;
+import org.apache.chemistry.opencmis.commons.enums.VersioningState;
+
+import com.sap.sdc.tck.corprep.tests.TckSessionFactory;
+
+/**
+ * An empty {@link StandInServer} with a benchmark fixture folder.
+ * <p>
+ * The repository is reachable over the Browser binding at
+ * {@code http://localhost:<port>/mcm/b/json}, which is the URL layout of SAP
+ * Document Center. Clients therefore go through the same HTTP, JSON parsing
+ * and object conversion code as against a real server, without any network
+ * access.
+ */
+public class EmbeddedRepository {
+
+	public static final String FIXTURE_FOLDER = "sdc-benchmark";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private StandInServer server;
+	private Folder fixtureFolder;
+	private final List<Document> documents = new ArrayList<Document>();
+
+	/**
+	 * Starts the server on a free local port.
+	 */
+	public void start() throws Exception {
+		server = new StandInServer();
+		server.setDepth(0);
+		server.setDocumentsPerFolder(0);
+		server.start();
+	}
+
+	public void stop() throws Exception {
+		if (server != null) {
+			server.stop();
+			server = null;
+		}
+	}
+
+	/**
+	 * Returns the TCK session parameters for this server.
+	 */
+	public Map<String, String> getParameters() {
+		return server.getParameters();
+	}
+
+	/**
+	 * Creates a session the same way the TCK tests do.
+	 */
+	public Session createSession() {
+		return TckSessionFactory.createSession(getParameters());
+	}
+
+	/**
+	 * Creates the fixture folder with the given number of small documents.
+	 */
+	public void createFixture(Session session, int documentCount) {
+		Map<String, Object> folderProperties = new HashMap<String, Object>();
+		folderProperties.put(PropertyIds.NAME, FIXTURE_FOLDER);
+		folderProperties.put(PropertyIds.OBJECT_TYPE_ID, "cmis:folder");
+		fixtureFolder = session.getRootFolder().createFolder(folderProperties);
+
+		for (int i = 0; i < documentCount; i++) {
+			String name = "document-" + i + ".txt";
+			byte[] content = ("Content of " + name).getBytes(UTF8);
+
+			Map<String, Object> properties = new HashMap<String, Object>();
+			properties.put(PropertyIds.NAME, name);
+			properties.put(PropertyIds.OBJECT_TYPE_ID, "cmis:document");
+
+			ContentStream contentStream = session.getObjectFactory().createContentStream(name, content.length,
+					"text/plain", new ByteArrayInputStream(content));
+
+			documents.add(fixtureFolder.createDocument(properties, contentStream, VersioningState.NONE));
+		}
+	}
+
+	public Folder getFixtureFolder() {
+		return fixtureFolder;
+	}
+
+	public List<Document> getDocuments() {
+		return documents;
+	}
+}
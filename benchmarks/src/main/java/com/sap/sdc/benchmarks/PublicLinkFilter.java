@@ -0,0 +1,86 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.chemistry.opencmis.commons.impl.Base64;
+
+/**
+ * Accepts public share requests.
+ * <p>
+ * SDC clients open public shares with the {@code x-public-link} header (and
+ * {@code x-pwd} for password protected shares) instead of user credentials.
+ * This filter maps such requests to the user {@code public-link:<link>}, so
+ * the InMemory repository handles them like any other request. An empty link
+ * is rejected with 401.
+ */
+public class PublicLinkFilter implements Filter {
+
+	public static final String HEADER_PUBLIC_LINK = "x-public-link";
+	public static final String USER_PREFIX = "public-link:";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		HttpServletRequest httpRequest = (HttpServletRequest) request;
+
+		String publicLink = httpRequest.getHeader(HEADER_PUBLIC_LINK);
+		if (publicLink == null) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		if (publicLink.trim().isEmpty()) {
+			((HttpServletResponse) response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid public link");
+			return;
+		}
+
+		final String authorization = "Basic "
+				+ Base64.encodeBytes((USER_PREFIX + publicLink.trim() + ":").getBytes(UTF8));
+
+		chain.doFilter(new HttpServletRequestWrapper(httpRequest) {
+			@Override
+			public String getHeader(String name) {
+				if ("Authorization".equalsIgnoreCase(name)) {
+					return authorization;
+				}
+				return super.getHeader(name);
+			}
+		}, response);
+	}
+
+	@Override
+	public void destroy() {
+	}
+}
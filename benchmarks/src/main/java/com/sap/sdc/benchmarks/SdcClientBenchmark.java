@@ -0,0 +1,135 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.benchmarks;
+
+import static org.apache.chemistry.opencmis.tck.impl.AbstractSessionTest.SELECT_ALL_NO_CACHE_OC;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.QueryResult;
+import org.apache.chemistry.opencmis.client.api.QueryStatement;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the client side of the operations that the SDC tests use.
+ * <p>
+ * All calls go to an {@link EmbeddedRepository}, so the numbers contain the
+ * HTTP round trip on the loopback interface, JSON parsing and object
+ * conversion, but no network latency. Run with
+ * {@code java -jar target/benchmarks.jar -prof gc} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SdcClientBenchmark {
+
+	private static final String DOCUMENT_QUERY = "SELECT * FROM cmis:document WHERE cmis:objectId IN (?)";
+	private static final String FOLDER_QUERY = "SELECT * FROM cmis:folder WHERE cmis:objectId IN (?)";
+
+	@Param({ "100" })
+	public int children;
+
+	private EmbeddedRepository repository;
+	private Session session;
+	private String folderPath;
+	private String folderId;
+	private String documentPath;
+	private String documentId;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = new EmbeddedRepository();
+		repository.start();
+
+		session = repository.createSession();
+		repository.createFixture(session, children);
+
+		folderPath = repository.getFixtureFolder().getPath();
+		folderId = repository.getFixtureFolder().getId();
+
+		Document document = repository.getDocuments().get(children / 2);
+		documentPath = folderPath + "/" + document.getName();
+		documentId = document.getId();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		repository.stop();
+	}
+
+	@Benchmark
+	public CmisObject getObjectByPathFolder() {
+		return session.getObjectByPath(folderPath, SELECT_ALL_NO_CACHE_OC);
+	}
+
+	@Benchmark
+	public CmisObject getObjectByPathDocument() {
+		return session.getObjectByPath(documentPath, SELECT_ALL_NO_CACHE_OC);
+	}
+
+	@Benchmark
+	public void getChildren(Blackhole blackhole) {
+		for (CmisObject child : repository.getFixtureFolder().getChildren(SELECT_ALL_NO_CACHE_OC)) {
+			blackhole.consume(child.getName());
+		}
+	}
+
+	@Benchmark
+	public void documentIdQuery(Blackhole blackhole) {
+		runObjectIdQuery(DOCUMENT_QUERY, blackhole, documentId);
+	}
+
+	@Benchmark
+	public void documentIdQueryTwice(Blackhole blackhole) {
+		runObjectIdQuery(DOCUMENT_QUERY, blackhole, documentId, documentId);
+	}
+
+	@Benchmark
+	public void folderIdQuery(Blackhole blackhole) {
+		runObjectIdQuery(FOLDER_QUERY, blackhole, folderId);
+	}
+
+	/**
+	 * Runs a query the same way {@code SDCSyncTest} does.
+	 */
+	private void runObjectIdQuery(String stmt, Blackhole blackhole, String... objectIds) {
+		QueryStatement queryStmt = session.createQueryStatement(stmt);
+		queryStmt.setString(1, objectIds);
+
+		for (QueryResult qr : session.query(queryStmt.toQueryString(), false)) {
+			blackhole.consume(qr.getPropertyByQueryName("cmis:objectId"));
+		}
+	}
+}
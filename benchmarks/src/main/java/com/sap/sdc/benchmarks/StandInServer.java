@@ -0,0 +1,381 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.DispatcherType;
+
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.SessionParameter;
+import org.apache.chemistry.opencmis.commons.data.ContentStream;
+import org.apache.chemistry.opencmis.commons.enums.BindingType;
+import org.apache.chemistry.opencmis.commons.enums.VersioningState;
+import org.apache.chemistry.opencmis.commons.impl.IOUtils;
+import org.apache.chemistry.opencmis.server.impl.CmisRepositoryContextListener;
+import org.apache.chemistry.opencmis.server.impl.browser.CmisBrowserBindingServlet;
+import org.apache.chemistry.opencmis.server.shared.AbstractCmisHttpServlet;
+import org.apache.chemistry.opencmis.tck.impl.TestParameters;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.sap.sdc.tck.corprep.tests.TckSessionFactory;
+
+/**
+ * A local stand-in for a SAP Document Center repository.
+ * <p>
+ * The server runs in-process in an embedded Jetty and uses the OpenCMIS
+ * InMemory repository. It provides what the SDC clients and the TCK expect:
+ * <ul>
+ * <li>the Browser binding at {@code /mcm/b/json}</li>
+ * <li>{@code /mcm/public/rest/v1/settings/auth}</li>
+ * <li>{@code SAPSEARCH} queries</li>
+ * <li>the {@code myDocuments}, {@code sharing}, {@code favorites} and
+ * {@code recycleBinHome} repository extensions</li>
+ * <li>public share requests with the {@code x-public-link} header</li>
+ * </ul>
+ * A tree of folders and documents with a configurable size is created below
+ * "My Documents" at start-up. The TCK uses this folder as test folder.
+ */
+public class StandInServer {
+
+	public static final String USER = "standin";
+	public static final String PASSWORD = "standin";
+
+	public static final String MY_DOCUMENTS = "My Documents";
+
+	private static final String CONFIG_FILE = "/inmemory-repository.properties";
+	private static final String[] SEARCH_WORDS = { "test", "red", "blue", "green", "report", "phrase" };
+
+	private int port = 0;
+	private int depth = 2;
+	private int foldersPerFolder = 5;
+	private int documentsPerFolder = 20;
+	private int contentSize = 1024;
+	private int fillThreads = 4;
+
+	private Server server;
+	private StandInServiceFactory factory;
+	private String url;
+	private final Map<String, String> homeFolders = new LinkedHashMap<String, String>();
+	private final AtomicLong documentCount = new AtomicLong();
+	private int folderCount;
+
+	/**
+	 * Sets the port. 0 selects a free port.
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Sets the number of folder levels below "My Documents".
+	 */
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	public void setFoldersPerFolder(int foldersPerFolder) {
+		this.foldersPerFolder = foldersPerFolder;
+	}
+
+	public void setDocumentsPerFolder(int documentsPerFolder) {
+		this.documentsPerFolder = documentsPerFolder;
+	}
+
+	/**
+	 * Sets the content size of each document in bytes.
+	 */
+	public void setContentSize(int contentSize) {
+		this.contentSize = contentSize;
+	}
+
+	/**
+	 * Starts the server and creates the tree.
+	 */
+	public void start() throws Exception {
+		factory = new StandInServiceFactory();
+		factory.init(loadConfig());
+
+		server = new Server();
+		ServerConnector connector = new ServerConnector(server);
+		connector.setHost("localhost");
+		connector.setPort(port);
+		server.addConnector(connector);
+
+		ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+		context.setContextPath("/mcm");
+		context.setAttribute(CmisRepositoryContextListener.SERVICES_FACTORY, factory);
+
+		ServletHolder browser = new ServletHolder(new CmisBrowserBindingServlet());
+		browser.setInitParameter(AbstractCmisHttpServlet.PARAM_CMIS_VERSION, "1.1");
+		browser.setInitParameter(AbstractCmisHttpServlet.PARAM_CALL_CONTEXT_HANDLER,
+				"org.apache.chemistry.opencmis.server.shared.BasicAuthCallContextHandler");
+		context.addServlet(browser, "/b/json/*");
+		context.addFilter(new FilterHolder(new PublicLinkFilter()), "/b/json/*", EnumSet.of(DispatcherType.REQUEST));
+
+		context.addServlet(new ServletHolder(new AuthSettingsServlet()), "/public/rest/v1/settings/auth");
+
+		server.setHandler(context);
+		server.start();
+
+		url = "http://localhost:" + connector.getLocalPort() + "/mcm/b/json";
+
+		createTree();
+	}
+
+	public void stop() throws Exception {
+		if (server != null) {
+			server.stop();
+			server = null;
+		}
+		if (factory != null) {
+			factory.destroy();
+			factory = null;
+		}
+	}
+
+	/**
+	 * Waits until the server has been stopped.
+	 */
+	public void join() throws InterruptedException {
+		server.join();
+	}
+
+	/**
+	 * Returns the Browser binding URL.
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Returns the TCK session parameters for this server.
+	 */
+	public Map<String, String> getParameters() {
+		Map<String, String> parameters = new LinkedHashMap<String, String>();
+		parameters.put(SessionParameter.BINDING_TYPE, BindingType.BROWSER.value());
+		parameters.put(SessionParameter.BROWSER_URL, url);
+		parameters.put(SessionParameter.USER, USER);
+		parameters.put(SessionParameter.PASSWORD, PASSWORD);
+		parameters.put(TestParameters.DEFAULT_TEST_FOLDER_PARENT, "/" + MY_DOCUMENTS);
+
+		return parameters;
+	}
+
+	/**
+	 * Returns the home folder IDs by extension name.
+	 */
+	public Map<String, String> getHomeFolders() {
+		return homeFolders;
+	}
+
+	public int getFolderCount() {
+		return folderCount;
+	}
+
+	public long getDocumentCount() {
+		return documentCount.get();
+	}
+
+	private Map<String, String> loadConfig() throws Exception {
+		Properties properties = new Properties();
+
+		InputStream stream = StandInServer.class.getResourceAsStream(CONFIG_FILE);
+		try {
+			properties.load(stream);
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+
+		Map<String, String> result = new HashMap<String, String>();
+		for (String key : properties.stringPropertyNames()) {
+			result.put(key, properties.getProperty(key));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates the home folders and the tree below "My Documents". The folders
+	 * are created first, then the documents are created in parallel.
+	 */
+	private void createTree() throws Exception {
+		final Session session = TckSessionFactory.createSession(getParameters());
+		Folder root = session.getRootFolder();
+
+		Folder myDocuments = createFolder(root, MY_DOCUMENTS);
+		homeFolders.put("myDocuments", myDocuments.getId());
+		homeFolders.put("sharing", createFolder(root, "Shared").getId());
+		homeFolders.put("favorites", createFolder(root, "Favorites").getId());
+		homeFolders.put("recycleBinHome", createFolder(root, "Recycle Bin").getId());
+		factory.setHomeFolders(homeFolders);
+
+		List<Folder> folders = new ArrayList<Folder>();
+		folders.add(myDocuments);
+		List<Folder> level = folders;
+		for (int d = 0; d < depth; d++) {
+			List<Folder> nextLevel = new ArrayList<Folder>();
+			for (Folder parent : level) {
+				for (int f = 0; f < foldersPerFolder; f++) {
+					nextLevel.add(createFolder(parent, "folder " + d + "-" + f + " " + word(f)));
+				}
+			}
+			folders.addAll(nextLevel);
+			level = nextLevel;
+		}
+		folderCount = folders.size();
+
+		if (documentsPerFolder == 0) {
+			return;
+		}
+
+		final byte[] content = createContent();
+
+		ExecutorService executor = Executors.newFixedThreadPool(fillThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final Folder folder : folders) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						for (int i = 0; i < documentsPerFolder; i++) {
+							createDocument(session, folder, word(i) + " document " + i + ".txt", content);
+						}
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Folder createFolder(Folder parent, String name) {
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(PropertyIds.NAME, name);
+		properties.put(PropertyIds.OBJECT_TYPE_ID, "cmis:folder");
+
+		return parent.createFolder(properties);
+	}
+
+	private void createDocument(Session session, Folder parent, String name, byte[] content) {
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(PropertyIds.NAME, name);
+		properties.put(PropertyIds.OBJECT_TYPE_ID, "cmis:document");
+
+		ContentStream contentStream = session.getObjectFactory().createContentStream(name, content.length,
+				"text/plain", new ByteArrayInputStream(content));
+
+		session.createDocument(properties, parent, contentStream, VersioningState.NONE);
+		documentCount.incrementAndGet();
+	}
+
+	private byte[] createContent() {
+		byte[] content = new byte[contentSize];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) ('a' + (i % 26));
+		}
+
+		return content;
+	}
+
+	private static String word(int i) {
+		return SEARCH_WORDS[i % SEARCH_WORDS.length];
+	}
+
+	/**
+	 * Starts a stand-in server and keeps it running.
+	 */
+	public static void main(String[] args) throws Exception {
+		StandInServer server = new StandInServer();
+		if (!configure(server, args, true)) {
+			return;
+		}
+
+		server.start();
+
+		System.out.println("SAP Document Center stand-in repository");
+		System.out.println("Folders: " + server.getFolderCount() + ", documents: " + server.getDocumentCount());
+		System.out.println();
+		for (Map.Entry<String, String> parameter : server.getParameters().entrySet()) {
+			System.out.println(parameter.getKey() + "=" + parameter.getValue());
+		}
+
+		server.join();
+	}
+
+	/**
+	 * Applies the {@code -standin-...} arguments to a server. Returns
+	 * {@code false} if an argument is invalid. Other arguments are rejected
+	 * if {@code strict} is set and ignored otherwise.
+	 */
+	static boolean configure(StandInServer server, String[] args, boolean strict) {
+		for (String arg : args) {
+			try {
+				if (arg.startsWith("-standin-port=")) {
+					server.setPort(Integer.parseInt(arg.substring(14)));
+				} else if (arg.startsWith("-standin-depth=")) {
+					server.setDepth(Integer.parseInt(arg.substring(15)));
+				} else if (arg.startsWith("-standin-folders=")) {
+					server.setFoldersPerFolder(Integer.parseInt(arg.substring(17)));
+				} else if (arg.startsWith("-standin-documents=")) {
+					server.setDocumentsPerFolder(Integer.parseInt(arg.substring(19)));
+				} else if (arg.startsWith("-standin-content-size=")) {
+					server.setContentSize(Integer.parseInt(arg.substring(22)));
+				} else if (strict) {
+					System.err.println("Unknown argument '" + arg + "'.");
+					printUsage();
+					return false;
+				}
+			} catch (NumberFormatException e) {
+				System.err.println("Invalid number: " + arg);
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	static void printUsage() {
+		System.out.println("Stand-in options:\n");
+		System.out.println(" -standin-port=<port>           HTTP port (default is a free port)");
+		System.out.println(" -standin-depth=<n>             folder levels below \"My Documents\" (default is 2)");
+		System.out.println(" -standin-folders=<n>           subfolders per folder (default is 5)");
+		System.out.println(" -standin-documents=<n>         documents per folder (default is 20)");
+		System.out.println(" -standin-content-size=<bytes>  content size of each document (default is 1024)");
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.benchmarks;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.chemistry.opencmis.commons.data.CmisExtensionElement;
+import org.apache.chemistry.opencmis.commons.data.ExtensionsData;
+import org.apache.chemistry.opencmis.commons.data.ObjectList;
+import org.apache.chemistry.opencmis.commons.data.RepositoryInfo;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.CmisExtensionElementImpl;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.RepositoryInfoImpl;
+import org.apache.chemistry.opencmis.commons.server.CallContext;
+import org.apache.chemistry.opencmis.commons.server.CmisService;
+import org.apache.chemistry.opencmis.inmemory.server.InMemoryServiceFactoryImpl;
+import org.apache.chemistry.opencmis.server.support.wrapper.AbstractCmisServiceWrapper;
+
+/**
+ * InMemory service factory that behaves like SAP Document Center where the
+ * SDC clients depend on it.
+ * <p>
+ * The repository info contains the {@code myDocuments}, {@code sharing},
+ * {@code favorites} and {@code recycleBinHome} extensions with the IDs of the
+ * home folders, and {@code SAPSEARCH} statements are translated into CMIS
+ * queries.
+ */
+public class StandInServiceFactory extends InMemoryServiceFactoryImpl {
+
+	public static final String EXTENSION_NAMESPACE = "http://www.sap.com/mcm/cmis";
+
+	private static final Pattern SAPSEARCH_PATTERN = Pattern.compile(
+			"\\s*SAPSEARCH\\s+INTREE\\s+'((?:[^'\\\\]|\\\\.)*)'\\s+FORTYPE\\s+(\\S+)\\s+SEARCHTERM\\s+(.+)",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private volatile Map<String, String> homeFolders = Collections.emptyMap();
+
+	/**
+	 * Sets the home folder IDs by extension name.
+	 */
+	public void setHomeFolders(Map<String, String> homeFolders) {
+		this.homeFolders = new LinkedHashMap<String, String>(homeFolders);
+	}
+
+	@Override
+	public CmisService getService(CallContext context) {
+		return new StandInService(super.getService(context), homeFolders);
+	}
+
+	/**
+	 * Translates a {@code SAPSEARCH} statement into a CMIS query. The search
+	 * terms are matched against {@code cmis:name}. A quoted phrase is one
+	 * term, otherwise each word is a term and one matching term is enough.
+	 * Returns {@code null} if the statement is not a {@code SAPSEARCH}
+	 * statement.
+	 */
+	public static String translateSapSearch(String statement) {
+		Matcher m = SAPSEARCH_PATTERN.matcher(statement);
+		if (!m.matches()) {
+			return null;
+		}
+
+		String folderId = m.group(1);
+		String type = m.group(2);
+		String searchTerm = m.group(3).trim();
+
+		List<String> terms = new ArrayList<String>();
+		if (searchTerm.length() > 1 && searchTerm.startsWith("\"") && searchTerm.endsWith("\"")) {
+			terms.add(searchTerm.substring(1, searchTerm.length() - 1));
+		} else {
+			for (String term : searchTerm.split("\\s+")) {
+				terms.add(term);
+			}
+		}
+
+		StringBuilder sb = new StringBuilder(128);
+		sb.append("SELECT * FROM ").append(type);
+		sb.append(" WHERE IN_TREE('").append(folderId).append("') AND (");
+		for (int i = 0; i < terms.size(); i++) {
+			if (i > 0) {
+				sb.append(" OR ");
+			}
+			sb.append("cmis:name LIKE '%").append(escapeLike(terms.get(i))).append("%'");
+		}
+		sb.append(')');
+
+		return sb.toString();
+	}
+
+	private static String escapeLike(String term) {
+		StringBuilder sb = new StringBuilder(term.length() + 8);
+		for (char c : term.toCharArray()) {
+			if (c == '\'' || c == '\\' || c == '%' || c == '_') {
+				sb.append('\\');
+			}
+			sb.append(c);
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Adds the SDC specifics to an InMemory service.
+	 */
+	private static class StandInService extends AbstractCmisServiceWrapper {
+
+		private final Map<String, String> homeFolders;
+
+		public StandInService(CmisService service, Map<String, String> homeFolders) {
+			super(service);
+			this.homeFolders = homeFolders;
+		}
+
+		@Override
+		public List<RepositoryInfo> getRepositoryInfos(ExtensionsData extension) {
+			List<RepositoryInfo> result = new ArrayList<RepositoryInfo>();
+			for (RepositoryInfo ri : super.getRepositoryInfos(extension)) {
+				result.add(addHomeFolders(ri));
+			}
+
+			return result;
+		}
+
+		@Override
+		public RepositoryInfo getRepositoryInfo(String repositoryId, ExtensionsData extension) {
+			return addHomeFolders(super.getRepositoryInfo(repositoryId, extension));
+		}
+
+		@Override
+		public ObjectList query(String repositoryId, String statement, Boolean searchAllVersions,
+				Boolean includeAllowableActions, IncludeRelationships includeRelationships, String renditionFilter,
+				BigInteger maxItems, BigInteger skipCount, ExtensionsData extension) {
+			String cmisStatement = statement;
+			if (statement != null && statement.trim().toUpperCase().startsWith("SAPSEARCH")) {
+				cmisStatement = translateSapSearch(statement);
+				if (cmisStatement == null) {
+					throw new CmisInvalidArgumentException("Invalid SAPSEARCH statement: " + statement);
+				}
+			}
+
+			return super.query(repositoryId, cmisStatement, searchAllVersions, includeAllowableActions,
+					includeRelationships, renditionFilter, maxItems, skipCount, extension);
+		}
+
+		private RepositoryInfo addHomeFolders(RepositoryInfo ri) {
+			if (ri == null || homeFolders.isEmpty()) {
+				return ri;
+			}
+
+			RepositoryInfoImpl result = new RepositoryInfoImpl(ri);
+
+			List<CmisExtensionElement> extensions = new ArrayList<CmisExtensionElement>();
+			if (ri.getExtensions() != null) {
+				extensions.addAll(ri.getExtensions());
+			}
+			for (Map.Entry<String, String> homeFolder : homeFolders.entrySet()) {
+				extensions.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, homeFolder.getKey(), null,
+						homeFolder.getValue()));
+			}
+			result.setExtensions(extensions);
+
+			return result;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sap.sdc.tck.corprep.tests.ConsoleRunner;
+
+/**
+ * Runs the TCK console runner against an in-process {@link StandInServer}.
+ * <p>
+ * The arguments are the same as for {@code runtck}, except that there is no
+ * session parameters file. The {@code -standin-...} options set the size of
+ * the tree, and {@code -standin-parameter=<key>=<value>} adds a session
+ * parameter. Example:
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.sap.sdc.benchmarks.StandInTckRunner -standin-depth=3 -parallel=4 all
+ * </pre>
+ */
+public class StandInTckRunner {
+
+	private static final String PARAMETER_OPTION = "-standin-parameter=";
+
+	public static void main(String[] args) throws Exception {
+		List<String> runnerOptions = new ArrayList<String>();
+		List<String> standInOptions = new ArrayList<String>();
+		Map<String, String> extraParameters = new LinkedHashMap<String, String>();
+		List<String> rest = new ArrayList<String>();
+
+		for (String arg : args) {
+			if (arg.startsWith(PARAMETER_OPTION)) {
+				String parameter = arg.substring(PARAMETER_OPTION.length());
+				int eq = parameter.indexOf('=');
+				if (eq < 1) {
+					System.err.println("Invalid parameter: " + arg);
+					return;
+				}
+				extraParameters.put(parameter.substring(0, eq), parameter.substring(eq + 1));
+			} else if (arg.startsWith("-standin-")) {
+				standInOptions.add(arg);
+			} else if (arg.startsWith("-") && rest.isEmpty()) {
+				runnerOptions.add(arg);
+			} else {
+				rest.add(arg);
+			}
+		}
+
+		StandInServer server = new StandInServer();
+		if (!StandInServer.configure(server, standInOptions.toArray(new String[standInOptions.size()]), true)) {
+			return;
+		}
+
+		System.out.println("Starting stand-in repository...");
+		server.start();
+		System.out.println("Stand-in repository at " + server.getUrl() + " with " + server.getFolderCount()
+				+ " folders and " + server.getDocumentCount() + " documents.\n");
+
+		File parametersFile = File.createTempFile("standin", ".parameters");
+		parametersFile.deleteOnExit();
+
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(parametersFile),
+				"UTF-8"));
+		try {
+			Map<String, String> parameters = server.getParameters();
+			parameters.putAll(extraParameters);
+			for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+				writer.println(parameter.getKey() + "=" + parameter.getValue());
+			}
+		} finally {
+			writer.close();
+		}
+
+		List<String> runnerArgs = new ArrayList<String>(runnerOptions);
+		runnerArgs.add(parametersFile.getAbsolutePath());
+		runnerArgs.addAll(rest);
+
+		ConsoleRunner.main(runnerArgs.toArray(new String[runnerArgs.size()]));
+	}
+}
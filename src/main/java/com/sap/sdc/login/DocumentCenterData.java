@@ -158,7 +158,7 @@ public class DocumentCenterData {
 		return (landscapes == null ? "[]" : landscapes.toString());
 	}
 
-	static class Landscape {
+	public static class Landscape {
 		private String name;
 		private String url;
 		private List<Provider> providers;
@@ -191,7 +191,7 @@ public class DocumentCenterData {
 		}
 	}
 
-	static class Provider {
+	public static class Provider {
 		private String name;
 		private String alias;
 		private List<Consumer> consumers;
@@ -224,7 +224,7 @@ public class DocumentCenterData {
 		}
 	}
 
-	static class Consumer {
+	public static class Consumer {
 		private String name;
 		private String account;
 
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.baseline;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.chemistry.opencmis.commons.impl.IOUtils;
+
+/**
+ * The timings of a reference run.
+ * <p>
+ * A baseline is stored as a properties file. Test times are stored with the
+ * key {@code test.<group> / <test>}, benchmark operation times with the key
+ * {@code operation.<name>}. All values are medians in microseconds.
+ */
+public class Baseline {
+
+	public static final String TEST_PREFIX = "test.";
+	public static final String OPERATION_PREFIX = "operation.";
+
+	private final Map<String, Long> tests = new TreeMap<String, Long>();
+	private final Map<String, Long> operations = new TreeMap<String, Long>();
+
+	/**
+	 * Loads a baseline file.
+	 */
+	public static Baseline load(File file) throws IOException {
+		Properties properties = new Properties();
+
+		InputStream stream = new FileInputStream(file);
+		try {
+			properties.load(stream);
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+
+		Baseline result = new Baseline();
+		for (String key : properties.stringPropertyNames()) {
+			long value;
+			try {
+				value = Long.parseLong(properties.getProperty(key).trim());
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid value of '" + key + "' in baseline file " + file.getAbsolutePath());
+			}
+
+			if (key.startsWith(TEST_PREFIX)) {
+				result.tests.put(key.substring(TEST_PREFIX.length()), value);
+			} else if (key.startsWith(OPERATION_PREFIX)) {
+				result.operations.put(key.substring(OPERATION_PREFIX.length()), value);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Saves this baseline.
+	 */
+	public void save(File file, String comment) throws IOException {
+		Properties properties = new Properties();
+		for (Map.Entry<String, Long> test : tests.entrySet()) {
+			properties.setProperty(TEST_PREFIX + test.getKey(), test.getValue().toString());
+		}
+		for (Map.Entry<String, Long> operation : operations.entrySet()) {
+			properties.setProperty(OPERATION_PREFIX + operation.getKey(), operation.getValue().toString());
+		}
+
+		OutputStream stream = new FileOutputStream(file);
+		try {
+			properties.store(stream, comment);
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+	}
+
+	/**
+	 * Returns the test times in microseconds.
+	 */
+	public Map<String, Long> getTests() {
+		return tests;
+	}
+
+	/**
+	 * Returns the benchmark operation times in microseconds.
+	 */
+	public Map<String, Long> getOperations() {
+		return operations;
+	}
+
+	public boolean isEmpty() {
+		return tests.isEmpty() && operations.isEmpty();
+	}
+
+	/**
+	 * Returns the median of the given values, or -1 if the list is empty.
+	 */
+	public static long median(List<Long> values) {
+		if (values.isEmpty()) {
+			return -1;
+		}
+
+		List<Long> sorted = new ArrayList<Long>(values);
+		Collections.sort(sorted);
+
+		int middle = sorted.size() / 2;
+		if (sorted.size() % 2 == 1) {
+			return sorted.get(middle);
+		} else {
+			return (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+		}
+	}
+}
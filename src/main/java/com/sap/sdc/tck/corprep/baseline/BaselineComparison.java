@@ -0,0 +1,152 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.baseline;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.OK;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.tck.CmisTest;
+import org.apache.chemistry.opencmis.tck.CmisTestResultStatus;
+import org.apache.chemistry.opencmis.tck.impl.AbstractCmisTest;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+
+/**
+ * Compares timings against a baseline.
+ * <p>
+ * A time is a regression if it is slower than the baseline by more than the
+ * warning or failure tolerance (in percent of the baseline). Differences
+ * smaller than the minimum delta are ignored, because the times of fast tests
+ * are dominated by noise.
+ */
+public class BaselineComparison {
+
+	/** Default minimum difference in microseconds. */
+	public static final long DEFAULT_MIN_DELTA = 20000;
+
+	private final int warningTolerance;
+	private final int failureTolerance;
+	private final long minDelta;
+
+	private int warnings;
+	private int failures;
+
+	public BaselineComparison(int warningTolerance, int failureTolerance, long minDelta) {
+		this.warningTolerance = warningTolerance;
+		this.failureTolerance = failureTolerance;
+		this.minDelta = minDelta;
+	}
+
+	/**
+	 * Returns the status of a time compared to its baseline time.
+	 */
+	public CmisTestResultStatus compare(long baseline, long current) {
+		long delta = current - baseline;
+		if (delta < minDelta) {
+			return OK;
+		}
+
+		if (delta * 100 > baseline * failureTolerance) {
+			return FAILURE;
+		} else if (delta * 100 > baseline * warningTolerance) {
+			return WARNING;
+		}
+
+		return OK;
+	}
+
+	/**
+	 * Compares the median test times of the recorder with the baseline and
+	 * adds the outcome as result to each test.
+	 */
+	public void compareTests(Baseline baseline, TimingRecorder recorder) {
+		for (Map.Entry<String, Long> entry : recorder.getMedians().entrySet()) {
+			Long baselineTime = baseline.getTests().get(entry.getKey());
+			CmisTest test = recorder.getTests().get(entry.getKey());
+			if (baselineTime == null || !(test instanceof AbstractCmisTest)) {
+				continue;
+			}
+
+			CmisTestResultStatus status = compare(baselineTime, entry.getValue());
+			count(status);
+
+			String msg = "Median time " + LatencyHistogram.formatMillis(entry.getValue()) + " ms over "
+					+ recorder.getRuns(entry.getKey()) + " runs, baseline "
+					+ LatencyHistogram.formatMillis(baselineTime) + " ms (" + formatChange(baselineTime, entry.getValue())
+					+ ")";
+
+			AbstractCmisTest cmisTest = (AbstractCmisTest) test;
+			if (status == OK) {
+				cmisTest.addResult(cmisTest.createResult(INFO, msg));
+			} else {
+				cmisTest.addResult(cmisTest.createResult(status, "Performance regression! " + msg
+						+ ", tolerance " + (status == FAILURE ? failureTolerance : warningTolerance) + "%"));
+			}
+		}
+	}
+
+	/**
+	 * Compares benchmark operation times with the baseline and prints one
+	 * line per operation.
+	 */
+	public void compareOperations(Baseline baseline, Map<String, Long> operations, PrintStream out) {
+		String format = "%-40s %12s %12s %10s  %s%n";
+		out.printf(Locale.ENGLISH, format, "Operation", "p50 (ms)", "base (ms)", "change", "status");
+
+		for (Map.Entry<String, Long> entry : operations.entrySet()) {
+			Long baselineTime = baseline.getOperations().get(entry.getKey());
+			if (baselineTime == null) {
+				continue;
+			}
+
+			CmisTestResultStatus status = compare(baselineTime, entry.getValue());
+			count(status);
+
+			out.printf(Locale.ENGLISH, format, entry.getKey(), LatencyHistogram.formatMillis(entry.getValue()),
+					LatencyHistogram.formatMillis(baselineTime), formatChange(baselineTime, entry.getValue()), status);
+		}
+	}
+
+	private void count(CmisTestResultStatus status) {
+		if (status == FAILURE) {
+			failures++;
+		} else if (status == WARNING) {
+			warnings++;
+		}
+	}
+
+	private static String formatChange(long baseline, long current) {
+		if (baseline <= 0) {
+			return "n/a";
+		}
+
+		return String.format(Locale.ENGLISH, "%+.0f%%", (current - baseline) * 100.0 / baseline);
+	}
+
+	public int getWarnings() {
+		return warnings;
+	}
+
+	public int getFailures() {
+		return failures;
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.baseline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.tck.CmisTest;
+import org.apache.chemistry.opencmis.tck.CmisTestGroup;
+import org.apache.chemistry.opencmis.tck.CmisTestProgressMonitor;
+
+/**
+ * Progress monitor that records the test times of one or more runs.
+ * <p>
+ * The same recorder can be used for repeated runs of the same test groups.
+ * The times are collected per test and the test objects of the first run are
+ * kept, so that comparison results can be added to them. All calls are passed
+ * on to a delegate.
+ */
+public class TimingRecorder implements CmisTestProgressMonitor {
+
+	private final CmisTestProgressMonitor delegate;
+	private final Map<String, List<Long>> times = new LinkedHashMap<String, List<Long>>();
+	private final Map<String, CmisTest> tests = new LinkedHashMap<String, CmisTest>();
+	private String currentGroup;
+
+	public TimingRecorder(CmisTestProgressMonitor delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Returns the key of a test in a baseline.
+	 */
+	public static String getKey(String groupName, CmisTest test) {
+		return groupName + " / " + test.getName();
+	}
+
+	@Override
+	public void startGroup(CmisTestGroup group) {
+		currentGroup = group.getName();
+		delegate.startGroup(group);
+	}
+
+	@Override
+	public void endGroup(CmisTestGroup group) {
+		delegate.endGroup(group);
+	}
+
+	@Override
+	public void startTest(CmisTest test) {
+		delegate.startTest(test);
+	}
+
+	@Override
+	public void endTest(CmisTest test) {
+		String key = getKey(currentGroup, test);
+
+		List<Long> testTimes = times.get(key);
+		if (testTimes == null) {
+			testTimes = new ArrayList<Long>();
+			times.put(key, testTimes);
+			tests.put(key, test);
+		}
+		testTimes.add(test.getTime() * 1000L);
+
+		delegate.endTest(test);
+	}
+
+	@Override
+	public void message(String msg) {
+		delegate.message(msg);
+	}
+
+	/**
+	 * Returns the tests of the first run by key.
+	 */
+	public Map<String, CmisTest> getTests() {
+		return tests;
+	}
+
+	/**
+	 * Returns the median time of each test in microseconds.
+	 */
+	public Map<String, Long> getMedians() {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (Map.Entry<String, List<Long>> entry : times.entrySet()) {
+			result.put(entry.getKey(), Baseline.median(entry.getValue()));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the number of recorded times of the given test.
+	 */
+	public int getRuns(String key) {
+		List<Long> testTimes = times.get(key);
+		return testTimes == null ? 0 : testTimes.size();
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.bench;
+
+import org.apache.chemistry.opencmis.client.api.Session;
+
+/**
+ * A repeatable operation of a benchmark and its latency statistics.
+ */
+public abstract class BenchmarkOperation {
+
+	private final String name;
+	private final LatencyHistogram histogram = new LatencyHistogram();
+	private long errors;
+	private String lastError;
+
+	public BenchmarkOperation(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public LatencyHistogram getHistogram() {
+		return histogram;
+	}
+
+	public synchronized long getErrors() {
+		return errors;
+	}
+
+	public synchronized String getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Counts an error.
+	 */
+	synchronized void addError(String message) {
+		errors++;
+		lastError = message;
+	}
+
+	/**
+	 * Executes the operation once.
+	 */
+	protected abstract void execute(Session session) throws Exception;
+
+	/**
+	 * Executes the operation once and records its latency if requested.
+	 * Failed executions are counted as errors if requested, but their latency
+	 * is not recorded.
+	 */
+	public boolean run(Session session, boolean record) {
+		return run(session, record, System.nanoTime());
+	}
+
+	/**
+	 * Executes the operation once and records its latency since the time it
+	 * was scheduled. Rate limited runs use this, so that the time a late
+	 * operation waited for a worker is part of its latency.
+	 */
+	public boolean runScheduled(Session session, long scheduledNanos) {
+		return run(session, true, scheduledNanos);
+	}
+
+	private boolean run(Session session, boolean record, long start) {
+		try {
+			execute(session);
+		} catch (Exception e) {
+			if (record) {
+				addError(e.toString());
+			}
+			return false;
+		}
+
+		if (record) {
+			histogram.recordSince(start);
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.bench;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prints latency statistics of benchmark operations as a text table.
+ */
+public final class BenchmarkReport {
+
+	private static final String ROW_FORMAT = "%-40s %8s %7s %10s %10s %10s %10s %10s%n";
+
+	private BenchmarkReport() {
+	}
+
+	public static void print(PrintStream out, List<BenchmarkOperation> operations) {
+		out.printf(Locale.ENGLISH, ROW_FORMAT, "Operation", "Count", "Errors", "p50 (ms)", "p90 (ms)", "p99 (ms)",
+				"max (ms)", "ops/s");
+
+		for (BenchmarkOperation operation : operations) {
+			LatencyHistogram histogram = operation.getHistogram();
+			out.printf(Locale.ENGLISH, ROW_FORMAT, operation.getName(), histogram.getCount(), operation.getErrors(),
+					LatencyHistogram.formatMillis(histogram.getPercentile(50)),
+					LatencyHistogram.formatMillis(histogram.getPercentile(90)),
+					LatencyHistogram.formatMillis(histogram.getPercentile(99)),
+					LatencyHistogram.formatMillis(histogram.getMax()),
+					String.format(Locale.ENGLISH, "%.1f", histogram.getThroughput()));
+		}
+
+		for (BenchmarkOperation operation : operations) {
+			if (operation.getLastError() != null) {
+				out.println();
+				out.println("Last error of '" + operation.getName() + "': " + operation.getLastError());
+			}
+		}
+	}
+}
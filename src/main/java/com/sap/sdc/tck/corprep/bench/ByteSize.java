@@ -0,0 +1,70 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.bench;
+
+import java.util.Locale;
+
+/**
+ * Parses and formats sizes in bytes like {@code 512}, {@code 64k},
+ * {@code 4m} or {@code 2g}.
+ */
+public final class ByteSize {
+
+	private static final long KB = 1024L;
+	private static final long MB = 1024L * KB;
+	private static final long GB = 1024L * MB;
+
+	private ByteSize() {
+	}
+
+	/**
+	 * Parses a size with an optional unit {@code k}, {@code m} or {@code g}.
+	 *
+	 * @throws NumberFormatException
+	 *             if the value is not a size
+	 */
+	public static long parse(String value) {
+		String v = value.trim().toLowerCase(Locale.ENGLISH);
+		long factor = 1;
+		if (v.endsWith("k")) {
+			factor = KB;
+		} else if (v.endsWith("m")) {
+			factor = MB;
+		} else if (v.endsWith("g")) {
+			factor = GB;
+		}
+		if (factor > 1) {
+			v = v.substring(0, v.length() - 1);
+		}
+
+		return Long.parseLong(v.trim()) * factor;
+	}
+
+	/**
+	 * Formats a size with the largest unit that divides it evenly.
+	 */
+	public static String format(long size) {
+		if (size >= GB && size % GB == 0) {
+			return size / GB + " GB";
+		} else if (size >= MB && size % MB == 0) {
+			return size / MB + " MB";
+		} else if (size >= KB && size % KB == 0) {
+			return size / KB + " KB";
+		}
+
+		return size + " byte";
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.bench;
+
+import java.util.Locale;
+
+/**
+ * Parses durations like {@code 90s}, {@code 30m} or {@code 8h}.
+ */
+public final class Duration {
+
+	private Duration() {
+	}
+
+	/**
+	 * Parses a duration in milliseconds. A number without unit is taken as
+	 * seconds. Returns -1 if the value is invalid.
+	 */
+	public static long parse(String value) {
+		String v = value.trim().toLowerCase(Locale.ENGLISH);
+		long factor = 1000L;
+		if (v.endsWith("h")) {
+			factor = 60L * 60L * 1000L;
+			v = v.substring(0, v.length() - 1);
+		} else if (v.endsWith("m")) {
+			factor = 60L * 1000L;
+			v = v.substring(0, v.length() - 1);
+		} else if (v.endsWith("s")) {
+			v = v.substring(0, v.length() - 1);
+		}
+
+		try {
+			long result = Long.parseLong(v.trim());
+			return result > 0 ? result * factor : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
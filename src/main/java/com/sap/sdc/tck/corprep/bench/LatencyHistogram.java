@@ -0,0 +1,182 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.bench;
+
+import java.util.Locale;
+
+/**
+ * Latency histogram with a fixed memory footprint.
+ * <p>
+ * Values are recorded in microseconds. Values below 128 are counted exactly,
+ * larger values are counted in log-linear buckets with 64 sub-buckets per
+ * power of two, which keeps the relative error below 1.6%. Values above one
+ * hour are counted in the last bucket. Count, sum, min and max are tracked
+ * exactly.
+ */
+public class LatencyHistogram {
+
+	private static final int LINEAR_BUCKETS = 128;
+	private static final int SUB_BUCKETS = 64;
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final long MAX_TRACKABLE_MICROS = 60L * 60L * 1000L * 1000L;
+	private static final int BUCKETS = bucketIndex(MAX_TRACKABLE_MICROS) + 1;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	/**
+	 * Records a latency in microseconds.
+	 */
+	public synchronized void record(long micros) {
+		if (micros < 0) {
+			micros = 0;
+		}
+
+		counts[bucketIndex(Math.min(micros, MAX_TRACKABLE_MICROS))]++;
+		count++;
+		sum += micros;
+		min = Math.min(min, micros);
+		max = Math.max(max, micros);
+	}
+
+	/**
+	 * Records the time between the given {@link System#nanoTime()} value and
+	 * now.
+	 */
+	public void recordSince(long startNanos) {
+		record((System.nanoTime() - startNanos) / 1000L);
+	}
+
+	/**
+	 * Adds all values of another histogram to this histogram.
+	 */
+	public void add(LatencyHistogram other) {
+		long[] otherCounts;
+		long otherCount, otherSum, otherMin, otherMax;
+
+		synchronized (other) {
+			otherCounts = other.counts.clone();
+			otherCount = other.count;
+			otherSum = other.sum;
+			otherMin = other.min;
+			otherMax = other.max;
+		}
+
+		synchronized (this) {
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] += otherCounts[i];
+			}
+			count += otherCount;
+			sum += otherSum;
+			min = Math.min(min, otherMin);
+			max = Math.max(max, otherMax);
+		}
+	}
+
+	public synchronized void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = 0;
+		}
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the sum of all recorded values in microseconds.
+	 */
+	public synchronized long getSum() {
+		return sum;
+	}
+
+	public synchronized long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	public synchronized double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Returns the value at the given percentile (0 to 100) in microseconds.
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil((percentile / 100.0) * count);
+		if (rank < 1) {
+			rank = 1;
+		}
+
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.max(min, Math.min(max, bucketUpperBound(i)));
+			}
+		}
+
+		return max;
+	}
+
+	/**
+	 * Returns the number of operations per second, based on the sum of all
+	 * recorded latencies.
+	 */
+	public synchronized double getThroughput() {
+		return sum == 0 ? 0 : count * 1000000.0 / sum;
+	}
+
+	private static int bucketIndex(long micros) {
+		if (micros < LINEAR_BUCKETS) {
+			return (int) micros;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((micros >> shift) - SUB_BUCKETS);
+	}
+
+	private static long bucketUpperBound(int index) {
+		if (index < LINEAR_BUCKETS) {
+			return index;
+		}
+
+		int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Formats a value in microseconds as milliseconds.
+	 */
+	public static String formatMillis(long micros) {
+		return String.format(Locale.ENGLISH, "%.1f", micros / 1000.0);
+	}
+}
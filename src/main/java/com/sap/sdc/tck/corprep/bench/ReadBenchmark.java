@@ -0,0 +1,241 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.bench;
+
+import static org.apache.chemistry.opencmis.tck.impl.AbstractSessionTest.SELECT_ALL_NO_CACHE_OC;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.QueryStatement;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.tck.impl.TestParameters;
+
+import com.sap.sdc.tck.corprep.tests.BoundedQuery;
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+import com.sap.sdc.tck.corprep.tests.TckSessionFactory;
+
+/**
+ * Benchmarks the read operations of the SDC read-only tests.
+ * <p>
+ * The operations are the ones behind {@code SDCReadFolderAndDocuments},
+ * {@code SAPSearchTest} and {@code SDCSyncTest}. Each operation runs a number
+ * of warmup iterations that are not recorded, followed by the measured
+ * iterations. Queries read at most as many results as the tests, see
+ * {@link BoundedQuery}.
+ */
+public class ReadBenchmark {
+
+	private final Map<String, String> parameters;
+	private final int iterations;
+	private final int warmupIterations;
+	private int maxItems = BoundedQuery.DEFAULT_MAX_ITEMS;
+	private int pageSize = BoundedQuery.DEFAULT_PAGE_SIZE;
+
+	public ReadBenchmark(Map<String, String> parameters, int iterations) {
+		this(parameters, iterations, Math.max(1, iterations / 10));
+	}
+
+	public ReadBenchmark(Map<String, String> parameters, int iterations, int warmupIterations) {
+		this.parameters = parameters;
+		this.iterations = iterations;
+		this.warmupIterations = warmupIterations;
+	}
+
+	/**
+	 * Runs the benchmark and returns the measured operations.
+	 */
+	public List<BenchmarkOperation> run(PrintStream out) {
+		Session session = TckSessionFactory.createSession(parameters);
+		List<BenchmarkOperation> operations = createOperations(out, session);
+
+		for (BenchmarkOperation operation : operations) {
+			out.println("  " + operation.getName());
+
+			for (int i = 0; i < warmupIterations; i++) {
+				operation.run(session, false);
+			}
+
+			for (int i = 0; i < iterations; i++) {
+				operation.run(session, true);
+			}
+		}
+
+		return operations;
+	}
+
+	/**
+	 * Looks up the test folder and creates the operations for the given
+	 * session.
+	 */
+	public List<BenchmarkOperation> createOperations(PrintStream out, Session session) {
+		maxItems = getIntParameter(out, BoundedQuery.MAX_ITEMS, BoundedQuery.DEFAULT_MAX_ITEMS);
+		pageSize = getIntParameter(out, BoundedQuery.PAGE_SIZE, BoundedQuery.DEFAULT_PAGE_SIZE);
+
+		String testFolderPath = getTestFolderPath();
+		ReadOnlyFixture fixture = ReadOnlyFixture.create(session, testFolderPath);
+		if (fixture.getError() != null) {
+			throw fixture.getError();
+		}
+		if (fixture.isNotAFolder()) {
+			throw new CmisInvalidArgumentException("Test folder is not a folder: " + testFolderPath);
+		}
+
+		return createOperations(out, session, testFolderPath, fixture.getFolder(session),
+				fixture.getDocument(session), fixture.getSubFolder(session));
+	}
+
+	private List<BenchmarkOperation> createOperations(PrintStream out, Session session, final String testFolderPath,
+			final Folder testFolder, Document doc, Folder folder) {
+		List<BenchmarkOperation> operations = new ArrayList<BenchmarkOperation>();
+
+		// SDCReadFolderAndDocuments
+		operations.add(new BenchmarkOperation("getObjectByPath (test folder)") {
+			@Override
+			protected void execute(Session session) {
+				session.getObjectByPath(testFolderPath, SELECT_ALL_NO_CACHE_OC);
+			}
+		});
+
+		operations.add(new BenchmarkOperation("getChildren (test folder)") {
+			@Override
+			protected void execute(Session session) {
+				for (CmisObject child : testFolder.getChildren(SELECT_ALL_NO_CACHE_OC)) {
+					child.getName();
+				}
+			}
+		});
+
+		// SAPSearchTest
+		String searchFolderId = testFolder.getId().replace("'", "\\'");
+		operations.add(new QueryOperation("SAPSEARCH document single term",
+				"SAPSEARCH INTREE '" + searchFolderId + "' FORTYPE cmis:document SEARCHTERM test"));
+		operations.add(new QueryOperation("SAPSEARCH document multiple terms",
+				"SAPSEARCH INTREE '" + searchFolderId + "' FORTYPE cmis:document SEARCHTERM red blue green"));
+		operations.add(new QueryOperation("SAPSEARCH document phrase",
+				"SAPSEARCH INTREE '" + searchFolderId + "' FORTYPE cmis:document SEARCHTERM \"this is a test phrase\""));
+		operations.add(new QueryOperation("SAPSEARCH folder single term",
+				"SAPSEARCH INTREE '" + searchFolderId + "' FORTYPE cmis:folder SEARCHTERM test"));
+		operations.add(new QueryOperation("SAPSEARCH folder multiple terms",
+				"SAPSEARCH INTREE '" + searchFolderId + "' FORTYPE cmis:folder SEARCHTERM red blue green"));
+		operations.add(new QueryOperation("SAPSEARCH folder phrase",
+				"SAPSEARCH INTREE '" + searchFolderId + "' FORTYPE cmis:folder SEARCHTERM \"this is a test phrase\""));
+
+		// SDCSyncTest
+		if (doc != null) {
+			operations.add(createObjectIdQuery(session, "sync document objectId =",
+					"SELECT * FROM cmis:document WHERE cmis:objectId = ?", doc.getId()));
+			operations.add(createObjectIdQuery(session, "sync document objectId IN",
+					"SELECT * FROM cmis:document WHERE cmis:objectId IN (?)", doc.getId()));
+			operations.add(createObjectIdQuery(session, "sync document objectId IN (twice)",
+					"SELECT * FROM cmis:document WHERE cmis:objectId IN (?)", doc.getId(), doc.getId()));
+			operations.add(createDeltaQuery(session, "sync document delta", "cmis:document", testFolder,
+					doc.getLastModificationDate()));
+		} else {
+			out.println("Test folder does not contain a document. Skipping document sync operations.");
+		}
+
+		if (folder != null) {
+			operations.add(createObjectIdQuery(session, "sync folder objectId =",
+					"SELECT * FROM cmis:folder WHERE cmis:objectId = ?", folder.getId()));
+			operations.add(createObjectIdQuery(session, "sync folder objectId IN",
+					"SELECT * FROM cmis:folder WHERE cmis:objectId IN (?)", folder.getId()));
+			operations.add(createObjectIdQuery(session, "sync folder objectId IN (twice)",
+					"SELECT * FROM cmis:folder WHERE cmis:objectId IN (?)", folder.getId(), folder.getId()));
+			operations.add(createDeltaQuery(session, "sync folder delta", "cmis:folder", testFolder,
+					folder.getLastModificationDate()));
+		} else {
+			out.println("Test folder does not contain a folder. Skipping folder sync operations.");
+		}
+
+		return operations;
+	}
+
+	private BenchmarkOperation createObjectIdQuery(Session session, String name, String stmt, String... objectIds) {
+		QueryStatement queryStmt = session.createQueryStatement(stmt);
+		queryStmt.setString(1, objectIds);
+
+		return new QueryOperation(name, queryStmt.toQueryString());
+	}
+
+	private BenchmarkOperation createDeltaQuery(Session session, String name, String type, Folder testFolder,
+			GregorianCalendar lastModificationDate) {
+		QueryStatement stmt = session.createQueryStatement(
+				"SELECT * FROM " + type + " WHERE in_tree(?) AND cmis:lastModificationDate >= TIMESTAMP ?");
+		stmt.setString(1, testFolder.getId());
+		GregorianCalendar dateTime = (GregorianCalendar) lastModificationDate.clone();
+		dateTime.add(Calendar.MINUTE, -5);
+		stmt.setDateTime(2, dateTime);
+
+		return new QueryOperation(name, stmt.toQueryString());
+	}
+
+	/**
+	 * Returns a positive integer session parameter.
+	 */
+	private int getIntParameter(PrintStream out, String key, int defaultValue) {
+		String value = parameters.get(key);
+		if (value == null) {
+			return defaultValue;
+		}
+
+		try {
+			int result = Integer.parseInt(value.trim());
+			if (result > 0) {
+				return result;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+
+		out.println("Invalid value '" + value + "' of " + key + "! Using " + defaultValue + " instead.");
+		return defaultValue;
+	}
+
+	private String getTestFolderPath() {
+		String testFolderPath = parameters.get(TestParameters.DEFAULT_TEST_FOLDER_PARENT);
+		if (testFolderPath == null) {
+			testFolderPath = TestParameters.DEFAULT_TEST_FOLDER_PARENT_VALUE;
+		}
+
+		return testFolderPath;
+	}
+
+	/**
+	 * Runs a query and reads the results up to the limit.
+	 */
+	private class QueryOperation extends BenchmarkOperation {
+		private final String stmt;
+
+		public QueryOperation(String name, String stmt) {
+			super(name);
+			this.stmt = stmt;
+		}
+
+		@Override
+		protected void execute(Session session) {
+			new BoundedQuery(stmt, maxItems, pageSize).execute(session);
+		}
+	}
+}
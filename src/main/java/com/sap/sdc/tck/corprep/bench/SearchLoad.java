@@ -0,0 +1,336 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.QueryResult;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.SessionParameter;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.commons.impl.IOUtils;
+import org.apache.chemistry.opencmis.tck.impl.TestParameters;
+
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+import com.sap.sdc.tck.corprep.tests.TckSessionFactory;
+
+/**
+ * Runs SAPSEARCH queries with the terms of a corpus file from many workers at
+ * a fixed rate.
+ * <p>
+ * The corpus file contains one term or phrase per line. Lines with more than
+ * one word are used as phrases, all words are used as terms. Empty lines and
+ * lines starting with {@code #} are ignored.
+ * <p>
+ * The queries are scheduled at fixed times. If all workers are busy, a query
+ * starts late and the delay is part of its latency, so an overloaded search
+ * backend shows up in the percentiles. Queries that are still running when
+ * the duration plus the read timeout of the session has passed are abandoned
+ * and counted as errors.
+ */
+public class SearchLoad {
+
+	private static final int RESULT_PAGE_SIZE = 50;
+	private static final int MULTI_TERMS = 3;
+	private static final long PROGRESS_INTERVAL = 10000;
+
+	/** Time the last queries may take if the session has no read timeout. */
+	private static final long DEFAULT_READ_TIMEOUT = 60000;
+
+	private final Map<String, String> parameters;
+	private final int workers;
+	private final int rate;
+	private final long durationMillis;
+
+	private final List<String> terms = new ArrayList<String>();
+	private final List<String> phrases = new ArrayList<String>();
+
+	private final AtomicLong tickets = new AtomicLong();
+	private long elapsedMillis;
+
+	public SearchLoad(Map<String, String> parameters, File corpus, int workers, int rate, long durationMillis)
+			throws IOException {
+		this.parameters = parameters;
+		this.workers = workers;
+		this.rate = rate;
+		this.durationMillis = durationMillis;
+
+		readCorpus(corpus);
+		if (terms.isEmpty()) {
+			throw new IllegalArgumentException("Search corpus contains no terms: " + corpus.getPath());
+		}
+	}
+
+	private void readCorpus(File corpus) throws IOException {
+		Set<String> termSet = new LinkedHashSet<String>();
+		Set<String> phraseSet = new LinkedHashSet<String>();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(corpus), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.replace("\"", " ").trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+
+				String[] words = line.split("\\s+");
+				Collections.addAll(termSet, words);
+				if (words.length > 1) {
+					phraseSet.add(line.replaceAll("\\s+", " "));
+				}
+			}
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+
+		terms.addAll(termSet);
+		phrases.addAll(phraseSet);
+	}
+
+	public List<String> getTerms() {
+		return terms;
+	}
+
+	public List<String> getPhrases() {
+		return phrases;
+	}
+
+	/**
+	 * Returns the number of queries that have been started.
+	 */
+	public long getQueries() {
+		return tickets.get();
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * Runs the load and returns one operation per query shape.
+	 */
+	public List<BenchmarkOperation> run(PrintStream out) throws InterruptedException {
+		String testFolderPath = parameters.get(TestParameters.DEFAULT_TEST_FOLDER_PARENT);
+		if (testFolderPath == null) {
+			testFolderPath = TestParameters.DEFAULT_TEST_FOLDER_PARENT_VALUE;
+		}
+
+		// one session per worker, like concurrent users
+		final List<Session> sessions = new ArrayList<Session>();
+		for (int i = 0; i < workers; i++) {
+			sessions.add(TckSessionFactory.createSession(parameters));
+		}
+
+		ReadOnlyFixture fixture = ReadOnlyFixture.create(sessions.get(0), testFolderPath);
+		if (fixture.getError() != null) {
+			throw fixture.getError();
+		}
+		if (fixture.isNotAFolder()) {
+			throw new CmisInvalidArgumentException("Test folder is not a folder: " + testFolderPath);
+		}
+
+		final List<BenchmarkOperation> shapes = createShapes(fixture.getFolderId());
+
+		final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		final long start = System.nanoTime();
+		final long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+		// the query each worker is running
+		final AtomicReferenceArray<BenchmarkOperation> running = new AtomicReferenceArray<BenchmarkOperation>(
+				workers);
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		for (int w = 0; w < workers; w++) {
+			final int worker = w;
+			final Session session = sessions.get(w);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					while (true) {
+						long ticket = tickets.getAndIncrement();
+						long scheduled = start + ticket * intervalNanos;
+						if (scheduled >= end) {
+							tickets.decrementAndGet();
+							return;
+						}
+
+						long wait;
+						while ((wait = scheduled - System.nanoTime()) > 0) {
+							LockSupport.parkNanos(wait);
+						}
+
+						BenchmarkOperation shape = shapes.get((int) (ticket % shapes.size()));
+						running.set(worker, shape);
+						shape.runScheduled(session, scheduled);
+						running.set(worker, null);
+					}
+				}
+			});
+		}
+		executor.shutdown();
+
+		long readTimeout = getReadTimeout();
+		long deadline = end + TimeUnit.MILLISECONDS.toNanos(readTimeout);
+		while (!executor.awaitTermination(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+			long errors = 0;
+			for (BenchmarkOperation shape : shapes) {
+				errors += shape.getErrors();
+			}
+			out.println("  " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + " s: " + tickets.get()
+					+ " queries, " + errors + " errors");
+
+			if (System.nanoTime() >= deadline) {
+				executor.shutdownNow();
+
+				int stragglers = 0;
+				for (int w = 0; w < workers; w++) {
+					BenchmarkOperation shape = running.getAndSet(w, null);
+					if (shape != null) {
+						shape.addError("Query did not finish within " + readTimeout / 1000
+								+ " seconds after the end of the load");
+						stragglers++;
+					}
+				}
+				out.println("  " + stragglers + " queries did not finish and were counted as errors.");
+				break;
+			}
+		}
+
+		elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		return shapes;
+	}
+
+	/**
+	 * Returns the read timeout of the sessions in milliseconds.
+	 */
+	private long getReadTimeout() {
+		String value = parameters.get(SessionParameter.READ_TIMEOUT);
+		if (value != null) {
+			try {
+				long readTimeout = Long.parseLong(value.trim());
+				if (readTimeout > 0) {
+					return readTimeout;
+				}
+			} catch (NumberFormatException e) {
+				// use the default
+			}
+		}
+
+		return DEFAULT_READ_TIMEOUT;
+	}
+
+	private List<BenchmarkOperation> createShapes(String folderId) {
+		String searchFolderId = escape(folderId);
+
+		List<BenchmarkOperation> shapes = new ArrayList<BenchmarkOperation>();
+		for (String type : new String[] { "cmis:document", "cmis:folder" }) {
+			String prefix = "SAPSEARCH INTREE '" + searchFolderId + "' FORTYPE " + type + " SEARCHTERM ";
+			String kind = type.substring(5);
+
+			shapes.add(new SearchShape("SAPSEARCH " + kind + " single term", prefix) {
+				@Override
+				protected String createSearchTerm() {
+					return randomTerm();
+				}
+			});
+
+			shapes.add(new SearchShape("SAPSEARCH " + kind + " multiple terms", prefix) {
+				@Override
+				protected String createSearchTerm() {
+					StringBuilder sb = new StringBuilder();
+					for (int i = 0; i < MULTI_TERMS; i++) {
+						if (i > 0) {
+							sb.append(' ');
+						}
+						sb.append(randomTerm());
+					}
+					return sb.toString();
+				}
+			});
+
+			shapes.add(new SearchShape("SAPSEARCH " + kind + " phrase", prefix) {
+				@Override
+				protected String createSearchTerm() {
+					if (phrases.isEmpty()) {
+						return "\"" + randomTerm() + " " + randomTerm() + "\"";
+					}
+					return "\"" + escape(phrases.get(ThreadLocalRandom.current().nextInt(phrases.size()))) + "\"";
+				}
+			});
+		}
+
+		return shapes;
+	}
+
+	private String randomTerm() {
+		return escape(terms.get(ThreadLocalRandom.current().nextInt(terms.size())));
+	}
+
+	/**
+	 * Escapes backslashes and single quotes for the query statement.
+	 */
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("'", "\\'");
+	}
+
+	/**
+	 * Runs a search with a new search term and reads the first page of
+	 * results.
+	 */
+	private abstract static class SearchShape extends BenchmarkOperation {
+		private final String prefix;
+
+		public SearchShape(String name, String prefix) {
+			super(name);
+			this.prefix = prefix;
+		}
+
+		protected abstract String createSearchTerm();
+
+		@Override
+		protected void execute(Session session) {
+			OperationContext context = session.createOperationContext();
+			context.setIncludeAllowableActions(false);
+			context.setCacheEnabled(false);
+			context.setMaxItemsPerPage(RESULT_PAGE_SIZE);
+
+			for (QueryResult qr : session.query(prefix + createSearchTerm(), false, context).getPage()) {
+				qr.getPropertyByQueryName("cmis:name");
+			}
+		}
+	}
+}
@@ -0,0 +1,359 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.client.api.Session;
+
+import com.sap.sdc.tck.corprep.tests.TckSessionFactory;
+
+/**
+ * Runs the read operations of the SDC read-only tests in a loop on one
+ * long-lived session and samples the resources of the client.
+ * <p>
+ * At every interval, the heap use, the GC time, the number of threads, the
+ * open sockets and the latencies of the operations in this interval are
+ * written as one CSV line. At the end, the series are checked for growth
+ * trends, which hint at memory or connection leaks in the client.
+ * <p>
+ * Open sockets and file descriptors are read from {@code /proc/self/fd} and
+ * are -1 on systems without it.
+ */
+public class SoakRun {
+
+	private static final File PROC_FD = new File("/proc/self/fd");
+	private static final double MB = 1024.0 * 1024.0;
+	private static final int MIN_TREND_SAMPLES = 6;
+
+	private final Map<String, String> parameters;
+	private final long durationMillis;
+	private final long intervalMillis;
+
+	private final List<Sample> samples = new ArrayList<Sample>();
+	private final List<String> trends = new ArrayList<String>();
+
+	public SoakRun(Map<String, String> parameters, long durationMillis, long intervalMillis) {
+		this.parameters = parameters;
+		this.durationMillis = durationMillis;
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * Runs the operations until the duration is over and returns them with
+	 * the latencies of the whole run. The time series is written to the given
+	 * writer, progress messages to the given stream.
+	 */
+	public List<BenchmarkOperation> run(PrintWriter series, PrintStream out) {
+		Session session = TckSessionFactory.createSession(parameters);
+		List<BenchmarkOperation> operations = new ReadBenchmark(parameters, 1).createOperations(out, session);
+
+		List<LatencyHistogram> totals = new ArrayList<LatencyHistogram>();
+		for (int i = 0; i < operations.size(); i++) {
+			totals.add(new LatencyHistogram());
+		}
+
+		writeHeader(series, operations);
+
+		long start = System.currentTimeMillis();
+		long end = start + durationMillis;
+		long nextSample = start + intervalMillis;
+		long calls = 0;
+		long errors = 0;
+
+		while (System.currentTimeMillis() < end) {
+			for (BenchmarkOperation operation : operations) {
+				operation.run(session, true);
+				calls++;
+
+				long now = System.currentTimeMillis();
+				if (now >= nextSample || now >= end) {
+					long totalErrors = 0;
+					for (BenchmarkOperation op : operations) {
+						totalErrors += op.getErrors();
+					}
+
+					Sample sample = takeSample(now - start, calls, totalErrors - errors, operations);
+					samples.add(sample);
+					writeSample(series, sample);
+					out.println("  " + sample);
+
+					for (int i = 0; i < operations.size(); i++) {
+						totals.get(i).add(operations.get(i).getHistogram());
+						operations.get(i).getHistogram().reset();
+					}
+
+					calls = 0;
+					errors = totalErrors;
+					nextSample = now + intervalMillis;
+
+					if (now >= end) {
+						break;
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < operations.size(); i++) {
+			operations.get(i).getHistogram().add(totals.get(i));
+		}
+
+		findTrends(operations);
+
+		return operations;
+	}
+
+	/**
+	 * Returns the samples of the run.
+	 */
+	public List<Sample> getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Returns a message for each series that grew during the run.
+	 */
+	public List<String> getTrends() {
+		return trends;
+	}
+
+	private Sample takeSample(long elapsed, long calls, long errors, List<BenchmarkOperation> operations) {
+		Sample sample = new Sample();
+		sample.elapsedMillis = elapsed;
+		sample.calls = calls;
+		sample.errors = errors;
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP) {
+				continue;
+			}
+
+			sample.heapUsed += pool.getUsage().getUsed();
+
+			MemoryUsage afterGc = pool.getCollectionUsage();
+			if (afterGc != null) {
+				sample.heapAfterGc += afterGc.getUsed();
+			}
+		}
+
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			sample.gcCount += Math.max(0, gc.getCollectionCount());
+			sample.gcTime += Math.max(0, gc.getCollectionTime());
+		}
+
+		sample.threads = ManagementFactory.getThreadMXBean().getThreadCount();
+		countFileDescriptors(sample);
+
+		sample.p50 = new long[operations.size()];
+		sample.p99 = new long[operations.size()];
+		for (int i = 0; i < operations.size(); i++) {
+			sample.p50[i] = operations.get(i).getHistogram().getPercentile(50);
+			sample.p99[i] = operations.get(i).getHistogram().getPercentile(99);
+		}
+
+		return sample;
+	}
+
+	private static void countFileDescriptors(Sample sample) {
+		File[] fds = PROC_FD.listFiles();
+		if (fds == null) {
+			sample.fileDescriptors = -1;
+			sample.sockets = -1;
+			return;
+		}
+
+		sample.fileDescriptors = fds.length;
+		for (File fd : fds) {
+			try {
+				if (Files.readSymbolicLink(fd.toPath()).toString().startsWith("socket:")) {
+					sample.sockets++;
+				}
+			} catch (IOException e) {
+				// closed in the meantime
+			}
+		}
+	}
+
+	private static void writeHeader(PrintWriter series, List<BenchmarkOperation> operations) {
+		StringBuilder sb = new StringBuilder(
+				"elapsed_s,heap_used_mb,heap_after_gc_mb,gc_count,gc_time_ms,threads,sockets,file_descriptors,calls,errors");
+		for (BenchmarkOperation operation : operations) {
+			sb.append(",\"").append(operation.getName()).append(" p50_ms\"");
+			sb.append(",\"").append(operation.getName()).append(" p99_ms\"");
+		}
+
+		series.println(sb);
+		series.flush();
+	}
+
+	private static void writeSample(PrintWriter series, Sample sample) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(sample.elapsedMillis / 1000);
+		sb.append(String.format(Locale.ENGLISH, ",%.1f,%.1f", sample.heapUsed / MB, sample.heapAfterGc / MB));
+		sb.append(',').append(sample.gcCount);
+		sb.append(',').append(sample.gcTime);
+		sb.append(',').append(sample.threads);
+		sb.append(',').append(sample.sockets);
+		sb.append(',').append(sample.fileDescriptors);
+		sb.append(',').append(sample.calls);
+		sb.append(',').append(sample.errors);
+		for (int i = 0; i < sample.p50.length; i++) {
+			sb.append(',').append(LatencyHistogram.formatMillis(sample.p50[i]));
+			sb.append(',').append(LatencyHistogram.formatMillis(sample.p99[i]));
+		}
+
+		series.println(sb);
+		series.flush();
+	}
+
+	/**
+	 * Checks heap after GC, threads, sockets and the median latencies for
+	 * growth. The first samples are skipped as warmup. A series grows if its
+	 * regression slope is positive and the mean of the last third exceeds the
+	 * mean of the first third by more than a relative and an absolute
+	 * threshold.
+	 */
+	private void findTrends(List<BenchmarkOperation> operations) {
+		if (samples.size() < MIN_TREND_SAMPLES) {
+			return;
+		}
+
+		List<Sample> series = samples.subList(Math.max(1, samples.size() / 10), samples.size());
+		int n = series.size();
+
+		double[] heap = new double[n];
+		double[] threads = new double[n];
+		double[] sockets = new double[n];
+		for (int i = 0; i < n; i++) {
+			heap[i] = series.get(i).heapAfterGc / MB;
+			threads[i] = series.get(i).threads;
+			sockets[i] = series.get(i).sockets;
+		}
+
+		checkTrend("Heap after GC", "MB", heap, 0.2, 8);
+		checkTrend("Threads", "", threads, 0.0, 2);
+		if (series.get(0).sockets >= 0) {
+			checkTrend("Open sockets", "", sockets, 0.0, 2);
+		}
+
+		for (int o = 0; o < operations.size(); o++) {
+			double[] latency = new double[n];
+			for (int i = 0; i < n; i++) {
+				latency[i] = series.get(i).p50[o] / 1000.0;
+			}
+			checkTrend("p50 of '" + operations.get(o).getName() + "'", "ms", latency, 0.5, 5);
+		}
+	}
+
+	private void checkTrend(String name, String unit, double[] values, double relative, double absolute) {
+		int third = values.length / 3;
+		double first = mean(values, 0, third);
+		double last = mean(values, values.length - third, values.length);
+
+		if (slope(values) > 0 && last - first > absolute && last - first > first * relative) {
+			trends.add(String.format(Locale.ENGLISH, "%s grew from %.1f%s to %.1f%s", name, first, unit, last,
+					unit));
+		}
+	}
+
+	private static double mean(double[] values, int from, int to) {
+		double sum = 0;
+		for (int i = from; i < to; i++) {
+			sum += values[i];
+		}
+
+		return sum / (to - from);
+	}
+
+	private static double slope(double[] values) {
+		int n = values.length;
+		double meanX = (n - 1) / 2.0;
+		double meanY = mean(values, 0, n);
+
+		double num = 0;
+		double den = 0;
+		for (int i = 0; i < n; i++) {
+			num += (i - meanX) * (values[i] - meanY);
+			den += (i - meanX) * (i - meanX);
+		}
+
+		return den == 0 ? 0 : num / den;
+	}
+
+	/**
+	 * The client resources and operation latencies of one interval.
+	 */
+	public static class Sample {
+		private long elapsedMillis;
+		private long heapUsed;
+		private long heapAfterGc;
+		private long gcCount;
+		private long gcTime;
+		private int threads;
+		private int sockets;
+		private int fileDescriptors;
+		private long calls;
+		private long errors;
+		private long[] p50;
+		private long[] p99;
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public long getHeapUsed() {
+			return heapUsed;
+		}
+
+		public long getHeapAfterGc() {
+			return heapAfterGc;
+		}
+
+		public long getGcTime() {
+			return gcTime;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public int getSockets() {
+			return sockets;
+		}
+
+		@Override
+		public String toString() {
+			long seconds = elapsedMillis / 1000;
+			return String.format(Locale.ENGLISH,
+					"%02d:%02d:%02d heap %.1f MB (after GC %.1f MB), GC %d ms, %d threads, %d sockets, %d calls, %d errors",
+					seconds / 3600, (seconds / 60) % 60, seconds % 60, heapUsed / MB, heapAfterGc / MB, gcTime,
+					threads, sockets, calls, errors);
+		}
+	}
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.chemistry.opencmis.client.bindings.spi.BindingSession;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.DefaultHttpInvoker;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.HttpInvoker;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Output;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.chemistry.opencmis.commons.SessionParameter;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
+import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
+
+/**
+ * HTTP invoker that adds latency, bandwidth limits and faults to the requests
+ * of a session.
+ * <p>
+ * The faults are defined by the {@link FaultProfile} in the session parameter
+ * {@value FaultProfile#PARAMETER}. Without this parameter, requests are passed
+ * through unchanged. The faults are injected below the
+ * {@link InstrumentingHttpInvoker}, so injected latency, injected error
+ * responses and dropped connections show up in the HTTP statistics. Injected
+ * 503 and 429 responses and dropped connections never reach the server.
+ * <p>
+ * If the injected latency exceeds the read timeout of the session, the invoker
+ * waits for the read timeout and then fails like a timed out connection.
+ */
+public class FaultInjectingHttpInvoker extends InstrumentingHttpInvoker {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String RETRY_AFTER_SECONDS = "1";
+	private static final ConcurrentMap<String, FaultProfile> PROFILES = new ConcurrentHashMap<String, FaultProfile>();
+
+	public FaultInjectingHttpInvoker() {
+		super(new FaultInjector());
+	}
+
+	/**
+	 * Injects the faults and sends the remaining requests.
+	 */
+	private static class FaultInjector implements HttpInvoker {
+		private final HttpInvoker delegate = new DefaultHttpInvoker();
+
+		@Override
+		public Response invokeGET(UrlBuilder url, BindingSession session) {
+			FaultProfile profile = getProfile(session);
+			Response fault = inject(profile, session);
+			if (fault != null) {
+				return fault;
+			}
+
+			return throttle(profile, delegate.invokeGET(url, session));
+		}
+
+		@Override
+		public Response invokeGET(UrlBuilder url, BindingSession session, BigInteger offset, BigInteger length) {
+			FaultProfile profile = getProfile(session);
+			Response fault = inject(profile, session);
+			if (fault != null) {
+				return fault;
+			}
+
+			return throttle(profile, delegate.invokeGET(url, session, offset, length));
+		}
+
+		@Override
+		public Response invokePOST(UrlBuilder url, String contentType, Output writer, BindingSession session) {
+			FaultProfile profile = getProfile(session);
+			Response fault = inject(profile, session);
+			if (fault != null) {
+				return fault;
+			}
+
+			return throttle(profile, delegate.invokePOST(url, contentType, writer, session));
+		}
+
+		@Override
+		public Response invokePUT(UrlBuilder url, String contentType, Map<String, String> headers, Output writer,
+				BindingSession session) {
+			FaultProfile profile = getProfile(session);
+			Response fault = inject(profile, session);
+			if (fault != null) {
+				return fault;
+			}
+
+			return throttle(profile, delegate.invokePUT(url, contentType, headers, writer, session));
+		}
+
+		@Override
+		public Response invokeDELETE(UrlBuilder url, BindingSession session) {
+			FaultProfile profile = getProfile(session);
+			Response fault = inject(profile, session);
+			if (fault != null) {
+				return fault;
+			}
+
+			return throttle(profile, delegate.invokeDELETE(url, session));
+		}
+	}
+
+	private static FaultProfile getProfile(BindingSession session) {
+		Object spec = session.get(FaultProfile.PARAMETER);
+		if (spec == null || spec.toString().trim().isEmpty()) {
+			return null;
+		}
+
+		FaultProfile profile = PROFILES.get(spec.toString());
+		if (profile == null) {
+			profile = FaultProfile.parse(spec.toString());
+			PROFILES.putIfAbsent(spec.toString(), profile);
+		}
+
+		return profile;
+	}
+
+	/**
+	 * Waits for the injected latency and returns an injected error response,
+	 * or {@code null} if the request should be sent.
+	 */
+	private static Response inject(FaultProfile profile, BindingSession session) {
+		if (profile == null) {
+			return null;
+		}
+
+		long latency = profile.nextLatency();
+		int readTimeout = session.get(SessionParameter.READ_TIMEOUT, -1);
+		if (readTimeout > 0 && latency >= readTimeout) {
+			sleep(readTimeout);
+			throw new CmisConnectionException("Read timed out (injected latency of " + latency + " ms)");
+		}
+		sleep(latency);
+
+		switch (profile.nextFault()) {
+		case DROP:
+			throw new CmisConnectionException("Connection reset (injected)");
+		case SERVICE_UNAVAILABLE:
+			return createErrorResponse(503, "Service Unavailable", "serviceUnavailable");
+		case TOO_MANY_REQUESTS:
+			return createErrorResponse(429, "Too Many Requests", "tooManyRequests");
+		default:
+			return null;
+		}
+	}
+
+	private static void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CmisConnectionException("Interrupted", e);
+		}
+	}
+
+	private static Response createErrorResponse(int code, String message, String exception) {
+		Map<String, List<String>> headers = new HashMap<String, List<String>>();
+		headers.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+		headers.put("Retry-After", Collections.singletonList(RETRY_AFTER_SECONDS));
+
+		byte[] body = ("{\"exception\":\"" + exception + "\",\"message\":\"" + message + " (injected)\"}")
+				.getBytes(UTF8);
+
+		return new Response(code, message, headers, null, new ByteArrayInputStream(body));
+	}
+
+	private static Response throttle(FaultProfile profile, Response response) {
+		if (profile == null || profile.getBandwidth() <= 0) {
+			return response;
+		}
+
+		return new ThrottledResponse(response, profile.getBandwidth());
+	}
+
+	/**
+	 * Response that limits the speed of the response stream.
+	 */
+	private static class ThrottledResponse extends Response {
+		private final Response response;
+		private final long bytesPerSecond;
+		private InputStream stream;
+
+		public ThrottledResponse(Response response, long bytesPerSecond) {
+			super(response.getResponseCode(), response.getResponseMessage(), response.getHeaders(), null, null);
+			this.response = response;
+			this.bytesPerSecond = bytesPerSecond;
+		}
+
+		@Override
+		public BigInteger getContentLength() {
+			return response.getContentLength();
+		}
+
+		@Override
+		public boolean hasResponseStream() {
+			return response.hasResponseStream();
+		}
+
+		@Override
+		public synchronized InputStream getStream() {
+			if (stream == null && response.getStream() != null) {
+				stream = new FilterInputStream(response.getStream()) {
+					private final long start = System.nanoTime();
+					private long count;
+
+					@Override
+					public int read() throws IOException {
+						int b = super.read();
+						if (b > -1) {
+							pause(1);
+						}
+						return b;
+					}
+
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						int n = super.read(b, off, len);
+						if (n > 0) {
+							pause(n);
+						}
+						return n;
+					}
+
+					private void pause(long n) throws IOException {
+						count += n;
+
+						long due = count * 1000L / bytesPerSecond;
+						long elapsed = (System.nanoTime() - start) / 1000000L;
+						if (due > elapsed) {
+							try {
+								Thread.sleep(due - elapsed);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+								throw new InterruptedIOException();
+							}
+						}
+					}
+				};
+			}
+
+			return stream;
+		}
+
+		@Override
+		public String getErrorContent() {
+			return response.getErrorContent();
+		}
+	}
+}
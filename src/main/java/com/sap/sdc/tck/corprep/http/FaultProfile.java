@@ -0,0 +1,217 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.http;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.sap.sdc.tck.corprep.bench.ByteSize;
+
+/**
+ * Describes the latency and the faults that {@link FaultInjectingHttpInvoker}
+ * adds to each HTTP call.
+ * <p>
+ * A profile is a comma separated list of {@code key=value} entries:
+ * <ul>
+ * <li>{@code latency=<ms>}, {@code latency=<min>-<max>} (uniform) or
+ * {@code latency=exp:<mean>} (exponential, long tail)</li>
+ * <li>{@code spike=<percent>:<ms>} adds a latency spike to some calls</li>
+ * <li>{@code bandwidth=<bytes per second>} limits the download speed, the
+ * suffixes {@code k} and {@code m} are supported</li>
+ * <li>{@code drop=<percent>} drops the connection</li>
+ * <li>{@code 503=<percent>} and {@code 429=<percent>} return these status
+ * codes instead of calling the server</li>
+ * </ul>
+ * Percentages may have decimals.
+ */
+public class FaultProfile {
+
+	/** Session parameter that contains the profile of a session. */
+	public static final String PARAMETER = "com.sap.sdc.tck.faults";
+
+	/** Prefix of session parameters that define additional named profiles. */
+	public static final String PROFILE_PREFIX = "com.sap.sdc.tck.faults.profile.";
+
+	/** Built-in profiles by name. */
+	public static final Map<String, String> BUILT_IN;
+
+	static {
+		Map<String, String> profiles = new LinkedHashMap<String, String>();
+		profiles.put("slow-network", "latency=100-300,bandwidth=256k");
+		profiles.put("mobile", "latency=150-600,bandwidth=64k,drop=1");
+		profiles.put("tail-latency", "latency=exp:50,spike=5:3000");
+		profiles.put("flaky", "drop=2,503=2,429=2");
+		profiles.put("throttled", "429=10");
+		BUILT_IN = Collections.unmodifiableMap(profiles);
+	}
+
+	/** Kind of fault of a single call. */
+	public enum Fault {
+		NONE, DROP, SERVICE_UNAVAILABLE, TOO_MANY_REQUESTS
+	}
+
+	private final String spec;
+	private long latencyMin;
+	private long latencyMax;
+	private double latencyMean;
+	private double spikePercent;
+	private long spikeMillis;
+	private long bandwidth;
+	private double dropPercent;
+	private double serviceUnavailablePercent;
+	private double tooManyRequestsPercent;
+
+	private FaultProfile(String spec) {
+		this.spec = spec;
+	}
+
+	/**
+	 * Parses a profile.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the profile is invalid
+	 */
+	public static FaultProfile parse(String spec) {
+		FaultProfile profile = new FaultProfile(spec.trim());
+
+		for (String entry : spec.split(",")) {
+			entry = entry.trim();
+			if (entry.isEmpty()) {
+				continue;
+			}
+
+			int eq = entry.indexOf('=');
+			if (eq < 1) {
+				throw new IllegalArgumentException("Invalid fault profile entry: " + entry);
+			}
+
+			String key = entry.substring(0, eq).trim().toLowerCase(Locale.ENGLISH);
+			String value = entry.substring(eq + 1).trim();
+
+			try {
+				if ("latency".equals(key)) {
+					if (value.startsWith("exp:")) {
+						profile.latencyMean = Double.parseDouble(value.substring(4));
+					} else if (value.indexOf('-') > 0) {
+						profile.latencyMin = Long.parseLong(value.substring(0, value.indexOf('-')).trim());
+						profile.latencyMax = Long.parseLong(value.substring(value.indexOf('-') + 1).trim());
+					} else {
+						profile.latencyMin = Long.parseLong(value);
+						profile.latencyMax = profile.latencyMin;
+					}
+				} else if ("spike".equals(key)) {
+					int colon = value.indexOf(':');
+					profile.spikePercent = Double.parseDouble(value.substring(0, colon));
+					profile.spikeMillis = Long.parseLong(value.substring(colon + 1));
+				} else if ("bandwidth".equals(key)) {
+					profile.bandwidth = ByteSize.parse(value);
+				} else if ("drop".equals(key)) {
+					profile.dropPercent = Double.parseDouble(value);
+				} else if ("503".equals(key)) {
+					profile.serviceUnavailablePercent = Double.parseDouble(value);
+				} else if ("429".equals(key)) {
+					profile.tooManyRequestsPercent = Double.parseDouble(value);
+				} else {
+					throw new IllegalArgumentException("Unknown fault profile entry: " + entry);
+				}
+			} catch (RuntimeException e) {
+				if (e instanceof IllegalArgumentException && !(e instanceof NumberFormatException)) {
+					throw e;
+				}
+				throw new IllegalArgumentException("Invalid fault profile entry: " + entry, e);
+			}
+		}
+
+		if (profile.latencyMax < profile.latencyMin) {
+			throw new IllegalArgumentException("Invalid latency range: " + spec);
+		}
+
+		return profile;
+	}
+
+	/**
+	 * Returns the definition of a named profile. Profiles defined in the
+	 * parameters take precedence over built-in profiles. Returns {@code null}
+	 * if there is no such profile.
+	 */
+	public static String getDefinition(String name, Map<String, String> parameters) {
+		String spec = parameters.get(PROFILE_PREFIX + name);
+		if (spec != null) {
+			return spec;
+		}
+
+		return BUILT_IN.get(name);
+	}
+
+	/**
+	 * Returns the latency of the next call in milliseconds.
+	 */
+	public long nextLatency() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		long latency = latencyMin;
+		if (latencyMax > latencyMin) {
+			latency += (long) (random.nextDouble() * (latencyMax - latencyMin + 1));
+		}
+		if (latencyMean > 0) {
+			latency += (long) (-latencyMean * Math.log(1.0 - random.nextDouble()));
+		}
+		if (spikePercent > 0 && random.nextDouble() * 100 < spikePercent) {
+			latency += spikeMillis;
+		}
+
+		return latency;
+	}
+
+	/**
+	 * Returns the fault of the next call.
+	 */
+	public Fault nextFault() {
+		double r = ThreadLocalRandom.current().nextDouble() * 100;
+
+		if (r < dropPercent) {
+			return Fault.DROP;
+		}
+		r -= dropPercent;
+
+		if (r < serviceUnavailablePercent) {
+			return Fault.SERVICE_UNAVAILABLE;
+		}
+		r -= serviceUnavailablePercent;
+
+		if (r < tooManyRequestsPercent) {
+			return Fault.TOO_MANY_REQUESTS;
+		}
+
+		return Fault.NONE;
+	}
+
+	/**
+	 * Returns the bandwidth limit in bytes per second, or 0 if there is no
+	 * limit.
+	 */
+	public long getBandwidth() {
+		return bandwidth;
+	}
+
+	@Override
+	public String toString() {
+		return spec;
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single recorded HTTP request.
+ * <p>
+ * The latency is the time until the response status and headers have been
+ * received. The number of received bytes keeps growing while the caller
+ * reads the response body.
+ */
+public class HttpCall {
+
+	/** Status of a call that failed without a response. */
+	public static final int STATUS_FAILED = -1;
+
+	private final String method;
+	private final String selector;
+	private final int status;
+	private final long bytesOut;
+	private final long latencyMicros;
+	private final AtomicLong bytesIn = new AtomicLong();
+
+	public HttpCall(String method, String selector, int status, long bytesOut, long latencyMicros) {
+		this.method = method;
+		this.selector = selector;
+		this.status = status;
+		this.bytesOut = bytesOut;
+		this.latencyMicros = latencyMicros;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * Returns the CMIS selector or action, or {@code null} if it is unknown.
+	 */
+	public String getSelector() {
+		return selector;
+	}
+
+	/**
+	 * Returns the HTTP status code, or {@link #STATUS_FAILED} if the call
+	 * failed without a response.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	public boolean isFailed() {
+		return status == STATUS_FAILED;
+	}
+
+	public long getBytesOut() {
+		return bytesOut;
+	}
+
+	public long getBytesIn() {
+		return bytesIn.get();
+	}
+
+	void addBytesIn(long bytes) {
+		bytesIn.addAndGet(bytes);
+	}
+
+	public long getLatencyMicros() {
+		return latencyMicros;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + (selector == null ? "<unknown>" : selector) + " -> " + (isFailed() ? "failed" : String.valueOf(status)) + " ("
+				+ (latencyMicros / 1000) + " ms, " + bytesOut + " bytes sent, " + getBytesIn() + " bytes received)";
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.http;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.chemistry.opencmis.tck.CmisTest;
+import org.apache.chemistry.opencmis.tck.impl.AbstractCmisTest;
+import org.apache.chemistry.opencmis.tck.impl.CmisTestResultImpl;
+
+/**
+ * Collects the HTTP calls of a test.
+ * <p>
+ * A log is bound to the current thread with {@link #start()} and released with
+ * {@link #stop()}. Threads that are created while a log is bound inherit it,
+ * so the calls of worker threads that a test starts are recorded as well.
+ * {@link InstrumentingHttpInvoker} records every call into the log of the
+ * calling thread. As long as each test runs on its own thread and creates its
+ * own worker threads, a log started before a test contains exactly the calls
+ * of that test, even if several tests run in parallel.
+ */
+public class HttpCallLog {
+
+	/** Maximum number of calls that are kept in detail. */
+	public static final int MAX_DETAILED_CALLS = 500;
+
+	private static final InheritableThreadLocal<HttpCallLog> CURRENT = new InheritableThreadLocal<HttpCallLog>();
+
+	private final List<HttpCall> calls = new ArrayList<HttpCall>();
+	private long callCount;
+	private long failedCount;
+	private long totalLatencyMicros;
+	private long bytesOut;
+	private final AtomicLong bytesIn = new AtomicLong();
+	private HttpCall slowest;
+
+	/**
+	 * Binds a new log to the current thread and returns it.
+	 */
+	public static HttpCallLog start() {
+		HttpCallLog log = new HttpCallLog();
+		CURRENT.set(log);
+		return log;
+	}
+
+	/**
+	 * Releases the log of the current thread and returns it, or {@code null}
+	 * if there is no log. Threads that have inherited the log keep it until
+	 * they end.
+	 */
+	public static HttpCallLog stop() {
+		HttpCallLog log = CURRENT.get();
+		CURRENT.remove();
+		return log;
+	}
+
+	/**
+	 * Returns the log of the current thread, or {@code null} if there is no
+	 * log.
+	 */
+	public static HttpCallLog current() {
+		return CURRENT.get();
+	}
+
+	public synchronized void add(HttpCall call) {
+		callCount++;
+		if (call.isFailed()) {
+			failedCount++;
+		}
+		totalLatencyMicros += call.getLatencyMicros();
+		bytesOut += call.getBytesOut();
+
+		if (slowest == null || call.getLatencyMicros() > slowest.getLatencyMicros()) {
+			slowest = call;
+		}
+
+		if (calls.size() < MAX_DETAILED_CALLS) {
+			calls.add(call);
+		}
+	}
+
+	public synchronized long getCallCount() {
+		return callCount;
+	}
+
+	/**
+	 * Returns the number of calls that failed without a response.
+	 */
+	public synchronized long getFailedCount() {
+		return failedCount;
+	}
+
+	public synchronized long getTotalLatencyMicros() {
+		return totalLatencyMicros;
+	}
+
+	public synchronized long getBytesOut() {
+		return bytesOut;
+	}
+
+	public long getBytesIn() {
+		return bytesIn.get();
+	}
+
+	void addBytesIn(HttpCall call, long bytes) {
+		call.addBytesIn(bytes);
+		bytesIn.addAndGet(bytes);
+	}
+
+	public synchronized HttpCall getSlowest() {
+		return slowest;
+	}
+
+	public synchronized List<HttpCall> getCalls() {
+		return new ArrayList<HttpCall>(calls);
+	}
+
+	/**
+	 * Returns a one line summary of the log.
+	 */
+	public synchronized String getSummary() {
+		StringBuilder sb = new StringBuilder(128);
+		sb.append("HTTP calls: ").append(callCount);
+		if (failedCount > 0) {
+			sb.append(" (").append(failedCount).append(" failed)");
+		}
+		sb.append(", bytes sent: ").append(bytesOut);
+		sb.append(", bytes received: ").append(getBytesIn());
+		sb.append(", total latency: ").append(totalLatencyMicros / 1000).append(" ms");
+		if (slowest != null) {
+			sb.append(", slowest call: ").append(slowest);
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Adds the summary of this log as an INFO result to the given test. The
+	 * individual calls are added as children of the summary result.
+	 */
+	public void attachTo(CmisTest test) {
+		if (!(test instanceof AbstractCmisTest)) {
+			return;
+		}
+
+		AbstractCmisTest cmisTest = (AbstractCmisTest) test;
+
+		CmisTestResultImpl summary = cmisTest.createResult(INFO, getSummary());
+		for (HttpCall call : getCalls()) {
+			summary.getChildren().add(cmisTest.createResult(INFO, call.toString()));
+		}
+
+		if (getCallCount() > MAX_DETAILED_CALLS) {
+			summary.getChildren().add(cmisTest.createResult(INFO,
+					(getCallCount() - MAX_DETAILED_CALLS) + " more calls are not listed."));
+		}
+
+		cmisTest.addResult(summary);
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.http;
+
+import org.apache.chemistry.opencmis.tck.CmisTest;
+import org.apache.chemistry.opencmis.tck.CmisTestGroup;
+import org.apache.chemistry.opencmis.tck.CmisTestProgressMonitor;
+
+/**
+ * Progress monitor that records the HTTP calls of each test and attaches
+ * them to the test results before the delegate sees the finished test.
+ * <p>
+ * This only works if the tests run on the thread that calls the monitor,
+ * which is the case for serial runs.
+ */
+public class HttpCallLogProgressMonitor implements CmisTestProgressMonitor {
+
+	private final CmisTestProgressMonitor delegate;
+
+	public HttpCallLogProgressMonitor(CmisTestProgressMonitor delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void startGroup(CmisTestGroup group) {
+		delegate.startGroup(group);
+	}
+
+	@Override
+	public void endGroup(CmisTestGroup group) {
+		delegate.endGroup(group);
+	}
+
+	@Override
+	public void startTest(CmisTest test) {
+		delegate.startTest(test);
+		HttpCallLog.start();
+	}
+
+	@Override
+	public void endTest(CmisTest test) {
+		HttpCallLog log = HttpCallLog.stop();
+		if (log != null) {
+			log.attachTo(test);
+		}
+
+		delegate.endTest(test);
+	}
+
+	@Override
+	public void message(String msg) {
+		delegate.message(msg);
+	}
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.http;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.chemistry.opencmis.client.bindings.spi.BindingSession;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.DefaultHttpInvoker;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.HttpInvoker;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Output;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
+
+/**
+ * HTTP invoker that records every request into the {@link HttpCallLog} of the
+ * calling thread.
+ * <p>
+ * To use it, set the session parameter
+ * {@code org.apache.chemistry.opencmis.binding.httpinvoker.classname} to the
+ * name of this class. The requests are sent by the {@link DefaultHttpInvoker}.
+ * If the calling thread has no log, requests are passed through unchanged.
+ * <p>
+ * The CMIS selector is taken from the {@code cmisselector} URL parameter. For
+ * Browser binding POST requests it is taken from the {@code cmisaction} form
+ * field at the beginning of the request body. Received bytes are counted after
+ * decompression. Requests that fail without a response, for example because
+ * the connection was reset, are recorded as failed calls.
+ */
+public class InstrumentingHttpInvoker implements HttpInvoker {
+
+	private static final Pattern SELECTOR_PATTERN = Pattern.compile("[?&]cmisselector=([^&]+)");
+	private static final Pattern ACTION_URL_PATTERN = Pattern.compile("cmisaction=([A-Za-z]+)");
+	private static final Pattern ACTION_MULTIPART_PATTERN = Pattern
+			.compile("name=\"cmisaction\"\\s*(?:Content-[^\\r\\n]*\\s*)*\\r?\\n\\r?\\n([A-Za-z]+)");
+	private static final int BODY_PREFIX_SIZE = 2048;
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	private final HttpInvoker delegate;
+
+	public InstrumentingHttpInvoker() {
+		this(new DefaultHttpInvoker());
+	}
+
+	/**
+	 * Creates an invoker that records the requests sent by the given invoker.
+	 */
+	protected InstrumentingHttpInvoker(HttpInvoker delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Response invokeGET(UrlBuilder url, BindingSession session) {
+		HttpCallLog log = HttpCallLog.current();
+		if (log == null) {
+			return delegate.invokeGET(url, session);
+		}
+
+		long start = System.nanoTime();
+		Response response = null;
+		try {
+			response = delegate.invokeGET(url, session);
+		} finally {
+			response = record(log, "GET", getSelector(url), 0, start, response);
+		}
+
+		return response;
+	}
+
+	@Override
+	public Response invokeGET(UrlBuilder url, BindingSession session, BigInteger offset, BigInteger length) {
+		HttpCallLog log = HttpCallLog.current();
+		if (log == null) {
+			return delegate.invokeGET(url, session, offset, length);
+		}
+
+		long start = System.nanoTime();
+		Response response = null;
+		try {
+			response = delegate.invokeGET(url, session, offset, length);
+		} finally {
+			response = record(log, "GET", getSelector(url), 0, start, response);
+		}
+
+		return response;
+	}
+
+	@Override
+	public Response invokePOST(UrlBuilder url, String contentType, Output writer, BindingSession session) {
+		HttpCallLog log = HttpCallLog.current();
+		if (log == null) {
+			return delegate.invokePOST(url, contentType, writer, session);
+		}
+
+		CountingOutput output = new CountingOutput(writer);
+		long start = System.nanoTime();
+		Response response = null;
+		try {
+			response = delegate.invokePOST(url, contentType, output, session);
+		} finally {
+			response = record(log, "POST", output.getAction(), output.getCount(), start, response);
+		}
+
+		return response;
+	}
+
+	@Override
+	public Response invokePUT(UrlBuilder url, String contentType, Map<String, String> headers, Output writer,
+			BindingSession session) {
+		HttpCallLog log = HttpCallLog.current();
+		if (log == null) {
+			return delegate.invokePUT(url, contentType, headers, writer, session);
+		}
+
+		CountingOutput output = new CountingOutput(writer);
+		long start = System.nanoTime();
+		Response response = null;
+		try {
+			response = delegate.invokePUT(url, contentType, headers, output, session);
+		} finally {
+			response = record(log, "PUT", getSelector(url), output.getCount(), start, response);
+		}
+
+		return response;
+	}
+
+	@Override
+	public Response invokeDELETE(UrlBuilder url, BindingSession session) {
+		HttpCallLog log = HttpCallLog.current();
+		if (log == null) {
+			return delegate.invokeDELETE(url, session);
+		}
+
+		long start = System.nanoTime();
+		Response response = null;
+		try {
+			response = delegate.invokeDELETE(url, session);
+		} finally {
+			response = record(log, "DELETE", getSelector(url), 0, start, response);
+		}
+
+		return response;
+	}
+
+	/**
+	 * Records a call. A call that failed without a response is recorded with
+	 * the status {@link HttpCall#STATUS_FAILED} and {@code null} is returned.
+	 */
+	private Response record(HttpCallLog log, String method, String selector, long bytesOut, long start,
+			Response response) {
+		HttpCall call = new HttpCall(method, selector,
+				response == null ? HttpCall.STATUS_FAILED : response.getResponseCode(), bytesOut,
+				(System.nanoTime() - start) / 1000L);
+		log.add(call);
+
+		if (response == null) {
+			return null;
+		}
+
+		if (response.getErrorContent() != null) {
+			log.addBytesIn(call, response.getErrorContent().length());
+		}
+
+		return new CountingResponse(response, log, call);
+	}
+
+	private static String getSelector(UrlBuilder url) {
+		Matcher m = SELECTOR_PATTERN.matcher(url.toString());
+		return m.find() ? m.group(1) : null;
+	}
+
+	/**
+	 * Counts the bytes of a request body and keeps its beginning to find the
+	 * CMIS action.
+	 */
+	private static class CountingOutput implements Output {
+		private final Output writer;
+		private final byte[] prefix = new byte[BODY_PREFIX_SIZE];
+		private int prefixLength;
+		private long count;
+
+		public CountingOutput(Output writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void write(OutputStream out) throws Exception {
+			writer.write(new FilterOutputStream(out) {
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+					capture(new byte[] { (byte) b }, 0, 1);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+					capture(b, off, len);
+				}
+			});
+		}
+
+		private void capture(byte[] b, int off, int len) {
+			count += len;
+
+			int n = Math.min(len, prefix.length - prefixLength);
+			if (n > 0) {
+				System.arraycopy(b, off, prefix, prefixLength, n);
+				prefixLength += n;
+			}
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public String getAction() {
+			String body = new String(prefix, 0, prefixLength, ISO_8859_1);
+
+			Matcher m = ACTION_MULTIPART_PATTERN.matcher(body);
+			if (m.find()) {
+				return m.group(1);
+			}
+
+			m = ACTION_URL_PATTERN.matcher(body);
+			return m.find() ? m.group(1) : null;
+		}
+	}
+
+	/**
+	 * Response that counts the bytes read from the response stream.
+	 */
+	private static class CountingResponse extends Response {
+		private final Response response;
+		private final HttpCallLog log;
+		private final HttpCall call;
+		private InputStream stream;
+
+		public CountingResponse(Response response, HttpCallLog log, HttpCall call) {
+			super(response.getResponseCode(), response.getResponseMessage(), response.getHeaders(), null, null);
+			this.response = response;
+			this.log = log;
+			this.call = call;
+		}
+
+		@Override
+		public BigInteger getContentLength() {
+			return response.getContentLength();
+		}
+
+		@Override
+		public boolean hasResponseStream() {
+			return response.hasResponseStream();
+		}
+
+		@Override
+		public synchronized InputStream getStream() {
+			if (stream == null && response.getStream() != null) {
+				stream = new FilterInputStream(response.getStream()) {
+					@Override
+					public int read() throws IOException {
+						int b = super.read();
+						if (b > -1) {
+							log.addBytesIn(call, 1);
+						}
+						return b;
+					}
+
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						int n = super.read(b, off, len);
+						if (n > 0) {
+							log.addBytesIn(call, n);
+						}
+						return n;
+					}
+
+					@Override
+					public long skip(long n) throws IOException {
+						long skipped = super.skip(n);
+						if (skipped > 0) {
+							log.addBytesIn(call, skipped);
+						}
+						return skipped;
+					}
+				};
+			}
+
+			return stream;
+		}
+
+		@Override
+		public String getErrorContent() {
+			return response.getErrorContent();
+		}
+	}
+}
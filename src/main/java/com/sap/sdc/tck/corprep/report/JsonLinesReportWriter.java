@@ -0,0 +1,224 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.report;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.commons.SessionParameter;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.impl.json.JSONArray;
+import org.apache.chemistry.opencmis.commons.impl.json.JSONObject;
+import org.apache.chemistry.opencmis.tck.CmisTest;
+import org.apache.chemistry.opencmis.tck.CmisTestGroup;
+import org.apache.chemistry.opencmis.tck.CmisTestProgressMonitor;
+import org.apache.chemistry.opencmis.tck.CmisTestResult;
+import org.apache.chemistry.opencmis.tck.CmisTestResultStatus;
+
+/**
+ * Writes a JSON Lines report while the tests are running.
+ * <p>
+ * Every line is a JSON object with a {@code type} field. The first line
+ * ({@code start}) contains the session parameters, then there is one line per
+ * finished test ({@code test}) and the last line ({@code end}) contains the
+ * number of tests per worst status. Each line is flushed immediately, so the
+ * report can be followed while the run is still going and survives a crash of
+ * the runner.
+ * <p>
+ * The results of a test are released after they have been written, which
+ * keeps the memory consumption constant. All other progress monitor calls
+ * are passed on to a delegate.
+ */
+public class JsonLinesReportWriter implements CmisTestProgressMonitor {
+
+	private final Writer writer;
+	private final CmisTestProgressMonitor delegate;
+	private final long[] statusCounts = new long[CmisTestResultStatus.values().length];
+	private String currentGroup;
+	private IOException lastException;
+
+	public JsonLinesReportWriter(Writer writer, CmisTestProgressMonitor delegate) {
+		this.writer = writer;
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Writes the start line.
+	 */
+	public void start(Map<String, String> parameters) throws IOException {
+		JSONObject jsonParameters = new JSONObject();
+		for (Map.Entry<String, String> p : parameters.entrySet()) {
+			if (SessionParameter.PASSWORD.equals(p.getKey())) {
+				jsonParameters.put(p.getKey(), "*****");
+			} else {
+				jsonParameters.put(p.getKey(), p.getValue());
+			}
+		}
+
+		JSONObject line = new JSONObject();
+		line.put("type", "start");
+		line.put("timestamp", System.currentTimeMillis());
+		line.put("parameters", jsonParameters);
+
+		writeLine(line);
+	}
+
+	/**
+	 * Writes the end line.
+	 */
+	public void end() throws IOException {
+		JSONObject summary = new JSONObject();
+		for (CmisTestResultStatus status : CmisTestResultStatus.values()) {
+			summary.put(status.name(), statusCounts[status.ordinal()]);
+		}
+
+		JSONObject line = new JSONObject();
+		line.put("type", "end");
+		line.put("timestamp", System.currentTimeMillis());
+		line.put("summary", summary);
+
+		writeLine(line);
+	}
+
+	/**
+	 * Returns the last exception that occurred while writing a test line, or
+	 * {@code null}.
+	 */
+	public IOException getLastException() {
+		return lastException;
+	}
+
+	@Override
+	public void startGroup(CmisTestGroup group) {
+		currentGroup = group.getName();
+		if (delegate != null) {
+			delegate.startGroup(group);
+		}
+	}
+
+	@Override
+	public void endGroup(CmisTestGroup group) {
+		if (delegate != null) {
+			delegate.endGroup(group);
+		}
+	}
+
+	@Override
+	public void startTest(CmisTest test) {
+		if (delegate != null) {
+			delegate.startTest(test);
+		}
+	}
+
+	@Override
+	public void endTest(CmisTest test) {
+		if (delegate != null) {
+			delegate.endTest(test);
+		}
+
+		List<CmisTestResult> results = test.getResults();
+
+		JSONObject line = new JSONObject();
+		line.put("type", "test");
+		line.put("timestamp", System.currentTimeMillis());
+		line.put("group", currentGroup);
+		line.put("name", test.getName());
+		line.put("time", test.getTime());
+
+		CmisTestResultStatus worst = CmisTestResultStatus.OK;
+		if (results != null) {
+			JSONArray jsonResults = new JSONArray();
+			for (CmisTestResult result : results) {
+				jsonResults.add(toJson(result));
+				if (result.getStatus().getLevel() > worst.getLevel()) {
+					worst = result.getStatus();
+				}
+			}
+			line.put("results", jsonResults);
+		}
+		line.put("status", worst.name());
+		statusCounts[worst.ordinal()]++;
+
+		try {
+			writeLine(line);
+		} catch (IOException e) {
+			lastException = e;
+		}
+
+		if (results != null) {
+			results.clear();
+		}
+	}
+
+	@Override
+	public void message(String msg) {
+		if (delegate != null) {
+			delegate.message(msg);
+		}
+	}
+
+	private JSONObject toJson(CmisTestResult result) {
+		JSONObject jsonResult = new JSONObject();
+
+		jsonResult.put("status", result.getStatus().name());
+		jsonResult.put("message", result.getMessage());
+
+		if (result.getStackTrace() != null && result.getStackTrace().length > 0) {
+			jsonResult.put("file",
+					result.getStackTrace()[0].getFileName() + ":" + result.getStackTrace()[0].getLineNumber());
+		}
+
+		if (result.getException() != null) {
+			jsonResult.put("exception", result.getException().getMessage());
+
+			if (result.getStatus() == CmisTestResultStatus.UNEXPECTED_EXCEPTION) {
+				StringWriter sw = new StringWriter();
+				result.getException().printStackTrace(new PrintWriter(sw));
+				jsonResult.put("stacktrace", sw.toString());
+			}
+
+			if (result.getException() instanceof CmisBaseException
+					&& ((CmisBaseException) result.getException()).getErrorContent() != null) {
+				jsonResult.put("errorcontent", ((CmisBaseException) result.getException()).getErrorContent());
+			}
+		}
+
+		if (result.getRequest() != null) {
+			jsonResult.put("request", result.getRequest());
+			jsonResult.put("response", result.getResponse());
+		}
+
+		if (result.getChildren() != null && !result.getChildren().isEmpty()) {
+			JSONArray children = new JSONArray();
+			for (CmisTestResult child : result.getChildren()) {
+				children.add(toJson(child));
+			}
+			jsonResult.put("results", children);
+		}
+
+		return jsonResult;
+	}
+
+	private synchronized void writeLine(JSONObject line) throws IOException {
+		line.writeJSONString(writer);
+		writer.write('\n');
+		writer.flush();
+	}
+}
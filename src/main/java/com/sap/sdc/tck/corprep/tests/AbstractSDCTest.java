@@ -16,43 +16,206 @@
 package com.sap.sdc.tck.corprep.tests;
 
 import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
 import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.UNEXPECTED_EXCEPTION;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.chemistry.opencmis.client.api.CmisObject;
 import org.apache.chemistry.opencmis.client.api.Document;
 import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
 import org.apache.chemistry.opencmis.client.api.QueryResult;
 import org.apache.chemistry.opencmis.client.api.Session;
-import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.ContentStream;
 import org.apache.chemistry.opencmis.tck.impl.TestParameters;
 import org.apache.chemistry.opencmis.tck.tests.query.AbstractQueryTest;
 
 public abstract class AbstractSDCTest extends AbstractQueryTest {
 
-	protected Folder getReadOnlyTestFolder(Session session) {
+	/**
+	 * Session parameter with the time in seconds the workers of a test may
+	 * take before they are cancelled.
+	 */
+	public static final String WORKER_TIMEOUT = "com.sap.sdc.tck.workerTimeout";
+
+	private static final int DEFAULT_WORKER_TIMEOUT = 30 * 60;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Returns the snapshot of the read-only test folder. If the test group
+	 * shares a snapshot, it is built only once.
+	 */
+	protected ReadOnlyFixture getReadOnlyFixture(Session session) {
 		String testFolderPath = getParameters().get(TestParameters.DEFAULT_TEST_FOLDER_PARENT);
 		if (testFolderPath == null) {
 			testFolderPath = TestParameters.DEFAULT_TEST_FOLDER_PARENT_VALUE;
 		}
 
-		Folder folder = null;
+		ReadOnlyFixture fixture;
+		if (getGroup() instanceof ReadOnlyFixture.Provider) {
+			fixture = ((ReadOnlyFixture.Provider) getGroup()).getReadOnlyFixture(session, testFolderPath);
+		} else {
+			fixture = ReadOnlyFixture.create(session, testFolderPath);
+		}
+
+		if (fixture.getError() != null) {
+			addResult(createResult(UNEXPECTED_EXCEPTION,
+					"Test folder could not be retrieved! Exception: " + fixture.getError().getMessage(),
+					fixture.getError(), true));
+		} else if (fixture.isNotAFolder()) {
+			addResult(createResult(FAILURE, "Test folder is actually not a folder! Path: " + testFolderPath, true));
+		}
+
+		return fixture;
+	}
+
+	protected Folder getReadOnlyTestFolder(Session session) {
+		return getReadOnlyFixture(session).getFolder(session);
+	}
+
+	/**
+	 * Returns the positive integer value of a session parameter, or the
+	 * default value if the parameter is not set. An invalid value is
+	 * reported as warning and replaced by the default value.
+	 */
+	protected int getIntParameter(String key, int defaultValue) {
+		String value = getParameters().get(key);
+		if (value == null) {
+			return defaultValue;
+		}
+
 		try {
-			CmisObject cmisObject = session.getObjectByPath(testFolderPath, SELECT_ALL_NO_CACHE_OC);
-			if (!(cmisObject instanceof Folder)) {
-				addResult(createResult(FAILURE, "Test folder is actually not a folder! Path: " + testFolderPath, true));
+			int result = Integer.parseInt(value.trim());
+			if (result > 0) {
+				return result;
 			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
 
-			folder = (Folder) cmisObject;
-		} catch (CmisBaseException e) {
-			addResult(createResult(UNEXPECTED_EXCEPTION,
-					"Test folder could not be retrieved! Exception: " + e.getMessage(), e, true));
+		addResult(createResult(WARNING, "Invalid value '" + value + "' of " + key + "! Using " + defaultValue
+				+ " instead."));
+		return defaultValue;
+	}
+
+	/**
+	 * Returns the distinct integers of a comma separated session parameter in
+	 * ascending order, or those of the default value if the parameter is not
+	 * set. Values that are no integers or smaller than {@code minValue} are
+	 * reported as warning and left out. If no valid value remains, the
+	 * default value is used.
+	 */
+	protected List<Integer> getIntListParameter(String key, String defaultValue, int minValue) {
+		String value = getParameters().get(key);
+		if (value == null) {
+			return parseIntList(defaultValue, minValue, new ArrayList<String>());
+		}
+
+		List<String> invalid = new ArrayList<String>();
+		List<Integer> result = parseIntList(value, minValue, invalid);
+		if (!invalid.isEmpty()) {
+			addResult(createResult(WARNING, "Invalid values " + invalid + " of " + key + " are ignored!"));
+		}
+		if (result.isEmpty()) {
+			addResult(createResult(WARNING, "No valid value in " + key + "! Using " + defaultValue + " instead."));
+			return parseIntList(defaultValue, minValue, invalid);
+		}
+
+		return result;
+	}
+
+	private static List<Integer> parseIntList(String value, int minValue, List<String> invalid) {
+		List<Integer> result = new ArrayList<Integer>();
+		for (String item : value.split(",")) {
+			if (item.trim().length() == 0) {
+				continue;
+			}
+
+			try {
+				int n = Integer.parseInt(item.trim());
+				if (n < minValue) {
+					invalid.add(item.trim());
+				} else if (!result.contains(n)) {
+					result.add(n);
+				}
+			} catch (NumberFormatException e) {
+				invalid.add(item.trim());
+			}
 		}
+		Collections.sort(result);
+
+		return result;
+	}
 
-		return folder;
+	/**
+	 * Returns the time in milliseconds the workers of a test may take.
+	 */
+	protected long getWorkerTimeout() {
+		return getIntParameter(WORKER_TIMEOUT, DEFAULT_WORKER_TIMEOUT) * 1000L;
+	}
+
+	/**
+	 * Shuts the executor down and waits until its tasks have finished. Tasks
+	 * that are still running after the worker timeout are cancelled and
+	 * reported as failure. Returns {@code false} if the tasks have been
+	 * cancelled or the thread has been interrupted.
+	 */
+	protected boolean awaitWorkers(ExecutorService executor, String what) {
+		executor.shutdown();
+
+		long timeout = getWorkerTimeout();
+		try {
+			if (executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+
+			executor.shutdownNow();
+			addResult(createResult(FAILURE, what + " did not finish within " + timeout / 1000
+					+ " seconds and have been cancelled! (" + WORKER_TIMEOUT + ")"));
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+
+		return false;
+	}
+
+	/**
+	 * Creates the operation context for documents whose content is
+	 * downloaded. It selects the properties needed to identify a document and
+	 * its content stream and disables the cache.
+	 */
+	protected static OperationContext createContentContext(Session session) {
+		OperationContext context = session.createOperationContext();
+		context.setFilter(new HashSet<String>(Arrays.asList(PropertyIds.OBJECT_ID, PropertyIds.OBJECT_TYPE_ID,
+				PropertyIds.BASE_TYPE_ID, PropertyIds.NAME, PropertyIds.CONTENT_STREAM_LENGTH,
+				PropertyIds.CONTENT_STREAM_ID)));
+		context.setIncludeAllowableActions(false);
+		context.setIncludePolicies(false);
+		context.setIncludeAcls(false);
+		context.setRenditionFilterString("cmis:none");
+		context.setCacheEnabled(false);
+		context.setMaxItemsPerPage(100);
+
+		return context;
 	}
 
 	protected Document findADocument(Folder folder) {
-		for (CmisObject child : folder.getChildren()) {
+		for (CmisObject child : folder.getChildren(ReadOnlyFixture.createScanContext())) {
 			if (child instanceof Document) {
 				return (Document) child;
 			}
@@ -62,7 +225,7 @@ public abstract class AbstractSDCTest extends AbstractQueryTest {
 	}
 
 	protected Folder findAFolder(Folder folder) {
-		for (CmisObject child : folder.getChildren()) {
+		for (CmisObject child : folder.getChildren(ReadOnlyFixture.createScanContext())) {
 			if (child instanceof Folder) {
 				return (Folder) child;
 			}
@@ -71,37 +234,74 @@ public abstract class AbstractSDCTest extends AbstractQueryTest {
 		return null;
 	}
 
-	protected boolean runQueryNoException(Session session, String stmt) {
-		try {
-			for (QueryResult qr : session.query(stmt, false)) {
-				qr.getPropertyByQueryName("cmis:name");
-			}
+	/**
+	 * Creates documents with a small text content in the given folder. Unlike
+	 * {@code createDocument}, the new documents are not checked, which keeps
+	 * the creation of large fixtures fast.
+	 */
+	protected List<Document> createDocuments(Session session, Folder folder, String prefix, int count) {
+		List<Document> result = new ArrayList<Document>(count);
+		for (int i = 0; i < count; i++) {
+			String name = prefix + i + ".txt";
+			byte[] content = ("SDC TCK document " + name).getBytes(UTF8);
 
-			return true;
-		} catch (Exception e) {
-			addResult(createResult(FAILURE, "The query '" + stmt + "' failed with this exception: " + e.toString(), e,
-					false));
-			return false;
+			Map<String, Object> properties = new HashMap<String, Object>();
+			properties.put(PropertyIds.NAME, name);
+			properties.put(PropertyIds.OBJECT_TYPE_ID, getDocumentTestTypeId());
+
+			ContentStream contentStream = session.getObjectFactory().createContentStream(name, content.length,
+					"text/plain", new ByteArrayInputStream(content));
+
+			result.add(folder.createDocument(properties, contentStream, null, null, null, null,
+					ReadOnlyFixture.createScanContext()));
 		}
+
+		return result;
+	}
+
+	/**
+	 * Runs a query with the limits of {@link BoundedQuery}. The statistics
+	 * are only added as info result if reading stopped at the limit.
+	 */
+	protected boolean runQueryNoException(Session session, String stmt) {
+		return runBoundedQuery(session, stmt) != null;
 	}
 
 	protected QueryResult runQuerySingleHit(Session session, String stmt) {
-		try {
-			QueryResult result = null;
-			int count = 0;
+		BoundedQuery query = runBoundedQuery(session, stmt);
+		if (query == null) {
+			return null;
+		}
+
+		if (query.getCount() != 1) {
+			addResult(createResult(FAILURE, "The query '" + stmt + "' should return exactly one result, but it returned "
+					+ (query.isTruncated() ? "at least " : "") + query.getCount() + " results!"));
+			return null;
+		}
+
+		return query.getFirstResult();
+	}
 
-			for (QueryResult qr : session.query(stmt, false)) {
-				count++;
-				result = qr;
+	/**
+	 * Runs a query with the limits of {@link BoundedQuery}. Returns
+	 * {@code null} if the query failed.
+	 */
+	protected BoundedQuery runBoundedQuery(Session session, String stmt) {
+		try {
+			BoundedQuery query = new BoundedQuery(stmt,
+					getIntParameter(BoundedQuery.MAX_ITEMS, BoundedQuery.DEFAULT_MAX_ITEMS),
+					getIntParameter(BoundedQuery.PAGE_SIZE, BoundedQuery.DEFAULT_PAGE_SIZE)).execute(session);
+			if (query.isTruncated()) {
+				addResult(createResult(INFO, "Query '" + stmt + "': " + query.getSummary()));
 			}
 
-			if (count != 1) {
-				addResult(createResult(FAILURE, "The query '" + stmt
-						+ "' should return exactly one result, but it returned " + count + " results!"));
-				return null;
+			if (Boolean.FALSE.equals(query.isTotalNumItemsAccurate())) {
+				// full-text searches often only estimate the total
+				addResult(createResult(INFO, "The query '" + stmt + "' reported " + query.getTotalNumItems()
+						+ " items, but returned " + query.getCount() + " results!"));
 			}
 
-			return result;
+			return query;
 		} catch (Exception e) {
 			addResult(createResult(FAILURE, "The query '" + stmt + "' failed with this exception: " + e.toString(), e,
 					false));
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests;
+
+import java.util.Iterator;
+import java.util.Locale;
+
+import org.apache.chemistry.opencmis.client.api.ItemIterable;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.QueryResult;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.client.runtime.util.AbstractIterator;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+
+/**
+ * Runs a query, reads at most a configured number of results and records how
+ * long the pages took.
+ * <p>
+ * The SDC tests read the limits from the session parameters
+ * {@value #MAX_ITEMS} and {@value #PAGE_SIZE}. Reading stops when the limit
+ * is reached, so broad searches on large repositories do not page through
+ * all hits. Each page is requested explicitly with its skip count, and the
+ * time of a page is the time of that request.
+ */
+public class BoundedQuery {
+
+	/** Session parameter with the maximum number of results to read. */
+	public static final String MAX_ITEMS = "com.sap.sdc.tck.query.maxItems";
+
+	/** Session parameter with the number of results per page. */
+	public static final String PAGE_SIZE = "com.sap.sdc.tck.query.pageSize";
+
+	public static final int DEFAULT_MAX_ITEMS = 1000;
+	public static final int DEFAULT_PAGE_SIZE = 100;
+
+	private final String statement;
+	private final int maxItems;
+	private final int pageSize;
+
+	private final LatencyHistogram pageLatencies = new LatencyHistogram();
+	private long timeToFirstResult = -1;
+	private long totalTime;
+	private int count;
+	private int pages;
+	private boolean truncated;
+	private long totalNumItems = -1;
+	private QueryResult firstResult;
+
+	public BoundedQuery(String statement, int maxItems, int pageSize) {
+		this.statement = statement;
+		this.maxItems = maxItems;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Runs the query. Exceptions of the query are passed to the caller.
+	 */
+	public BoundedQuery execute(Session session) {
+		OperationContext context = session.createOperationContext();
+		context.setIncludeAllowableActions(false);
+		context.setCacheEnabled(false);
+		context.setMaxItemsPerPage(pageSize);
+
+		long start = System.nanoTime();
+		ItemIterable<QueryResult> results = session.query(statement, false, context);
+
+		boolean more = true;
+		while (more && count < maxItems) {
+			// each page is fetched with its own request
+			long pageStart = System.nanoTime();
+			Iterator<QueryResult> iterator = results.skipTo(count).getPage(pageSize).iterator();
+			boolean hasResults = iterator.hasNext();
+			pages++;
+			pageLatencies.recordSince(pageStart);
+
+			Boolean hasMoreItems = null;
+			if (iterator instanceof AbstractIterator) {
+				// asking the iterable would fetch the page again
+				AbstractIterator<QueryResult> pageIterator = (AbstractIterator<QueryResult>) iterator;
+				hasMoreItems = pageIterator.getHasMoreItems();
+				if (pages == 1) {
+					totalNumItems = pageIterator.getTotalNumItems();
+				}
+			}
+
+			if (!hasResults) {
+				break;
+			}
+
+			int pageCount = 0;
+			while (count < maxItems && iterator.hasNext()) {
+				QueryResult result = iterator.next();
+				if (count == 0) {
+					timeToFirstResult = (System.nanoTime() - start) / 1000L;
+					firstResult = result;
+				}
+
+				result.getPropertyByQueryName("cmis:name");
+				count++;
+				pageCount++;
+			}
+
+			if (iterator.hasNext()) {
+				// stopped within the page
+				more = true;
+			} else if (hasMoreItems != null) {
+				more = hasMoreItems;
+			} else {
+				more = pageCount >= pageSize;
+			}
+		}
+
+		truncated = count >= maxItems && more && (totalNumItems < 0 || totalNumItems > count);
+		totalTime = (System.nanoTime() - start) / 1000L;
+
+		return this;
+	}
+
+	public String getStatement() {
+		return statement;
+	}
+
+	/**
+	 * Returns the number of results that have been read.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns whether reading stopped at the limit while more results were
+	 * available. If the repository reports neither whether there are more
+	 * items nor the total number of items, this is also {@code true} if there
+	 * are exactly as many results as the limit.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public int getPages() {
+		return pages;
+	}
+
+	public LatencyHistogram getPageLatencies() {
+		return pageLatencies;
+	}
+
+	/**
+	 * Returns the time from sending the query to the first result in
+	 * microseconds, or -1 if there was no result.
+	 */
+	public long getTimeToFirstResult() {
+		return timeToFirstResult;
+	}
+
+	/**
+	 * Returns the time of the whole execution in microseconds.
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * Returns the total number of items reported by the repository, or -1 if
+	 * it is unknown.
+	 */
+	public long getTotalNumItems() {
+		return totalNumItems;
+	}
+
+	/**
+	 * Returns whether the reported total number of items matches the number
+	 * of results, or {@code null} if this cannot be checked.
+	 */
+	public Boolean isTotalNumItemsAccurate() {
+		if (totalNumItems < 0 || truncated) {
+			return null;
+		}
+
+		return totalNumItems == count;
+	}
+
+	public QueryResult getFirstResult() {
+		return firstResult;
+	}
+
+	/**
+	 * Returns a one-line summary of the statistics.
+	 */
+	public String getSummary() {
+		Boolean accurate = isTotalNumItemsAccurate();
+
+		return String.format(Locale.ENGLISH,
+				"%d results%s in %s ms, first result after %s ms, %d pages of %d (p50 %s ms, max %s ms), totalNumItems %s",
+				count, truncated ? " (stopped at " + maxItems + ")" : "", LatencyHistogram.formatMillis(totalTime),
+				timeToFirstResult < 0 ? "-" : LatencyHistogram.formatMillis(timeToFirstResult), pages, pageSize,
+				LatencyHistogram.formatMillis(pageLatencies.getPercentile(50)),
+				LatencyHistogram.formatMillis(pageLatencies.getMax()),
+				totalNumItems < 0 ? "unknown"
+						: totalNumItems + (accurate == null ? "" : accurate ? " (accurate)" : " (inaccurate)"));
+	}
+}
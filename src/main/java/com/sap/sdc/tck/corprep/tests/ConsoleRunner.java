@@ -20,12 +20,21 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
 
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.Session;
 import org.apache.chemistry.opencmis.commons.SessionParameter;
 import org.apache.chemistry.opencmis.commons.impl.IOUtils;
 import org.apache.chemistry.opencmis.tck.CmisTest;
@@ -34,12 +43,26 @@ import org.apache.chemistry.opencmis.tck.CmisTestProgressMonitor;
 import org.apache.chemistry.opencmis.tck.CmisTestReport;
 import org.apache.chemistry.opencmis.tck.CmisTestResult;
 import org.apache.chemistry.opencmis.tck.CmisTestResultStatus;
+import org.apache.chemistry.opencmis.tck.impl.TestParameters;
 import org.apache.chemistry.opencmis.tck.report.HtmlReport;
 import org.apache.chemistry.opencmis.tck.report.JsonReport;
 import org.apache.chemistry.opencmis.tck.report.TextReport;
 import org.apache.chemistry.opencmis.tck.report.XmlReport;
 import org.apache.chemistry.opencmis.tck.runner.AbstractRunner;
 
+import com.sap.sdc.tck.corprep.baseline.Baseline;
+import com.sap.sdc.tck.corprep.baseline.BaselineComparison;
+import com.sap.sdc.tck.corprep.baseline.TimingRecorder;
+import com.sap.sdc.tck.corprep.bench.BenchmarkOperation;
+import com.sap.sdc.tck.corprep.bench.BenchmarkReport;
+import com.sap.sdc.tck.corprep.bench.Duration;
+import com.sap.sdc.tck.corprep.bench.ReadBenchmark;
+import com.sap.sdc.tck.corprep.bench.SearchLoad;
+import com.sap.sdc.tck.corprep.bench.SoakRun;
+import com.sap.sdc.tck.corprep.http.FaultProfile;
+import com.sap.sdc.tck.corprep.http.HttpCallLogProgressMonitor;
+import com.sap.sdc.tck.corprep.http.InstrumentingHttpInvoker;
+import com.sap.sdc.tck.corprep.report.JsonLinesReportWriter;
 import com.sap.sdc.tck.corprep.tests.readonly.ReadOnlyTestGroup;
 import com.sap.sdc.tck.corprep.tests.readwrite.ReadWriteTestGroup;
 
@@ -52,15 +75,18 @@ public class ConsoleRunner extends AbstractRunner {
 	public static final String GROUP_READ_WRITE = "read-write";
 	public static final String GROUP_ALL = "all";
 	public static final String GROUP_OPENCMIS = "opencmis";
+	public static final String GROUP_PERF = "sdc-perf";
 
 	public static final String FORMAT_TEXT = "text";
 	public static final String FORMAT_HTML = "html";
 	public static final String FORMAT_XML = "XML";
 	public static final String FORMAT_JSON = "json";
+	public static final String FORMAT_JSONL = "jsonl";
 
-	public ConsoleRunner(String[] args) throws Exception {
-		System.out.println("SAP Document Center TCK\n");
+	/** Messages go here, so that a report on stdout stays clean. */
+	private PrintStream console = System.out;
 
+	public ConsoleRunner(String[] args) throws Exception {
 		try {
 			// check arguments
 			int parameterParametersFile = 0;
@@ -69,6 +95,27 @@ public class ConsoleRunner extends AbstractRunner {
 			boolean readPassword = false;
 			String reportFile = "-";
 			String reportFormat = "text";
+			int parallel = 1;
+			int benchIterations = 0;
+			boolean httpStats = false;
+			String matrix = null;
+			int matrixWorkers = 4;
+			String faults = null;
+			long soakDuration = 0;
+			long soakInterval = 60000;
+			String searchCorpus = null;
+			int searchWorkers = 8;
+			int searchRate = 10;
+			long searchDuration = 60000;
+			boolean cleanup = false;
+			int cleanupWorkers = 8;
+			long cleanupMinAge = 24L * 60L * 60L * 1000L;
+			boolean cleanupConfirm = false;
+			String baselineFile = null;
+			String saveBaselineFile = null;
+			int warningTolerance = 50;
+			int failureTolerance = 200;
+			int repeat = 3;
 
 			if (args.length > 0) {
 				int i = 0;
@@ -81,6 +128,97 @@ public class ConsoleRunner extends AbstractRunner {
 						reportFile = args[i].substring(8);
 					} else if (args[i].startsWith("-report-format=")) {
 						reportFormat = args[i].substring(15);
+					} else if (args[i].startsWith("-parallel=")) {
+						parallel = parsePositiveInt(args[i].substring(10));
+						if (parallel < 1) {
+							System.err.println("Invalid number of parallel workers: " + args[i].substring(10));
+							return;
+						}
+					} else if (args[i].equals("-http-stats")) {
+						httpStats = true;
+					} else if (args[i].startsWith("-bench=")) {
+						benchIterations = parsePositiveInt(args[i].substring(7));
+						if (benchIterations < 1) {
+							System.err.println("Invalid number of benchmark iterations: " + args[i].substring(7));
+							return;
+						}
+					} else if (args[i].startsWith("-matrix=")) {
+						matrix = args[i].substring(8);
+					} else if (args[i].startsWith("-matrix-workers=")) {
+						matrixWorkers = parsePositiveInt(args[i].substring(16));
+						if (matrixWorkers < 1) {
+							System.err.println("Invalid number of matrix workers: " + args[i].substring(16));
+							return;
+						}
+					} else if (args[i].startsWith("-faults=")) {
+						faults = args[i].substring(8);
+					} else if (args[i].startsWith("-soak=")) {
+						soakDuration = Duration.parse(args[i].substring(6));
+						if (soakDuration < 1) {
+							System.err.println("Invalid soak duration: " + args[i].substring(6));
+							return;
+						}
+					} else if (args[i].startsWith("-soak-interval=")) {
+						soakInterval = Duration.parse(args[i].substring(15));
+						if (soakInterval < 1) {
+							System.err.println("Invalid soak interval: " + args[i].substring(15));
+							return;
+						}
+					} else if (args[i].startsWith("-search-load=")) {
+						searchCorpus = args[i].substring(13);
+					} else if (args[i].startsWith("-search-workers=")) {
+						searchWorkers = parsePositiveInt(args[i].substring(16));
+						if (searchWorkers < 1) {
+							System.err.println("Invalid number of search workers: " + args[i].substring(16));
+							return;
+						}
+					} else if (args[i].startsWith("-search-rate=")) {
+						searchRate = parsePositiveInt(args[i].substring(13));
+						if (searchRate < 1) {
+							System.err.println("Invalid search rate: " + args[i].substring(13));
+							return;
+						}
+					} else if (args[i].startsWith("-search-duration=")) {
+						searchDuration = Duration.parse(args[i].substring(17));
+						if (searchDuration < 1) {
+							System.err.println("Invalid search duration: " + args[i].substring(17));
+							return;
+						}
+					} else if (args[i].equals("-cleanup")) {
+						cleanup = true;
+					} else if (args[i].startsWith("-cleanup-workers=")) {
+						cleanupWorkers = parsePositiveInt(args[i].substring(17));
+						if (cleanupWorkers < 1) {
+							System.err.println("Invalid number of cleanup workers: " + args[i].substring(17));
+							return;
+						}
+					} else if (args[i].startsWith("-cleanup-min-age=")) {
+						cleanupMinAge = Duration.parse(args[i].substring(17));
+						if (cleanupMinAge < 1) {
+							System.err.println("Invalid cleanup minimum age: " + args[i].substring(17));
+							return;
+						}
+					} else if (args[i].equals("-cleanup-confirm")) {
+						cleanupConfirm = true;
+					} else if (args[i].startsWith("-baseline=")) {
+						baselineFile = args[i].substring(10);
+					} else if (args[i].startsWith("-save-baseline=")) {
+						saveBaselineFile = args[i].substring(15);
+					} else if (args[i].startsWith("-baseline-tolerance=")) {
+						String[] tolerances = args[i].substring(20).split(",");
+						warningTolerance = parsePositiveInt(tolerances[0]);
+						failureTolerance = tolerances.length > 1 ? parsePositiveInt(tolerances[1])
+								: warningTolerance * 4;
+						if (warningTolerance < 1 || failureTolerance < warningTolerance) {
+							System.err.println("Invalid baseline tolerance: " + args[i].substring(20));
+							return;
+						}
+					} else if (args[i].startsWith("-repeat=")) {
+						repeat = parsePositiveInt(args[i].substring(8));
+						if (repeat < 1) {
+							System.err.println("Invalid number of repeats: " + args[i].substring(8));
+							return;
+						}
 					} else {
 						System.err.println("Unknown argument '" + args[i] + "'.");
 						return;
@@ -92,6 +230,10 @@ public class ConsoleRunner extends AbstractRunner {
 				}
 			}
 
+			// keep stdout clean if the report is written to it
+			console = isStdout(reportFile) ? System.err : System.out;
+			console.println("SAP Document Center TCK\n");
+
 			if (args.length < parameterParametersFile + 1) {
 				printUsage();
 				return;
@@ -111,24 +253,31 @@ public class ConsoleRunner extends AbstractRunner {
 			// load session parameters
 			loadParameters(new File(args[parameterParametersFile]));
 
-			// test groups
-			if (args.length < parameterTestGroup + 1) {
-				addGroup(new ReadOnlyTestGroup());
+			if (httpStats) {
+				getParameters().put(SessionParameter.HTTP_INVOKER_CLASS, InstrumentingHttpInvoker.class.getName());
 			} else {
-				String testGroupStr = args[parameterTestGroup];
-				if (GROUP_READ_ONLY.equalsIgnoreCase(testGroupStr)) {
-					addGroup(new ReadOnlyTestGroup());
-				} else if (GROUP_READ_WRITE.equalsIgnoreCase(testGroupStr)) {
-					addGroup(new ReadWriteTestGroup());
-				} else if (GROUP_ALL.equalsIgnoreCase(testGroupStr)) {
-					addGroup(new ReadOnlyTestGroup());
-					addGroup(new ReadWriteTestGroup());
-				} else if (GROUP_OPENCMIS.equalsIgnoreCase(testGroupStr)) {
-					loadDefaultTckGroups();
-				} else {
-					System.err.println("Unknown test group!");
-					System.exit(3);
-				}
+				httpStats = InstrumentingHttpInvoker.class.getName()
+						.equals(getParameters().get(SessionParameter.HTTP_INVOKER_CLASS));
+			}
+
+			// test groups
+			String testGroupStr = GROUP_READ_ONLY;
+			if (args.length >= parameterTestGroup + 1) {
+				testGroupStr = args[parameterTestGroup];
+			}
+
+			if (!isTestGroup(testGroupStr)) {
+				System.err.println("Unknown test group!");
+				System.exit(3);
+			}
+
+			if (matrix != null && faults != null) {
+				System.err.println("The options -matrix and -faults cannot be combined!");
+				System.exit(3);
+			}
+
+			if (matrix == null && faults == null) {
+				addTestGroups(this, testGroupStr);
 			}
 
 			// report preparation
@@ -141,11 +290,32 @@ public class ConsoleRunner extends AbstractRunner {
 				report = new XmlReport();
 			} else if (FORMAT_JSON.equalsIgnoreCase(reportFormat)) {
 				report = new JsonReport();
+			} else if (FORMAT_JSONL.equalsIgnoreCase(reportFormat)) {
+				// written while the tests are running
+				report = null;
 			} else {
 				System.err.println("Unknown report format!");
 				System.exit(3);
 			}
 
+			// baseline preparation
+			boolean useBaseline = baselineFile != null || saveBaselineFile != null;
+			Baseline baseline = null;
+			if (useBaseline && (report == null || matrix != null || faults != null)) {
+				System.err.println(
+						"Baselines are not supported with the jsonl report format or in matrix or fault mode!");
+				System.exit(3);
+			}
+			if (baselineFile != null) {
+				baseline = Baseline.load(new File(baselineFile));
+				if (baseline.isEmpty()) {
+					System.err.println("Baseline file contains no timings: " + baselineFile);
+					System.exit(3);
+				}
+			}
+			BaselineComparison comparison = new BaselineComparison(warningTolerance, failureTolerance,
+					BaselineComparison.DEFAULT_MIN_DELTA);
+
 			// read user
 			String username = null;
 			if (readUser) {
@@ -170,19 +340,140 @@ public class ConsoleRunner extends AbstractRunner {
 				getParameters().put(SessionParameter.PASSWORD, new String(password));
 			}
 
+			// clean up test folders
+			if (cleanup) {
+				if (benchIterations > 0 || matrix != null || faults != null || soakDuration > 0
+						|| searchCorpus != null || useBaseline) {
+					System.err.println("The cleanup cannot be combined with -bench, -matrix, -faults, -soak, "
+							+ "-search-load or baselines!");
+					System.exit(3);
+				}
+
+				System.exit(runCleanup(cleanupWorkers, cleanupMinAge, cleanupConfirm) ? 0 : 4);
+			}
+
+			// run soak test
+			if (soakDuration > 0) {
+				if (benchIterations > 0 || matrix != null || faults != null || searchCorpus != null || useBaseline) {
+					System.err.println(
+							"The soak mode cannot be combined with -bench, -matrix, -faults, -search-load or baselines!");
+					System.exit(3);
+				}
+
+				System.exit(runSoak(soakDuration, soakInterval, reportFile) ? 0 : 4);
+			}
+
+			// run search load
+			if (searchCorpus != null) {
+				if (benchIterations > 0 || matrix != null || faults != null || useBaseline) {
+					System.err.println(
+							"The search load cannot be combined with -bench, -matrix, -faults, -soak or baselines!");
+					System.exit(3);
+				}
+
+				runSearchLoad(new File(searchCorpus), searchWorkers, searchRate, searchDuration);
+				System.exit(0);
+			}
+
+			// run benchmark
+			if (benchIterations > 0) {
+				console.println("Running read benchmark with " + benchIterations + " iterations per operation.\n");
+				Map<String, List<Long>> medians = new LinkedHashMap<String, List<Long>>();
+				for (int r = 0; r < (useBaseline ? repeat : 1); r++) {
+					List<BenchmarkOperation> operations = new ReadBenchmark(getParameters(), benchIterations)
+							.run(console);
+					console.println();
+					BenchmarkReport.print(console, operations);
+					console.println();
+
+					for (BenchmarkOperation operation : operations) {
+						List<Long> values = medians.get(operation.getName());
+						if (values == null) {
+							values = new ArrayList<Long>();
+							medians.put(operation.getName(), values);
+						}
+						values.add(operation.getHistogram().getPercentile(50));
+					}
+				}
+
+				Baseline current = new Baseline();
+				for (Map.Entry<String, List<Long>> entry : medians.entrySet()) {
+					current.getOperations().put(entry.getKey(), Baseline.median(entry.getValue()));
+				}
+
+				if (baseline != null) {
+					console.println("Comparison with baseline " + baselineFile + ":\n");
+					comparison.compareOperations(baseline, current.getOperations(), console);
+					console.println();
+				}
+				if (saveBaselineFile != null) {
+					saveBaseline(current, saveBaselineFile, (useBaseline ? repeat : 1));
+				}
+
+				System.exit(comparison.getFailures() > 0 ? 4 : 0);
+			}
+
+			// run matrix
+			if (matrix != null) {
+				if (report == null) {
+					System.err.println("The jsonl report format is not supported in matrix mode!");
+					System.exit(3);
+				}
+
+				runMatrix(matrix, matrixWorkers, testGroupStr, report, reportFile);
+				System.exit(0);
+			}
+
+			// run fault profiles
+			if (faults != null) {
+				if (report == null) {
+					System.err.println("The jsonl report format is not supported in fault mode!");
+					System.exit(3);
+				}
+
+				runFaults(faults, testGroupStr, report, reportFile);
+				System.exit(0);
+			}
+
+			// streaming report
+			if (report == null) {
+				runWithStreamingReport(reportFile, parallel, httpStats);
+				System.exit(0);
+			}
+
 			// run tests
-			run(new ConsoleProgressMonitor());
+			if (useBaseline) {
+				TimingRecorder recorder = new TimingRecorder(new ConsoleProgressMonitor());
+				runTests(this, recorder, parallel, httpStats, console);
+
+				for (int r = 1; r < repeat; r++) {
+					console.println("\nRepeat " + r + " of " + (repeat - 1) + " for the baseline timings.");
+
+					AbstractRunner repeatRunner = new AbstractRunner() {
+					};
+					repeatRunner.setParameters(getParameters());
+					addTestGroups(repeatRunner, testGroupStr);
+					runTests(repeatRunner, recorder, parallel, httpStats, console);
+				}
+
+				if (baseline != null) {
+					comparison.compareTests(baseline, recorder);
+					console.println("\nComparison with baseline " + baselineFile + ": "
+							+ comparison.getWarnings() + " warnings, " + comparison.getFailures() + " failures\n");
+				}
+				if (saveBaselineFile != null) {
+					Baseline current = new Baseline();
+					current.getTests().putAll(recorder.getMedians());
+					saveBaseline(current, saveBaselineFile, repeat);
+				}
+			} else {
+				runTests(this, new ConsoleProgressMonitor(), parallel, httpStats, console);
+			}
 
 			// create report
 			Writer writer = null;
 			try {
-				if ("-".equals(reportFile) || reportFile.isEmpty()) {
-					writer = new PrintWriter(System.out);
-				} else {
-					File file = new File(reportFile);
-					System.out.println("Writing report to: " + file.getCanonicalPath());
-					writer = new FileWriter(file);
-				}
+				writer = openReportWriter(reportFile);
 
 				Map<String, String> reportParameters = new TreeMap<String, String>(getParameters());
 				if (reportParameters.containsKey(SessionParameter.PASSWORD)) {
@@ -197,16 +488,342 @@ public class ConsoleRunner extends AbstractRunner {
 				IOUtils.closeQuietly(writer);
 			}
 
-			System.exit(0);
+			System.exit(comparison.getFailures() > 0 ? 4 : 0);
 		} catch (Exception ex) {
 			System.err.println("Error: " + ex.toString());
 			System.exit(1);
 		}
 	}
 
+	/**
+	 * Checks whether the given name is a known test group.
+	 */
+	public static boolean isTestGroup(String testGroupStr) {
+		return GROUP_READ_ONLY.equalsIgnoreCase(testGroupStr) || GROUP_READ_WRITE.equalsIgnoreCase(testGroupStr)
+				|| GROUP_ALL.equalsIgnoreCase(testGroupStr) || GROUP_OPENCMIS.equalsIgnoreCase(testGroupStr)
+				|| GROUP_PERF.equalsIgnoreCase(testGroupStr);
+	}
+
+	/**
+	 * Adds the groups of the given test group to a runner. The parameters of
+	 * the runner must be set before. Returns {@code false} if the test group
+	 * is unknown.
+	 */
+	public static boolean addTestGroups(AbstractRunner runner, String testGroupStr) throws Exception {
+		if (GROUP_READ_ONLY.equalsIgnoreCase(testGroupStr)) {
+			runner.addGroup(new ReadOnlyTestGroup());
+		} else if (GROUP_READ_WRITE.equalsIgnoreCase(testGroupStr)) {
+			runner.addGroup(new ReadWriteTestGroup());
+		} else if (GROUP_ALL.equalsIgnoreCase(testGroupStr)) {
+			runner.addGroup(new ReadOnlyTestGroup());
+			runner.addGroup(new ReadWriteTestGroup());
+		} else if (GROUP_OPENCMIS.equalsIgnoreCase(testGroupStr)) {
+			runner.loadDefaultTckGroups();
+		} else if (GROUP_PERF.equalsIgnoreCase(testGroupStr)) {
+			runner.addGroup(new PerformanceTestGroup());
+		} else {
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Runs the read operations in a loop and writes the resource time series
+	 * as CSV to the report file. Returns {@code false} if a growth trend was
+	 * found.
+	 */
+	private boolean runSoak(long duration, long interval, String reportFile) throws Exception {
+		console.println("Running soak test for " + duration / 1000 + " seconds, sampling every " + interval / 1000
+				+ " seconds.\n");
+
+		PrintWriter series = null;
+		try {
+			series = new PrintWriter(openReportWriter(reportFile));
+
+			SoakRun soak = new SoakRun(getParameters(), duration, interval);
+			List<BenchmarkOperation> operations = soak.run(series, console);
+
+			console.println();
+			BenchmarkReport.print(console, operations);
+			console.println();
+
+			if (soak.getTrends().isEmpty()) {
+				console.println("No growth trends found in " + soak.getSamples().size() + " samples.");
+			} else {
+				for (String trend : soak.getTrends()) {
+					console.println("WARNING: " + trend);
+				}
+			}
+
+			return soak.getTrends().isEmpty();
+		} finally {
+			IOUtils.closeQuietly(series);
+		}
+	}
+
+	/**
+	 * Runs SAPSEARCH queries with the terms of the corpus file from several
+	 * workers and prints the latencies of each query shape.
+	 */
+	private void runSearchLoad(File corpus, int workers, int rate, long duration) throws Exception {
+		SearchLoad load;
+		try {
+			load = new SearchLoad(getParameters(), corpus, workers, rate, duration);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(3);
+			return;
+		}
+
+		console.println("Running search load for " + duration / 1000 + " seconds with " + workers
+				+ " workers at " + rate + " queries per second (" + load.getTerms().size() + " terms, "
+				+ load.getPhrases().size() + " phrases).\n");
+
+		List<BenchmarkOperation> shapes = load.run(console);
+
+		long errors = 0;
+		for (BenchmarkOperation shape : shapes) {
+			errors += shape.getErrors();
+		}
+		double achievedRate = load.getQueries() * 1000.0 / Math.max(1, load.getElapsedMillis());
+
+		console.println();
+		BenchmarkReport.print(console, shapes);
+		console.println();
+		console.println(String.format(Locale.ENGLISH, "%d queries in %.1f s, %.1f queries/s, error rate %.2f%%",
+				load.getQueries(), load.getElapsedMillis() / 1000.0, achievedRate,
+				errors * 100.0 / Math.max(1, load.getQueries())));
+
+		if (achievedRate < rate * 0.9) {
+			console.println("WARNING: The target rate of " + rate
+					+ " queries/s was not reached. Add workers with -search-workers.");
+		}
+	}
+
+	/**
+	 * Deletes the test folders that aborted runs have left in the test folder
+	 * parent and that are older than the minimum age. Without confirmation,
+	 * the folders are only listed. Returns {@code false} if objects could not
+	 * be deleted.
+	 */
+	private boolean runCleanup(int workers, long minAge, boolean confirm) throws Exception {
+		Session session = TckSessionFactory.createSession(getParameters());
+
+		String parentPath = getParameters().get(TestParameters.DEFAULT_TEST_FOLDER_PARENT);
+		if (parentPath == null) {
+			parentPath = TestParameters.DEFAULT_TEST_FOLDER_PARENT_VALUE;
+		}
+		CmisObject parentObject = session.getObjectByPath(parentPath, ReadOnlyFixture.createScanContext());
+		if (!(parentObject instanceof Folder)) {
+			System.err.println("Test folder parent is not a folder: " + parentPath);
+			System.exit(3);
+		}
+		Folder parent = (Folder) parentObject;
+
+		TreeCleaner cleaner = new TreeCleaner(session, workers, 3);
+		List<Folder> folders = cleaner.findTestFolders(parent, minAge);
+
+		if (!confirm) {
+			console.println(folders.size() + " test folders in " + parentPath + " are older than "
+					+ minAge / 1000 + " seconds:\n");
+			for (Folder folder : folders) {
+				console.println("  " + folder.getName() + " (created "
+						+ new Date(TreeCleaner.getCreationTime(folder.getName())) + ")");
+			}
+			console.println("\nRun again with -cleanup-confirm to delete them.");
+			return true;
+		}
+
+		console.println("Deleting " + folders.size() + " test folders in " + parentPath + " that are older than "
+				+ minAge / 1000 + " seconds with " + workers + " workers.\n");
+
+		int deleted = 0;
+		int failed = 0;
+		long start = System.currentTimeMillis();
+		for (Folder folder : folders) {
+			TreeCleaner.Result result = cleaner.delete(folder.getId());
+			deleted += result.getDeleted();
+			failed += result.getFailed();
+
+			console.println("  " + folder.getName() + ": " + result.getDeleted() + " objects deleted, "
+					+ result.getFailed() + " failed, " + result.getRetries() + " retries (" + result.getTime()
+					+ "ms)");
+			for (String error : result.getErrors()) {
+				console.println("    " + error);
+			}
+		}
+
+		console.println();
+		console.println(deleted + " objects deleted, " + failed + " failed ("
+				+ (System.currentTimeMillis() - start) + "ms)");
+
+		return failed == 0;
+	}
+
+	/**
+	 * Runs the test group against all tenants of the matrix and writes one
+	 * combined report.
+	 */
+	private void runMatrix(String matrix, int workers, String testGroupStr, CmisTestReport report,
+			String reportFile) throws Exception {
+		List<MatrixRunner.Tenant> tenants = MatrixRunner.createTenants(matrix, getParameters());
+		if (tenants.isEmpty()) {
+			System.err.println("No tenants found for matrix '" + matrix + "'!");
+			System.exit(3);
+		}
+
+		console.println("Running " + testGroupStr + " tests against " + tenants.size() + " tenants with "
+				+ Math.min(workers, tenants.size()) + " workers.\n");
+
+		MatrixRunner matrixRunner = new MatrixRunner(tenants, testGroupStr, workers);
+		List<CmisTestGroup> groups = matrixRunner.run(console);
+
+		console.println();
+		matrixRunner.printComparison(console);
+		console.println();
+
+		writeReport(report, reportFile, groups, "matrix", matrix);
+	}
+
+	/**
+	 * Runs the test group once without faults and once per fault profile and
+	 * writes one combined report with the degradation of each test.
+	 * The runs are sequential, so that the profiles do not slow each other
+	 * down.
+	 */
+	private void runFaults(String faults, String testGroupStr, CmisTestReport report, String reportFile)
+			throws Exception {
+		List<MatrixRunner.Tenant> tenants;
+		try {
+			tenants = MatrixRunner.createFaultTenants(faults, getParameters());
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(3);
+			return;
+		}
+
+		console.println("Running " + testGroupStr + " tests with " + (tenants.size() - 1)
+				+ " fault profiles.\n");
+		for (MatrixRunner.Tenant tenant : tenants.subList(1, tenants.size())) {
+			console.println("  " + tenant.getName() + ": " + tenant.getParameters().get(FaultProfile.PARAMETER));
+		}
+		console.println();
+
+		MatrixRunner matrixRunner = new MatrixRunner(tenants, testGroupStr, 1);
+		List<CmisTestGroup> groups = matrixRunner.run(console);
+
+		FaultDegradationGroup degradation = new FaultDegradationGroup(tenants);
+		degradation.init(new HashMap<String, String>());
+		groups.add(degradation);
+
+		console.println();
+		for (String line : FaultDegradationGroup.createSummary(tenants)) {
+			console.println(line);
+		}
+		console.println();
+
+		writeReport(report, reportFile, groups, "faults", faults);
+	}
+
+	/**
+	 * Writes the report of a matrix or fault run.
+	 */
+	private void writeReport(CmisTestReport report, String reportFile, List<CmisTestGroup> groups, String mode,
+			String value) {
+		Writer writer = null;
+		try {
+			writer = openReportWriter(reportFile);
+
+			Map<String, String> reportParameters = new TreeMap<String, String>(getParameters());
+			if (reportParameters.containsKey(SessionParameter.PASSWORD)) {
+				reportParameters.put(SessionParameter.PASSWORD, "*****");
+			}
+			reportParameters.put(mode, value);
+
+			report.createReport(reportParameters, groups, writer);
+		} catch (Exception ioe) {
+			System.err.println("Could not create report: " + ioe.toString());
+			System.exit(1);
+		} finally {
+			IOUtils.closeQuietly(writer);
+		}
+	}
+
+	/**
+	 * Runs the tests either serially or in parallel. Messages go to the given
+	 * console stream.
+	 */
+	private static void runTests(AbstractRunner runner, CmisTestProgressMonitor monitor, int parallel,
+			boolean httpStats, PrintStream console) throws Exception {
+		if (parallel > 1) {
+			console.println("Running tests with " + parallel + " parallel workers.");
+			ParallelTestExecutor executor = new ParallelTestExecutor(parallel);
+			executor.setRecordHttpCalls(httpStats);
+			executor.run(runner.getGroups(), monitor);
+		} else if (httpStats) {
+			runner.run(new HttpCallLogProgressMonitor(monitor));
+		} else {
+			runner.run(monitor);
+		}
+	}
+
+	/**
+	 * Saves the timings of this run as new baseline.
+	 */
+	private void saveBaseline(Baseline current, String file, int runs) throws IOException {
+		File baselineFile = new File(file);
+		console.println("Writing baseline to: " + baselineFile.getCanonicalPath());
+		current.save(baselineFile, "SAP Document Center TCK baseline, medians of " + runs + " runs in microseconds");
+	}
+
+	/**
+	 * Runs the tests and writes a JSON Lines report while they are running.
+	 * If the report goes to stdout, the console progress output is
+	 * suppressed.
+	 */
+	private void runWithStreamingReport(String reportFile, int parallel, boolean httpStats) throws Exception {
+		Writer writer = null;
+		try {
+			writer = openReportWriter(reportFile);
+
+			boolean toStdout = isStdout(reportFile);
+			JsonLinesReportWriter reportWriter = new JsonLinesReportWriter(writer,
+					toStdout ? null : new ConsoleProgressMonitor());
+
+			reportWriter.start(getParameters());
+			runTests(this, reportWriter, parallel, httpStats, console);
+			reportWriter.end();
+
+			if (reportWriter.getLastException() != null) {
+				System.err.println("Could not write report: " + reportWriter.getLastException().toString());
+				System.exit(1);
+			}
+		} finally {
+			IOUtils.closeQuietly(writer);
+		}
+	}
+
+	/**
+	 * Checks whether the report is written to stdout.
+	 */
+	private static boolean isStdout(String reportFile) {
+		return "-".equals(reportFile) || reportFile.isEmpty();
+	}
+
+	private Writer openReportWriter(String reportFile) throws IOException {
+		if (isStdout(reportFile)) {
+			return new PrintWriter(System.out);
+		} else {
+			File file = new File(reportFile);
+			console.println("Writing report to: " + file.getCanonicalPath());
+			return new FileWriter(file);
+		}
+	}
+
 	private void printUsage() {
 		System.out.println("Usage: runtck"
-				+ " [-p] [-u] [-report=<file>] [-report-format=<format>] <path-to-session-parameters-file> [test-group]\n");
+				+ " [-p] [-u] [-report=<file>] [-report-format=<format>] [-parallel=<n>] [-bench=<iterations>] [-http-stats] [-matrix=<tenants>] [-matrix-workers=<n>] [-faults=<profiles>] [-soak=<duration>] [-soak-interval=<duration>] [-search-load=<corpus-file>] [-search-workers=<n>] [-search-rate=<n>] [-search-duration=<duration>] [-cleanup] [-cleanup-confirm] [-cleanup-min-age=<duration>] [-cleanup-workers=<n>] [-baseline=<file>] [-save-baseline=<file>] [-baseline-tolerance=<warn>[,<fail>]] [-repeat=<n>] <path-to-session-parameters-file> [test-group]\n");
 		System.out.println("Parameters:\n");
 		System.out.println(" -u                                 ask for username");
 		System.out.println(" -p                                 ask for password");
@@ -216,6 +833,41 @@ public class ConsoleRunner extends AbstractRunner {
 		System.out.println("                                       html  - HTML report");
 		System.out.println("                                       xml   - XML report");
 		System.out.println("                                       json  - JSON report");
+		System.out.println("                                       jsonl - JSON Lines report, written while the tests run");
+		System.out.println(" -parallel=<n>                      number of tests that run at the same time (default is 1)");
+		System.out.println(" -http-stats                        record the HTTP calls of each test and add them to the report");
+		System.out.println(" -bench=<iterations>                run the read benchmark instead of the tests");
+		System.out.println("                                       (plus 10% warmup iterations)");
+		System.out.println(" -matrix=<tenants>                  run the tests against several tenants and compare them");
+		System.out.println("                                       sdc                 - all consumers in sdc.json");
+		System.out.println("                                       <file>[,<file>...]  - session parameters files that");
+		System.out.println("                                                             override the base parameters");
+		System.out.println(" -matrix-workers=<n>                number of tenants that are tested at the same time (default is 4)");
+		System.out.println(" -faults=<profile>[,<profile>...]   run the tests without faults and under each fault profile");
+		System.out.println("                                       and report how each test degrades");
+		System.out.println("                                       slow-network, mobile, tail-latency, flaky, throttled");
+		System.out.println("                                       or a profile defined in the session parameters");
+		System.out.println(" -soak=<duration>                   run the read operations in a loop on one session, for");
+		System.out.println("                                       example 30m or 8h, and write the heap, GC, thread,");
+		System.out.println("                                       socket and latency samples as CSV to the report file");
+		System.out.println(" -soak-interval=<duration>          time between two soak samples (default is 60s)");
+		System.out.println(" -search-load=<corpus-file>         run SAPSEARCH queries with the terms and phrases of the");
+		System.out.println("                                       corpus file (one per line) instead of the tests");
+		System.out.println(" -search-workers=<n>                number of concurrent search workers (default is 8)");
+		System.out.println(" -search-rate=<n>                   queries per second of all workers (default is 10)");
+		System.out.println(" -search-duration=<duration>        duration of the search load (default is 60s)");
+		System.out.println(" -cleanup                           list the test folders that aborted runs have left behind");
+		System.out.println("                                       instead of running the tests");
+		System.out.println(" -cleanup-confirm                   delete the listed test folders");
+		System.out.println(" -cleanup-min-age=<duration>        minimum age of the test folders that are cleaned up");
+		System.out.println("                                       (default is 24h)");
+		System.out.println(" -cleanup-workers=<n>               number of concurrent cleanup workers (default is 8)");
+		System.out.println(" -baseline=<file>                   compare the test or benchmark timings with a baseline file");
+		System.out.println(" -save-baseline=<file>              save the test or benchmark timings as baseline file");
+		System.out.println(" -baseline-tolerance=<warn>[,<fail>]  slowdown in percent that is reported as warning or");
+		System.out.println("                                       failure (default is 50,200)");
+		System.out.println(" -repeat=<n>                        number of runs for baseline timings, the median is used");
+		System.out.println("                                       (default is 3)");
 		System.out.println(" <path-to-session-parameters-file>  "
 				+ "path of the properties file that contains the session parameters");
 		System.out.println(" [test-group]                       TCK test group");
@@ -223,6 +875,19 @@ public class ConsoleRunner extends AbstractRunner {
 		System.out.println("                                       read-write - read-write tests");
 		System.out.println("                                       all        - read-only and read-write tests");
 		System.out.println("                                       opencmis   - all OpenCMIS TCK tests");
+		System.out.println("                                       sdc-perf   - SDC performance and load tests (not part of all)");
+	}
+
+	/**
+	 * Parses a positive integer. Returns -1 if the value is invalid.
+	 */
+	private static int parsePositiveInt(String value) {
+		try {
+			int result = Integer.parseInt(value.trim());
+			return result > 0 ? result : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
 	}
 
 	/**
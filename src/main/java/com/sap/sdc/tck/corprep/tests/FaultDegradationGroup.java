@@ -0,0 +1,174 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.tck.CmisTest;
+import org.apache.chemistry.opencmis.tck.CmisTestGroup;
+import org.apache.chemistry.opencmis.tck.CmisTestResultStatus;
+import org.apache.chemistry.opencmis.tck.impl.AbstractCmisTest;
+import org.apache.chemistry.opencmis.tck.impl.AbstractCmisTestGroup;
+
+/**
+ * Report group that shows how the tests degrade under each fault profile.
+ * <p>
+ * The tenants are created by {@link MatrixRunner#createFaultTenants}. The
+ * first tenant runs without faults and is the reference. For each test, the
+ * time and status under every profile are compared with the reference. A test
+ * whose status is worse than in the reference run gets a warning.
+ */
+public class FaultDegradationGroup extends AbstractCmisTestGroup {
+
+	/** Name of the profile without faults. */
+	public static final String REFERENCE_PROFILE = "none";
+
+	private final List<MatrixRunner.Tenant> tenants;
+
+	public FaultDegradationGroup(List<MatrixRunner.Tenant> tenants) {
+		this.tenants = tenants;
+	}
+
+	@Override
+	public void init(Map<String, String> parameters) throws Exception {
+		super.init(parameters);
+		setName("Fault Profile Degradation");
+		setDescription("Compares the test times and results under each fault profile with a run without faults.");
+
+		AbstractCmisTest summary = createReportTest(parameters, "Degradation per profile");
+		for (String line : createSummary(tenants)) {
+			summary.addResult(summary.createResult(INFO, line));
+		}
+
+		MatrixRunner.Tenant reference = tenants.get(0);
+		if (reference.getError() != null) {
+			return;
+		}
+
+		List<CmisTestGroup> referenceGroups = reference.getGroups();
+		for (int g = 0; g < referenceGroups.size(); g++) {
+			String groupName = stripTenant(reference, referenceGroups.get(g).getName());
+
+			List<CmisTest> referenceTests = referenceGroups.get(g).getTests();
+			for (int t = 0; t < referenceTests.size(); t++) {
+				CmisTest referenceTest = referenceTests.get(t);
+				CmisTestResultStatus referenceStatus = MatrixRunner.getWorstStatus(referenceTest);
+
+				AbstractCmisTest test = createReportTest(parameters, groupName + " / " + referenceTest.getName());
+				test.addResult(test.createResult(INFO, String.format(Locale.ENGLISH, "%s: %d ms, %s",
+						REFERENCE_PROFILE, referenceTest.getTime(), referenceStatus)));
+
+				for (int i = 1; i < tenants.size(); i++) {
+					CmisTest profileTest = getTest(tenants.get(i), g, t);
+					if (profileTest == null) {
+						continue;
+					}
+
+					CmisTestResultStatus status = MatrixRunner.getWorstStatus(profileTest);
+					String line = String.format(Locale.ENGLISH, "%s: %d ms (%s), %s", tenants.get(i).getName(),
+							profileTest.getTime(), formatChange(referenceTest.getTime(), profileTest.getTime()),
+							status);
+
+					test.addResult(test.createResult(status.getLevel() > referenceStatus.getLevel() ? WARNING
+							: INFO, line));
+				}
+			}
+		}
+	}
+
+	private AbstractCmisTest createReportTest(Map<String, String> parameters, String name) throws Exception {
+		AbstractCmisTest test = new AbstractCmisTest() {
+			@Override
+			public void run() {
+			}
+		};
+		test.init(parameters);
+		test.setName(name);
+		addTest(test);
+
+		return test;
+	}
+
+	/**
+	 * Returns one line per profile with the number of tests that degraded.
+	 */
+	public static List<String> createSummary(List<MatrixRunner.Tenant> tenants) {
+		List<String> result = new ArrayList<String>();
+		result.add(String.format(Locale.ENGLISH, "%-20s %6s %8s %8s %10s %10s", "Profile", "Tests", "Degraded",
+				"Failures", "total (ms)", "change"));
+
+		MatrixRunner.Tenant reference = tenants.get(0);
+		long referenceTotal = reference.getHistogram().getSum() / 1000;
+
+		for (MatrixRunner.Tenant tenant : tenants) {
+			if (tenant.getError() != null) {
+				result.add(String.format(Locale.ENGLISH, "%-20s %s", tenant.getName(), tenant.getError()));
+				continue;
+			}
+
+			int degraded = 0;
+			List<CmisTestGroup> groups = tenant.getGroups();
+			for (int g = 0; g < groups.size() && reference.getError() == null; g++) {
+				for (int t = 0; t < groups.get(g).getTests().size(); t++) {
+					CmisTest referenceTest = getTest(reference, g, t);
+					if (referenceTest != null
+							&& MatrixRunner.getWorstStatus(groups.get(g).getTests().get(t)).getLevel() > MatrixRunner
+									.getWorstStatus(referenceTest).getLevel()) {
+						degraded++;
+					}
+				}
+			}
+
+			int failures = tenant.getStatusCount(CmisTestResultStatus.FAILURE)
+					+ tenant.getStatusCount(CmisTestResultStatus.UNEXPECTED_EXCEPTION);
+			long total = tenant.getHistogram().getSum() / 1000;
+
+			result.add(String.format(Locale.ENGLISH, "%-20s %6d %8d %8d %10d %10s", tenant.getName(),
+					tenant.getHistogram().getCount(), degraded, failures, total,
+					tenant == reference ? "" : formatChange(referenceTotal, total)));
+		}
+
+		return result;
+	}
+
+	private static CmisTest getTest(MatrixRunner.Tenant tenant, int group, int test) {
+		if (tenant.getError() != null || group >= tenant.getGroups().size()) {
+			return null;
+		}
+
+		List<CmisTest> tests = tenant.getGroups().get(group).getTests();
+		return test < tests.size() ? tests.get(test) : null;
+	}
+
+	private static String stripTenant(MatrixRunner.Tenant tenant, String groupName) {
+		String prefix = "[" + tenant.getName() + "] ";
+		return groupName.startsWith(prefix) ? groupName.substring(prefix.length()) : groupName;
+	}
+
+	private static String formatChange(long reference, long value) {
+		if (reference <= 0) {
+			return "n/a";
+		}
+
+		return String.format(Locale.ENGLISH, "%+d%%", Math.round((value - reference) * 100.0 / reference));
+	}
+}
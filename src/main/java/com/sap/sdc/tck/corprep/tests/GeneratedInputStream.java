@@ -0,0 +1,97 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests;
+
+import java.io.InputStream;
+
+/**
+ * Stream of pseudo-random bytes of a fixed length.
+ * <p>
+ * The bytes only depend on the seed, so the same seed and length always
+ * produce the same content. Nothing is buffered, which allows uploads of any
+ * size with constant memory. The content does not compress, so compressing
+ * connections do not distort the measured throughput.
+ */
+public class GeneratedInputStream extends InputStream {
+
+	private final long length;
+	private long position;
+	private long state;
+	private long word;
+	private int wordBytes;
+
+	public GeneratedInputStream(long seed, long length) {
+		this.length = length;
+		this.state = seed ^ 0x9E3779B97F4A7C15L;
+		if (state == 0) {
+			state = 0x9E3779B97F4A7C15L;
+		}
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	@Override
+	public int read() {
+		if (position >= length) {
+			return -1;
+		}
+
+		position++;
+		return nextByte() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		if (position >= length) {
+			return -1;
+		}
+
+		int n = (int) Math.min(len, length - position);
+		for (int i = off; i < off + n; i++) {
+			b[i] = nextByte();
+		}
+		position += n;
+
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return (int) Math.min(Integer.MAX_VALUE, length - position);
+	}
+
+	private byte nextByte() {
+		if (wordBytes == 0) {
+			// xorshift64
+			state ^= state << 13;
+			state ^= state >>> 7;
+			state ^= state << 17;
+			word = state;
+			wordBytes = 8;
+		}
+
+		byte result = (byte) word;
+		word >>>= 8;
+		wordBytes--;
+
+		return result;
+	}
+}
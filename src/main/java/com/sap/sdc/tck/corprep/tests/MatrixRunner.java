@@ -0,0 +1,427 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.chemistry.opencmis.commons.SessionParameter;
+import org.apache.chemistry.opencmis.tck.CmisTest;
+import org.apache.chemistry.opencmis.tck.CmisTestGroup;
+import org.apache.chemistry.opencmis.tck.CmisTestProgressMonitor;
+import org.apache.chemistry.opencmis.tck.CmisTestResult;
+import org.apache.chemistry.opencmis.tck.CmisTestResultStatus;
+import org.apache.chemistry.opencmis.tck.impl.AbstractCmisTest;
+import org.apache.chemistry.opencmis.tck.impl.AbstractCmisTestGroup;
+import org.apache.chemistry.opencmis.tck.runner.AbstractRunner;
+
+import com.sap.sdc.login.DocumentCenterData;
+import com.sap.sdc.login.DocumentCenterData.Consumer;
+import com.sap.sdc.login.DocumentCenterData.Landscape;
+import com.sap.sdc.login.DocumentCenterData.Provider;
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.http.FaultInjectingHttpInvoker;
+import com.sap.sdc.tck.corprep.http.FaultProfile;
+
+/**
+ * Runs a test group against several tenants at the same time.
+ * <p>
+ * Each tenant gets its own runner, groups and tests. A bounded pool of
+ * workers runs one tenant at a time per worker. When all tenants are done,
+ * the groups of all tenants are combined into one list for the report. The
+ * group names are prefixed with the tenant name and a comparison group with
+ * the test latencies of each tenant is appended.
+ */
+public class MatrixRunner {
+
+	/** Matrix source that reads the tenants from sdc.json. */
+	public static final String SOURCE_SDC = "sdc";
+
+	private static final String BROWSER_PATH = "/mcm/b/json";
+
+	private final List<Tenant> tenants;
+	private final String testGroup;
+	private final int workers;
+
+	public MatrixRunner(List<Tenant> tenants, String testGroup, int workers) {
+		this.tenants = tenants;
+		this.testGroup = testGroup;
+		this.workers = workers;
+	}
+
+	/**
+	 * Creates the tenants for the given matrix source. The source is either
+	 * {@link #SOURCE_SDC} or a comma separated list of session parameter
+	 * files. The parameters of each tenant are based on the given base
+	 * parameters.
+	 */
+	public static List<Tenant> createTenants(String source, Map<String, String> baseParameters) throws Exception {
+		if (SOURCE_SDC.equalsIgnoreCase(source)) {
+			return createTenantsFromDocumentCenterData(baseParameters);
+		} else {
+			return createTenantsFromFiles(source.split(","), baseParameters);
+		}
+	}
+
+	/**
+	 * Creates one tenant per fault profile, all with the base parameters. The
+	 * profiles are given as comma separated list of names. The first tenant
+	 * runs without faults and is the reference for
+	 * {@link FaultDegradationGroup}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a profile is unknown or invalid
+	 */
+	public static List<Tenant> createFaultTenants(String profiles, Map<String, String> baseParameters) {
+		List<Tenant> result = new ArrayList<Tenant>();
+		result.add(createFaultTenant(FaultDegradationGroup.REFERENCE_PROFILE, "", baseParameters));
+
+		for (String name : profiles.split(",")) {
+			name = name.trim();
+			if (name.isEmpty() || FaultDegradationGroup.REFERENCE_PROFILE.equals(name)) {
+				continue;
+			}
+
+			String spec = FaultProfile.getDefinition(name, baseParameters);
+			if (spec == null) {
+				throw new IllegalArgumentException("Unknown fault profile: " + name);
+			}
+			FaultProfile.parse(spec);
+
+			result.add(createFaultTenant(name, spec, baseParameters));
+		}
+
+		return result;
+	}
+
+	private static Tenant createFaultTenant(String name, String spec, Map<String, String> baseParameters) {
+		Map<String, String> parameters = new HashMap<String, String>(baseParameters);
+		parameters.put(SessionParameter.HTTP_INVOKER_CLASS, FaultInjectingHttpInvoker.class.getName());
+		parameters.put(FaultProfile.PARAMETER, spec);
+
+		return new Tenant(name, parameters);
+	}
+
+	/**
+	 * Creates a tenant for each consumer in sdc.json. The first repository of
+	 * each tenant is tested.
+	 */
+	private static List<Tenant> createTenantsFromDocumentCenterData(Map<String, String> baseParameters)
+			throws FileNotFoundException {
+		DocumentCenterData data = new DocumentCenterData();
+		data.read(false);
+
+		List<Tenant> result = new ArrayList<Tenant>();
+		for (Landscape landscape : data.getLandscapes()) {
+			for (Provider provider : landscape.getProviders()) {
+				for (Consumer consumer : provider.getConsumers()) {
+					String url = landscape.getUrl().replaceAll("\\{provider\\}", provider.getAlias())
+							.replaceAll("\\{consumer\\}", consumer.getAccount()) + BROWSER_PATH;
+
+					Map<String, String> parameters = new HashMap<String, String>(baseParameters);
+					parameters.put(SessionParameter.BINDING_TYPE, "browser");
+					parameters.put(SessionParameter.BROWSER_URL, url);
+					parameters.remove(SessionParameter.REPOSITORY_ID);
+
+					result.add(new Tenant(landscape.getName() + " / " + consumer.getDisplayName(), parameters));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates a tenant for each session parameters file. The parameters in a
+	 * file override the base parameters.
+	 */
+	private static List<Tenant> createTenantsFromFiles(String[] files, Map<String, String> baseParameters)
+			throws Exception {
+		List<Tenant> result = new ArrayList<Tenant>();
+		for (String filename : files) {
+			File file = new File(filename.trim());
+			if (!file.isFile()) {
+				throw new FileNotFoundException("Session parameters file does not exist: " + file.getAbsolutePath());
+			}
+
+			AbstractRunner loader = new AbstractRunner() {
+			};
+			loader.loadParameters(file);
+
+			Map<String, String> parameters = new HashMap<String, String>(baseParameters);
+			parameters.putAll(loader.getParameters());
+
+			result.add(new Tenant(file.getName(), parameters));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Runs the test group against all tenants and returns the groups of all
+	 * tenants, followed by the latency comparison group.
+	 */
+	public List<CmisTestGroup> run(final PrintStream out) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final Tenant tenant : tenants) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						synchronized (out) {
+							out.println("Starting tenant " + tenant.getName());
+						}
+						tenant.run(testGroup, out);
+						synchronized (out) {
+							out.println("Finished tenant " + tenant.getName() + " ("
+									+ tenant.getHistogram().getSum() / 1000 + "ms)");
+						}
+						return null;
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		List<CmisTestGroup> result = new ArrayList<CmisTestGroup>();
+		for (Tenant tenant : tenants) {
+			result.addAll(tenant.getGroups());
+		}
+
+		MatrixComparisonGroup comparison = new MatrixComparisonGroup(tenants);
+		comparison.init(new HashMap<String, String>());
+		result.add(comparison);
+
+		return result;
+	}
+
+	/**
+	 * Prints the latency comparison of all tenants.
+	 */
+	public void printComparison(PrintStream out) {
+		for (String line : MatrixComparisonGroup.createComparison(tenants)) {
+			out.println(line);
+		}
+	}
+
+	/**
+	 * Returns the worst status of the results of a test.
+	 */
+	static CmisTestResultStatus getWorstStatus(CmisTest test) {
+		CmisTestResultStatus worst = CmisTestResultStatus.OK;
+		if (test.getResults() != null) {
+			for (CmisTestResult result : test.getResults()) {
+				if (result.getStatus().getLevel() > worst.getLevel()) {
+					worst = result.getStatus();
+				}
+			}
+		}
+
+		return worst;
+	}
+
+	/**
+	 * A tenant of the matrix.
+	 */
+	public static class Tenant {
+		private final String name;
+		private final Map<String, String> parameters;
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private final int[] statusCounts = new int[CmisTestResultStatus.values().length];
+		private List<CmisTestGroup> groups = new ArrayList<CmisTestGroup>();
+		private String error;
+
+		public Tenant(String name, Map<String, String> parameters) {
+			this.name = name;
+			this.parameters = parameters;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Map<String, String> getParameters() {
+			return parameters;
+		}
+
+		/**
+		 * Returns the test times of this tenant.
+		 */
+		public LatencyHistogram getHistogram() {
+			return histogram;
+		}
+
+		public synchronized int getStatusCount(CmisTestResultStatus status) {
+			return statusCounts[status.ordinal()];
+		}
+
+		public List<CmisTestGroup> getGroups() {
+			return groups;
+		}
+
+		/**
+		 * Returns the error that prevented the tests from running, or
+		 * {@code null}.
+		 */
+		public String getError() {
+			return error;
+		}
+
+		void run(String testGroup, final PrintStream out) {
+			AbstractRunner runner = new AbstractRunner() {
+			};
+
+			try {
+				runner.setParameters(parameters);
+				ConsoleRunner.addTestGroups(runner, testGroup);
+
+				for (CmisTestGroup group : runner.getGroups()) {
+					if (group instanceof AbstractCmisTestGroup) {
+						((AbstractCmisTestGroup) group).setName("[" + name + "] " + group.getName());
+					}
+				}
+				groups = runner.getGroups();
+
+				runner.run(new TenantProgressMonitor(out));
+			} catch (Exception e) {
+				error = e.toString();
+				synchronized (out) {
+					out.println("Tenant " + name + " failed: " + error);
+				}
+			}
+		}
+
+		/**
+		 * Records the test times and prints one line per finished test.
+		 */
+		private class TenantProgressMonitor implements CmisTestProgressMonitor {
+			private final PrintStream out;
+
+			public TenantProgressMonitor(PrintStream out) {
+				this.out = out;
+			}
+
+			@Override
+			public void startGroup(CmisTestGroup group) {
+			}
+
+			@Override
+			public void endGroup(CmisTestGroup group) {
+			}
+
+			@Override
+			public void startTest(CmisTest test) {
+			}
+
+			@Override
+			public void endTest(CmisTest test) {
+				histogram.record(test.getTime() * 1000L);
+
+				CmisTestResultStatus worst = getWorstStatus(test);
+
+				synchronized (Tenant.this) {
+					statusCounts[worst.ordinal()]++;
+				}
+
+				synchronized (out) {
+					out.println("  [" + name + "] " + test.getName() + " (" + test.getTime() + "ms): " + worst);
+				}
+			}
+
+			@Override
+			public void message(String msg) {
+				synchronized (out) {
+					out.println("  [" + name + "] " + msg);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Report group that compares the test latencies of all tenants.
+	 */
+	private static class MatrixComparisonGroup extends AbstractCmisTestGroup {
+		private final List<Tenant> tenants;
+
+		public MatrixComparisonGroup(List<Tenant> tenants) {
+			this.tenants = tenants;
+		}
+
+		@Override
+		public void init(Map<String, String> parameters) throws Exception {
+			super.init(parameters);
+			setName("Tenant Latency Comparison");
+			setDescription("Compares the test times of all tenants.");
+
+			AbstractCmisTest test = new AbstractCmisTest() {
+				@Override
+				public void run() {
+				}
+			};
+			test.init(parameters);
+			test.setName("Test times per tenant");
+			addTest(test);
+
+			for (String line : createComparison(tenants)) {
+				test.addResult(test.createResult(INFO, line));
+			}
+		}
+
+		static List<String> createComparison(List<Tenant> tenants) {
+			List<String> result = new ArrayList<String>();
+			result.add(String.format(Locale.ENGLISH, "%-50s %6s %8s %10s %10s %10s %10s", "Tenant", "Tests",
+					"Failures", "total (ms)", "p50 (ms)", "p90 (ms)", "max (ms)"));
+
+			for (Tenant tenant : tenants) {
+				if (tenant.getError() != null) {
+					result.add(String.format(Locale.ENGLISH, "%-50s %s", tenant.getName(), tenant.getError()));
+					continue;
+				}
+
+				LatencyHistogram histogram = tenant.getHistogram();
+				int failures = tenant.getStatusCount(CmisTestResultStatus.FAILURE)
+						+ tenant.getStatusCount(CmisTestResultStatus.UNEXPECTED_EXCEPTION);
+
+				result.add(String.format(Locale.ENGLISH, "%-50s %6d %8d %10d %10s %10s %10s", tenant.getName(),
+						histogram.getCount(), failures, histogram.getSum() / 1000,
+						LatencyHistogram.formatMillis(histogram.getPercentile(50)),
+						LatencyHistogram.formatMillis(histogram.getPercentile(90)),
+						LatencyHistogram.formatMillis(histogram.getMax())));
+			}
+
+			return result;
+		}
+	}
+}
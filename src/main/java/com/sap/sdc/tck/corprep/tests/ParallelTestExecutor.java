@@ -0,0 +1,429 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.UNEXPECTED_EXCEPTION;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.chemistry.opencmis.tck.CmisTest;
+import org.apache.chemistry.opencmis.tck.CmisTestGroup;
+import org.apache.chemistry.opencmis.tck.CmisTestProgressMonitor;
+import org.apache.chemistry.opencmis.tck.impl.AbstractCmisTest;
+import org.apache.chemistry.opencmis.tck.impl.AbstractCmisTestGroup;
+import org.apache.chemistry.opencmis.tck.impl.FatalTestException;
+
+import com.sap.sdc.tck.corprep.http.HttpCallLog;
+import com.sap.sdc.tck.corprep.http.InstrumentingHttpInvoker;
+
+/**
+ * Runs the tests of several test groups concurrently.
+ * <p>
+ * Session tests create their own session and their own test folder for each
+ * run. State that a group shares between its tests, like the read-only test
+ * folder snapshot of a {@link ReadOnlyFixture.Provider}, must be thread-safe.
+ * The group hook {@code preRun} is called before the first test of a group
+ * starts and {@code postRun} after its last test has finished. A fatal test
+ * result skips the remaining tests of the group like in a serial run. The
+ * progress monitor is
+ * notified in the original group and test order, which keeps the console
+ * output and the report identical to a serial run. A test is reported as
+ * started once it is actually running.
+ * <p>
+ * A test that does not finish within the test timeout is cancelled and gets
+ * a failure result, so that one hanging request cannot block the whole run.
+ */
+public class ParallelTestExecutor {
+
+	/** Default time a test may run, in milliseconds. */
+	public static final long DEFAULT_TEST_TIMEOUT = 60L * 60L * 1000L;
+
+	private final int threads;
+	private boolean recordHttpCalls;
+	private long testTimeout = DEFAULT_TEST_TIMEOUT;
+
+	public ParallelTestExecutor(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be at least 1!");
+		}
+
+		this.threads = threads;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets whether the HTTP calls of each test should be recorded and
+	 * attached to the test results. This requires the
+	 * {@link InstrumentingHttpInvoker}.
+	 */
+	public void setRecordHttpCalls(boolean recordHttpCalls) {
+		this.recordHttpCalls = recordHttpCalls;
+	}
+
+	/**
+	 * Sets the time in milliseconds a test may run before it is cancelled.
+	 */
+	public void setTestTimeout(long testTimeout) {
+		if (testTimeout < 1) {
+			throw new IllegalArgumentException("Test timeout must be positive!");
+		}
+
+		this.testTimeout = testTimeout;
+	}
+
+	/**
+	 * Runs all enabled tests of the enabled groups.
+	 */
+	public void run(List<CmisTestGroup> groups, CmisTestProgressMonitor monitor) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+
+		try {
+			// submit all tests up front, so that the workers don't idle at
+			// group boundaries
+			List<GroupRun> groupRuns = new ArrayList<GroupRun>();
+			List<List<TestTask>> groupTasks = new ArrayList<List<TestTask>>();
+			List<List<Future<?>>> groupFutures = new ArrayList<List<Future<?>>>();
+			for (CmisTestGroup group : groups) {
+				GroupRun groupRun = new GroupRun(group);
+				List<TestTask> tasks = new ArrayList<TestTask>();
+				List<Future<?>> futures = new ArrayList<Future<?>>();
+				groupRuns.add(groupRun);
+				groupTasks.add(tasks);
+				groupFutures.add(futures);
+
+				if (group == null || !group.isEnabled()) {
+					continue;
+				}
+
+				for (CmisTest test : group.getTests()) {
+					if (test == null || !test.isEnabled()) {
+						tasks.add(null);
+						futures.add(null);
+					} else {
+						TestTask task = new TestTask(groupRun, test, recordHttpCalls);
+						tasks.add(task);
+						futures.add(executor.submit(task));
+					}
+				}
+			}
+
+			// report in the original order
+			for (int g = 0; g < groups.size(); g++) {
+				CmisTestGroup group = groups.get(g);
+				if (group == null || !group.isEnabled()) {
+					continue;
+				}
+
+				if (monitor != null) {
+					monitor.startGroup(group);
+				}
+
+				List<TestTask> tasks = groupTasks.get(g);
+				List<Future<?>> futures = groupFutures.get(g);
+				for (int t = 0; t < futures.size(); t++) {
+					Future<?> future = futures.get(t);
+					if (future == null) {
+						continue;
+					}
+
+					TestTask task = tasks.get(t);
+					CmisTest test = group.getTests().get(t);
+
+					if (!task.awaitStart(testTimeout) && task.cancel()) {
+						// no worker picked it up, so it won't run anymore
+						future.cancel(false);
+						if (monitor != null) {
+							monitor.startTest(test);
+						}
+						task.fail("Test did not start within " + testTimeout / 1000 + " seconds and was cancelled!");
+					} else if (task.isSkipped()) {
+						// skipped after a fatal result
+						continue;
+					} else {
+						if (monitor != null) {
+							monitor.startTest(test);
+						}
+
+						try {
+							future.get(task.getRemainingTime(testTimeout), TimeUnit.MILLISECONDS);
+						} catch (TimeoutException e) {
+							future.cancel(true);
+							task.fail("Test did not finish within " + testTimeout / 1000
+									+ " seconds and was cancelled!");
+						}
+					}
+
+					if (monitor != null) {
+						monitor.endTest(test);
+					}
+				}
+
+				// groups without tests still get both hooks
+				groupRuns.get(g).prepare();
+				invokeHook(group, "postRun", null);
+
+				if (monitor != null) {
+					monitor.endGroup(group);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Calls one of the protected hooks of {@link AbstractCmisTestGroup}.
+	 */
+	private static void invokeHook(CmisTestGroup group, String name, CmisTest test) throws Exception {
+		if (!(group instanceof AbstractCmisTestGroup)) {
+			return;
+		}
+
+		Method hook = test == null ? AbstractCmisTestGroup.class.getDeclaredMethod(name)
+				: AbstractCmisTestGroup.class.getDeclaredMethod(name, CmisTest.class);
+		hook.setAccessible(true);
+
+		try {
+			if (test == null) {
+				hook.invoke(group);
+			} else {
+				hook.invoke(group, test);
+			}
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Calls the {@code preRun} hook of a group once and remembers whether a
+	 * fatal result has ended the group.
+	 */
+	private static class GroupRun {
+		private final CmisTestGroup group;
+		private boolean prepared;
+		private volatile boolean aborted;
+
+		public GroupRun(CmisTestGroup group) {
+			this.group = group;
+		}
+
+		/**
+		 * Calls {@code preRun} if it hasn't been called yet. Returns
+		 * {@code false} if the group has been aborted.
+		 */
+		public synchronized boolean prepare() throws Exception {
+			if (!prepared) {
+				prepared = true;
+				try {
+					invokeHook(group, "preRun", null);
+				} catch (Exception e) {
+					aborted = true;
+					throw e;
+				}
+			}
+
+			return !aborted;
+		}
+
+		public void abort() {
+			aborted = true;
+		}
+
+		public boolean isAborted() {
+			return aborted;
+		}
+	}
+
+	/**
+	 * Runs a single test and measures its time.
+	 */
+	private static class TestTask implements Callable<Void> {
+		private enum State {
+			NEW, RUNNING, SKIPPED, CANCELLED
+		}
+
+		private final GroupRun groupRun;
+		private final CmisTest test;
+		private final boolean recordHttpCalls;
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch finished = new CountDownLatch(1);
+		private State state = State.NEW;
+		private boolean stopped;
+		private String failure;
+		private volatile long start;
+
+		public TestTask(GroupRun groupRun, CmisTest test, boolean recordHttpCalls) {
+			this.groupRun = groupRun;
+			this.test = test;
+			this.recordHttpCalls = recordHttpCalls;
+		}
+
+		/**
+		 * Waits until a worker has picked up the test. Returns {@code false}
+		 * if that didn't happen within the timeout.
+		 */
+		public boolean awaitStart(long timeout) throws InterruptedException {
+			return started.await(timeout, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Returns the time the test may still run, in milliseconds.
+		 */
+		public long getRemainingTime(long timeout) {
+			return Math.max(1, timeout - (System.currentTimeMillis() - start));
+		}
+
+		/**
+		 * Prevents the test from running if no worker has picked it up yet.
+		 */
+		public synchronized boolean cancel() {
+			if (state != State.NEW) {
+				return false;
+			}
+
+			state = State.CANCELLED;
+			return true;
+		}
+
+		/**
+		 * Returns whether the test has been skipped because a fatal result
+		 * ended its group.
+		 */
+		public synchronized boolean isSkipped() {
+			return state == State.SKIPPED;
+		}
+
+		/**
+		 * Adds a failure result to a test that has been cancelled. A running
+		 * test gets the result from its worker when it stops, because the
+		 * results of a test are not thread-safe. This method waits for that.
+		 */
+		public void fail(String message) throws InterruptedException {
+			synchronized (this) {
+				if (state == State.CANCELLED || stopped) {
+					addFailure(message);
+					return;
+				}
+
+				failure = message;
+			}
+
+			finished.await();
+		}
+
+		private void addFailure(String message) {
+			if (test instanceof AbstractCmisTest) {
+				AbstractCmisTest cmisTest = (AbstractCmisTest) test;
+				cmisTest.addResult(cmisTest.createResult(FAILURE, message));
+			}
+		}
+
+		@Override
+		public Void call() throws Exception {
+			synchronized (this) {
+				if (state != State.NEW) {
+					// cancelled before it started
+					return null;
+				}
+
+				state = groupRun.isAborted() ? State.SKIPPED : State.RUNNING;
+				start = System.currentTimeMillis();
+			}
+			started.countDown();
+
+			try {
+				if (state == State.RUNNING && groupRun.prepare()) {
+					runTest();
+				}
+			} finally {
+				finished.countDown();
+			}
+
+			return null;
+		}
+
+		private void runTest() throws Exception {
+			if (recordHttpCalls) {
+				HttpCallLog.start();
+			}
+
+			long testStart = System.currentTimeMillis();
+
+			try {
+				invokeHook(groupRun.group, "preTest", test);
+				test.run();
+			} catch (FatalTestException e) {
+				// skip the remaining tests of the group
+				groupRun.abort();
+			} catch (Exception e) {
+				if (test instanceof AbstractCmisTest) {
+					AbstractCmisTest cmisTest = (AbstractCmisTest) test;
+					// not fatal, because adding a fatal result throws an exception
+					cmisTest.addResult(cmisTest.createResult(UNEXPECTED_EXCEPTION, "Exception: " + e, e, false));
+				}
+			} finally {
+				synchronized (this) {
+					stopped = true;
+					if (test instanceof AbstractCmisTest) {
+						((AbstractCmisTest) test).setTime(System.currentTimeMillis() - testStart);
+					}
+					if (failure != null) {
+						addFailure(failure);
+					}
+				}
+
+				if (recordHttpCalls) {
+					HttpCallLog.stop().attachTo(test);
+				}
+			}
+
+			invokeHook(groupRun.group, "postTest", test);
+		}
+	}
+
+	/**
+	 * Creates named daemon threads.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "tck-worker-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
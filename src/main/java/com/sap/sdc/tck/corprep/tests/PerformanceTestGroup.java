@@ -0,0 +1,74 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests;
+
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.tck.impl.AbstractSessionTestGroup;
+
+import com.sap.sdc.tck.corprep.tests.readonly.SDCBatchRetrievalTest;
+import com.sap.sdc.tck.corprep.tests.readonly.SDCContentDownloadTest;
+import com.sap.sdc.tck.corprep.tests.readonly.SDCLargeFolderPaginationTest;
+import com.sap.sdc.tck.corprep.tests.readonly.SDCRangeDownloadTest;
+import com.sap.sdc.tck.corprep.tests.readonly.SDCTreeTraversalTest;
+import com.sap.sdc.tck.corprep.tests.readwrite.SDCBulkUpdateTest;
+import com.sap.sdc.tck.corprep.tests.readwrite.SDCBulkUploadTest;
+import com.sap.sdc.tck.corprep.tests.readwrite.SDCChangeLogTest;
+import com.sap.sdc.tck.corprep.tests.readwrite.SDCChunkedUploadTest;
+import com.sap.sdc.tck.corprep.tests.readwrite.SDCDeleteTreeTest;
+import com.sap.sdc.tck.corprep.tests.readwrite.SDCIncrementalSyncTest;
+import com.sap.sdc.tck.corprep.tests.readwrite.SDCWriteContentionTest;
+
+/**
+ * The SDC performance and load tests.
+ * <p>
+ * These tests run long and put a high load on the repository. They are not
+ * part of the read-only and read-write groups and only run if this group is
+ * selected explicitly.
+ */
+public class PerformanceTestGroup extends AbstractSessionTestGroup implements ReadOnlyFixture.Provider {
+
+	private final ReadOnlyFixture.Holder fixture = new ReadOnlyFixture.Holder();
+
+	@Override
+	public void init(Map<String, String> parameters) throws Exception {
+		super.init(parameters);
+
+		setName("SAP Document Center - Performance Test Group");
+		setDescription("SDC performance and load tests. They run long and put a high load on the repository. "
+				+ "Please configure a test folder with documents and folders and with write access.");
+
+		// SDC tests
+		addTest(new SDCBatchRetrievalTest());
+		addTest(new SDCLargeFolderPaginationTest());
+		addTest(new SDCTreeTraversalTest());
+		addTest(new SDCContentDownloadTest());
+		addTest(new SDCRangeDownloadTest());
+		addTest(new SDCIncrementalSyncTest());
+		addTest(new SDCChangeLogTest());
+		addTest(new SDCBulkUploadTest());
+		addTest(new SDCChunkedUploadTest());
+		addTest(new SDCBulkUpdateTest());
+		addTest(new SDCWriteContentionTest());
+		addTest(new SDCDeleteTreeTest());
+	}
+
+	@Override
+	public ReadOnlyFixture getReadOnlyFixture(Session session, String path) {
+		return fixture.get(session, path);
+	}
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests;
+
+import static org.apache.chemistry.opencmis.tck.impl.AbstractSessionTest.SELECT_ALL_NO_CACHE_OC;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.client.runtime.OperationContextImpl;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+
+/**
+ * Snapshot of the read-only test folder: the IDs of the folder itself and of
+ * the first document and the first folder in it.
+ * <p>
+ * The children are listed with a minimal operation context and the listing
+ * stops as soon as a document and a folder have been found. Test groups that
+ * implement {@link Provider} build the snapshot once and share it between
+ * their tests. Since the snapshot only keeps IDs, each test gets the objects
+ * with its own session.
+ */
+public class ReadOnlyFixture {
+
+	private static final int SCAN_PAGE_SIZE = 100;
+
+	private final String path;
+	private String folderId;
+	private String documentId;
+	private String subFolderId;
+	private boolean notAFolder;
+	private CmisBaseException error;
+
+	private ReadOnlyFixture(String path) {
+		this.path = path;
+	}
+
+	/**
+	 * Reads the test folder and scans its children. Errors are kept in the
+	 * snapshot and not thrown.
+	 */
+	public static ReadOnlyFixture create(Session session, String path) {
+		ReadOnlyFixture fixture = new ReadOnlyFixture(path);
+
+		try {
+			CmisObject cmisObject = session.getObjectByPath(path, SELECT_ALL_NO_CACHE_OC);
+			if (!(cmisObject instanceof Folder)) {
+				fixture.notAFolder = true;
+				return fixture;
+			}
+
+			fixture.folderId = cmisObject.getId();
+
+			for (CmisObject child : ((Folder) cmisObject).getChildren(createScanContext())) {
+				if (fixture.documentId == null && child instanceof Document) {
+					fixture.documentId = child.getId();
+				} else if (fixture.subFolderId == null && child instanceof Folder) {
+					fixture.subFolderId = child.getId();
+				}
+
+				if (fixture.documentId != null && fixture.subFolderId != null) {
+					break;
+				}
+			}
+		} catch (CmisBaseException e) {
+			fixture.error = e;
+		}
+
+		return fixture;
+	}
+
+	/**
+	 * Creates the operation context for scanning children. It only selects
+	 * the properties needed to identify an object and disables the cache.
+	 */
+	public static OperationContext createScanContext() {
+		return new OperationContextImpl(
+				new HashSet<String>(Arrays.asList(PropertyIds.OBJECT_ID, PropertyIds.OBJECT_TYPE_ID,
+						PropertyIds.BASE_TYPE_ID, PropertyIds.NAME, PropertyIds.LAST_MODIFICATION_DATE)),
+				false, false, false, IncludeRelationships.NONE, Collections.singleton("cmis:none"), false, null,
+				false, SCAN_PAGE_SIZE);
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the ID of the test folder, or {@code null} if it could not be
+	 * read or is not a folder.
+	 */
+	public String getFolderId() {
+		return folderId;
+	}
+
+	/**
+	 * Returns the ID of the first document in the test folder, or
+	 * {@code null}.
+	 */
+	public String getDocumentId() {
+		return documentId;
+	}
+
+	/**
+	 * Returns the ID of the first folder in the test folder, or {@code null}.
+	 */
+	public String getSubFolderId() {
+		return subFolderId;
+	}
+
+	/**
+	 * Gets the test folder with the given session, or returns {@code null}
+	 * if it could not be read or is not a folder.
+	 */
+	public Folder getFolder(Session session) {
+		return folderId == null ? null : (Folder) session.getObject(folderId, SELECT_ALL_NO_CACHE_OC);
+	}
+
+	/**
+	 * Gets the first document in the test folder with the given session, or
+	 * returns {@code null}. Only the properties of the scan context are
+	 * selected.
+	 */
+	public Document getDocument(Session session) {
+		return documentId == null ? null : (Document) session.getObject(documentId, createScanContext());
+	}
+
+	/**
+	 * Gets the first folder in the test folder with the given session, or
+	 * returns {@code null}. Only the properties of the scan context are
+	 * selected.
+	 */
+	public Folder getSubFolder(Session session) {
+		return subFolderId == null ? null : (Folder) session.getObject(subFolderId, createScanContext());
+	}
+
+	/**
+	 * Returns {@code true} if the object at the test folder path is not a
+	 * folder.
+	 */
+	public boolean isNotAFolder() {
+		return notAFolder;
+	}
+
+	/**
+	 * Returns the exception that occurred while reading the test folder, or
+	 * {@code null}.
+	 */
+	public CmisBaseException getError() {
+		return error;
+	}
+
+	/**
+	 * Holds the snapshot of a {@link Provider}.
+	 */
+	public static class Holder {
+		private ReadOnlyFixture fixture;
+
+		/**
+		 * Returns the snapshot of the given path and creates it with the given
+		 * session if it does not exist yet. Failed snapshots are not kept.
+		 */
+		public synchronized ReadOnlyFixture get(Session session, String path) {
+			if (fixture == null || !fixture.getPath().equals(path)) {
+				ReadOnlyFixture newFixture = create(session, path);
+				if (newFixture.getError() != null) {
+					return newFixture;
+				}
+				fixture = newFixture;
+			}
+
+			return fixture;
+		}
+	}
+
+	/**
+	 * A test group that shares one snapshot between its tests.
+	 */
+	public interface Provider {
+
+		/**
+		 * Returns the shared snapshot and creates it with the given session
+		 * if it does not exist yet. Failed snapshots are not shared.
+		 */
+		ReadOnlyFixture getReadOnlyFixture(Session session, String path);
+	}
+}
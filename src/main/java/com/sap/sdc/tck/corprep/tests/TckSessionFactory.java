@@ -0,0 +1,62 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests;
+
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.client.SessionParameterMap;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.client.api.SessionFactory;
+import org.apache.chemistry.opencmis.client.runtime.SessionFactoryImpl;
+import org.apache.chemistry.opencmis.commons.SessionParameter;
+import org.apache.chemistry.opencmis.tck.impl.AbstractSessionTest;
+
+/**
+ * Creates sessions from TCK parameters the same way the TCK tests do.
+ * <p>
+ * This is used by the runner modes that work outside of a test, for example
+ * the benchmark mode.
+ */
+public final class TckSessionFactory {
+
+	private static final SessionFactory FACTORY = SessionFactoryImpl.newInstance();
+
+	private TckSessionFactory() {
+	}
+
+	/**
+	 * Creates a session. If no repository ID is set, the first repository is
+	 * used. The cache of the default operation context is disabled.
+	 */
+	public static Session createSession(Map<String, String> parameters) {
+		SessionParameterMap sessionParameters = new SessionParameterMap(parameters);
+		if (!sessionParameters.containsKey(SessionParameter.USER_AGENT)) {
+			sessionParameters.setUserAgent(AbstractSessionTest.TCK_USER_AGENT);
+		}
+
+		Session session = null;
+		String repId = sessionParameters.get(SessionParameter.REPOSITORY_ID);
+		if (repId != null && repId.length() > 0) {
+			session = FACTORY.createSession(sessionParameters);
+		} else {
+			session = FACTORY.getRepositories(sessionParameters).get(0).createSession();
+		}
+
+		session.getDefaultContext().setCacheEnabled(false);
+
+		return session;
+	}
+}
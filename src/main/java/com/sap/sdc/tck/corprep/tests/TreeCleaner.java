@@ -0,0 +1,316 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.ObjectData;
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderData;
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderList;
+import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisObjectNotFoundException;
+
+/**
+ * Deletes folder trees bottom-up with several threads.
+ * <p>
+ * The tree is listed level by level first. Then all non-folder objects are
+ * deleted, and then the folders from the deepest level up to the root. Each
+ * delete is retried with a growing pause, so that throttling or lock
+ * conflicts don't leave objects behind. Objects that are already gone count
+ * as deleted, which allows several cleaners to work on overlapping trees.
+ */
+public class TreeCleaner {
+
+	/**
+	 * Name prefix of the test folders that the OpenCMIS TCK creates. The
+	 * prefix is followed by the creation time in milliseconds and a hash
+	 * code.
+	 */
+	public static final String TEST_FOLDER_PREFIX = "cmistck";
+
+	private static final int TIME_DIGITS = 13;
+
+	private static final String FILTER = PropertyIds.OBJECT_ID + "," + PropertyIds.BASE_TYPE_ID;
+	private static final int PAGE_SIZE = 1000;
+	private static final long RETRY_PAUSE = 200;
+	private static final int MAX_ERRORS = 10;
+
+	private final Session session;
+	private final int threads;
+	private final int retries;
+
+	public TreeCleaner(Session session, int threads, int retries) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be at least 1!");
+		}
+
+		this.session = session;
+		this.threads = threads;
+		this.retries = Math.max(0, retries);
+	}
+
+	/**
+	 * Returns the test folders in the given folder that are at least
+	 * {@code minAge} milliseconds old. Younger folders may belong to a
+	 * running test and are skipped, as are folders whose name does not
+	 * contain a creation time.
+	 */
+	public List<Folder> findTestFolders(Folder parent, long minAge) {
+		long now = System.currentTimeMillis();
+
+		List<Folder> result = new ArrayList<Folder>();
+		for (CmisObject child : parent.getChildren(ReadOnlyFixture.createScanContext())) {
+			if (!(child instanceof Folder)) {
+				continue;
+			}
+
+			long created = getCreationTime(child.getName());
+			if (created > 0 && now - created >= minAge) {
+				result.add((Folder) child);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the creation time in the name of a test folder, or -1 if the
+	 * name is not the name of a test folder.
+	 */
+	public static long getCreationTime(String name) {
+		if (name == null || name.length() < TEST_FOLDER_PREFIX.length() + TIME_DIGITS
+				|| !name.startsWith(TEST_FOLDER_PREFIX)) {
+			return -1;
+		}
+
+		String time = name.substring(TEST_FOLDER_PREFIX.length(), TEST_FOLDER_PREFIX.length() + TIME_DIGITS);
+		for (int i = 0; i < time.length(); i++) {
+			if (!Character.isDigit(time.charAt(i))) {
+				return -1;
+			}
+		}
+
+		return Long.parseLong(time);
+	}
+
+	/**
+	 * Deletes the folder and everything below it.
+	 */
+	public Result delete(String folderId) throws InterruptedException {
+		final Result result = new Result();
+		long start = System.nanoTime();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// list the tree level by level
+			final List<String> objects = Collections.synchronizedList(new ArrayList<String>());
+			List<List<String>> levels = new ArrayList<List<String>>();
+			List<String> level = Collections.singletonList(folderId);
+			while (!level.isEmpty()) {
+				levels.add(level);
+
+				final List<String> nextLevel = Collections.synchronizedList(new ArrayList<String>());
+				List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+				for (final String id : level) {
+					tasks.add(new Callable<Void>() {
+						@Override
+						public Void call() {
+							list(id, nextLevel, objects, result);
+							return null;
+						}
+					});
+				}
+				executor.invokeAll(tasks);
+
+				level = new ArrayList<String>(nextLevel);
+			}
+
+			// delete the leaves first, then the folders bottom-up
+			deleteAll(executor, objects, result);
+			for (int i = levels.size() - 1; i >= 0; i--) {
+				deleteAll(executor, levels.get(i), result);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		result.time = (System.nanoTime() - start) / 1000000L;
+
+		return result;
+	}
+
+	private void deleteAll(ExecutorService executor, List<String> ids, final Result result)
+			throws InterruptedException {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final String id : ids) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws InterruptedException {
+					deleteObject(id, result);
+					return null;
+				}
+			});
+		}
+
+		executor.invokeAll(tasks);
+	}
+
+	private void deleteObject(String id, Result result) throws InterruptedException {
+		String repositoryId = session.getRepositoryInfo().getId();
+
+		CmisBaseException error = null;
+		for (int attempt = 0; attempt <= retries; attempt++) {
+			if (attempt > 0) {
+				result.retries.incrementAndGet();
+				Thread.sleep(RETRY_PAUSE * attempt);
+			}
+
+			try {
+				session.getBinding().getObjectService().deleteObject(repositoryId, id, Boolean.TRUE, null);
+				result.deleted.incrementAndGet();
+				return;
+			} catch (CmisObjectNotFoundException e) {
+				result.deleted.incrementAndGet();
+				return;
+			} catch (CmisBaseException e) {
+				error = e;
+			}
+		}
+
+		result.fail(id, error);
+	}
+
+	/**
+	 * Lists all children of the folder. Child folders go to the next level,
+	 * all other objects to the object list.
+	 */
+	private void list(String folderId, List<String> folders, List<String> objects, Result result) {
+		String repositoryId = session.getRepositoryInfo().getId();
+
+		long skipCount = 0;
+		while (true) {
+			ObjectInFolderList page = null;
+			CmisBaseException error = null;
+			for (int attempt = 0; attempt <= retries && page == null; attempt++) {
+				if (attempt > 0) {
+					result.retries.incrementAndGet();
+					try {
+						Thread.sleep(RETRY_PAUSE * attempt);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+
+				try {
+					page = session.getBinding().getNavigationService().getChildren(repositoryId, folderId, FILTER,
+							null, Boolean.FALSE, IncludeRelationships.NONE, "cmis:none", Boolean.FALSE,
+							BigInteger.valueOf(PAGE_SIZE), BigInteger.valueOf(skipCount), null);
+				} catch (CmisObjectNotFoundException e) {
+					return;
+				} catch (CmisBaseException e) {
+					error = e;
+				}
+			}
+
+			if (page == null) {
+				result.fail(folderId, error);
+				return;
+			}
+
+			if (page.getObjects() != null) {
+				for (ObjectInFolderData child : page.getObjects()) {
+					ObjectData object = child.getObject();
+					if (object == null || object.getId() == null) {
+						continue;
+					}
+
+					if (object.getBaseTypeId() == BaseTypeId.CMIS_FOLDER) {
+						folders.add(object.getId());
+					} else {
+						objects.add(object.getId());
+					}
+				}
+			}
+
+			if (page.getObjects() == null || page.getObjects().isEmpty() || !Boolean.TRUE.equals(page.hasMoreItems())) {
+				return;
+			}
+			skipCount += page.getObjects().size();
+		}
+	}
+
+	/**
+	 * Outcome of a cleanup.
+	 */
+	public static class Result {
+		private final AtomicInteger deleted = new AtomicInteger();
+		private final AtomicInteger failed = new AtomicInteger();
+		private final AtomicInteger retries = new AtomicInteger();
+		private final List<String> errors = new ArrayList<String>();
+		private long time;
+
+		public int getDeleted() {
+			return deleted.get();
+		}
+
+		public int getFailed() {
+			return failed.get();
+		}
+
+		public int getRetries() {
+			return retries.get();
+		}
+
+		/**
+		 * Returns the first errors.
+		 */
+		public List<String> getErrors() {
+			synchronized (errors) {
+				return new ArrayList<String>(errors);
+			}
+		}
+
+		/**
+		 * Returns the time of the cleanup in milliseconds.
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		void fail(String id, CmisBaseException e) {
+			failed.incrementAndGet();
+			synchronized (errors) {
+				if (errors.size() < MAX_ERRORS) {
+					errors.add(id + ": " + (e == null ? "unknown error" : e.toString()));
+				}
+			}
+		}
+	}
+}
@@ -17,6 +17,7 @@ package com.sap.sdc.tck.corprep.tests.readonly;
 
 import java.util.Map;
 
+import org.apache.chemistry.opencmis.client.api.Session;
 import org.apache.chemistry.opencmis.tck.impl.AbstractSessionTestGroup;
 import org.apache.chemistry.opencmis.tck.tests.basics.RepositoryInfoTest;
 import org.apache.chemistry.opencmis.tck.tests.basics.RootFolderTest;
@@ -24,7 +25,11 @@ import org.apache.chemistry.opencmis.tck.tests.query.InvalidQueryTest;
 import org.apache.chemistry.opencmis.tck.tests.query.QuerySmokeTest;
 import org.apache.chemistry.opencmis.tck.tests.types.BaseTypesTest;
 
-public class ReadOnlyTestGroup extends AbstractSessionTestGroup {
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+
+public class ReadOnlyTestGroup extends AbstractSessionTestGroup implements ReadOnlyFixture.Provider {
+
+	private final ReadOnlyFixture.Holder fixture = new ReadOnlyFixture.Holder();
 
 	@Override
 	public void init(Map<String, String> parameters) throws Exception {
@@ -46,4 +51,9 @@ public class ReadOnlyTestGroup extends AbstractSessionTestGroup {
 		addTest(new SAPSearchTest());
 		addTest(new SDCSyncTest());
 	}
+
+	@Override
+	public ReadOnlyFixture getReadOnlyFixture(Session session, String path) {
+		return fixture.get(session, path);
+	}
 }
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readonly;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.QueryResult;
+import org.apache.chemistry.opencmis.client.api.QueryStatement;
+import org.apache.chemistry.opencmis.client.api.Session;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+import com.sap.sdc.tck.corprep.tests.BoundedQuery;
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+
+public class SDCBatchRetrievalTest extends AbstractSDCTest {
+
+	private static final int[] BATCH_SIZES = { 10, 100, 1000, 5000 };
+	private static final int MAX_SINGLE_FETCHES = 100;
+	private static final int ID_PAGE_SIZE = 1000;
+	private static final double SCALING_TOLERANCE = 1.25;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Batch Retrieval Test");
+		setDescription("Compares objectId IN queries of growing size with single getObject calls.");
+	}
+
+	@Override
+	public void run(Session session) {
+		if (!supportsQuery(session) || isFulltextOnly(session)) {
+			addResult(createResult(WARNING, "Repository does not support metadata queries! Sync will not work!"));
+			return;
+		}
+
+		Folder testFolder = getReadOnlyTestFolder(session);
+		List<String> ids = collectDocumentIds(session, testFolder, BATCH_SIZES[BATCH_SIZES.length - 1]);
+		if (ids.isEmpty()) {
+			addResult(createResult(WARNING,
+					"Test folder tree does not contain a document, which is required for this test!"));
+			return;
+		}
+
+		// single fetches and IN lists select the same properties
+		OperationContext context = ReadOnlyFixture.createScanContext();
+		String selectList = getSelectList(context);
+
+		int singleFetches = Math.min(MAX_SINGLE_FETCHES, ids.size());
+		long singleStart = System.nanoTime();
+		for (int i = 0; i < singleFetches; i++) {
+			session.getObject(ids.get(i), context);
+		}
+		double singleMicros = (System.nanoTime() - singleStart) / 1000.0 / singleFetches;
+
+		addResult(createResult(INFO, String.format(Locale.ENGLISH,
+				"%d single getObject calls: %.2f ms per object (test folder tree has %d%s documents)", singleFetches,
+				singleMicros / 1000.0, ids.size(), ids.size() == BATCH_SIZES[BATCH_SIZES.length - 1] ? "+" : "")));
+
+		// IN lists
+		double bestMicros = Double.MAX_VALUE;
+		int recommended = 0;
+		int accepted = 0;
+		for (int size : BATCH_SIZES) {
+			int distinct = Math.min(size, ids.size());
+			String[] list = new String[size];
+			for (int i = 0; i < size; i++) {
+				list[i] = ids.get(i % ids.size());
+			}
+
+			QueryStatement stmt = session
+					.createQueryStatement("SELECT " + selectList + " FROM cmis:document WHERE cmis:objectId IN (?)");
+			stmt.setString(1, list);
+
+			BoundedQuery query = new BoundedQuery(stmt.toQueryString(), size, Math.min(size, ID_PAGE_SIZE));
+			try {
+				query.execute(session);
+			} catch (Exception e) {
+				addResult(createResult(size <= 100 ? WARNING : INFO,
+						"IN list of " + size + " IDs was rejected by the repository: " + e.toString()));
+				break;
+			}
+
+			double perObject = (double) query.getTotalTime() / distinct;
+			addResult(createResult(INFO, String.format(Locale.ENGLISH,
+					"IN list of %d IDs (%d distinct): %d results in %s ms, %.2f ms per object, %.1fx the speed of single calls",
+					size, distinct, query.getCount(), LatencyHistogram.formatMillis(query.getTotalTime()),
+					perObject / 1000.0, singleMicros / perObject)));
+
+			if (query.getCount() != distinct) {
+				addResult(createResult(WARNING, "IN list of " + size + " IDs returned " + query.getCount()
+						+ " results instead of " + distinct + "!"));
+				break;
+			}
+
+			accepted = size;
+
+			// lists with repeated IDs show whether the statement is accepted,
+			// but their cost per object is not comparable
+			if (distinct < size) {
+				continue;
+			}
+
+			if (perObject > bestMicros * SCALING_TOLERANCE) {
+				addResult(createResult(INFO, "IN lists stop scaling above " + recommended + " IDs."));
+				break;
+			}
+
+			bestMicros = Math.min(bestMicros, perObject);
+			recommended = size;
+		}
+
+		if (accepted == 0) {
+			addResult(createResult(WARNING, "No IN list worked! Sync has to fetch objects one by one."));
+		} else if (recommended == 0) {
+			addResult(createResult(INFO, "The test folder tree has too few documents to measure the scaling. "
+					+ "IN lists of up to " + accepted + " IDs are accepted."));
+		} else if (bestMicros > singleMicros) {
+			addResult(createResult(WARNING, "IN lists are slower than single getObject calls!"));
+		} else {
+			addResult(createResult(INFO, "Recommended sync batch size: " + recommended + " IDs"));
+		}
+	}
+
+	/**
+	 * Returns the properties of the operation context as query select list.
+	 */
+	private static String getSelectList(OperationContext context) {
+		StringBuilder sb = new StringBuilder(128);
+		for (String property : new TreeSet<String>(context.getFilter())) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(property);
+		}
+
+		return sb.toString();
+	}
+
+	private List<String> collectDocumentIds(Session session, Folder folder, int max) {
+		QueryStatement stmt = session.createQueryStatement("SELECT cmis:objectId FROM cmis:document WHERE in_tree(?)");
+		stmt.setString(1, folder.getId());
+
+		OperationContext context = session.createOperationContext();
+		context.setIncludeAllowableActions(false);
+		context.setCacheEnabled(false);
+		context.setMaxItemsPerPage(ID_PAGE_SIZE);
+
+		List<String> result = new ArrayList<String>();
+		Iterator<QueryResult> iterator = session.query(stmt.toQueryString(), false, context).iterator();
+		while (result.size() < max && iterator.hasNext()) {
+			String id = iterator.next().getPropertyValueByQueryName("cmis:objectId");
+			if (id != null) {
+				result.add(id);
+			}
+		}
+
+		return result;
+	}
+}
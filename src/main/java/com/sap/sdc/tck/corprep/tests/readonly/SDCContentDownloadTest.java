@@ -0,0 +1,264 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readonly;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.data.ContentStream;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConstraintException;
+import org.apache.chemistry.opencmis.commons.impl.IOUtils;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+
+public class SDCContentDownloadTest extends AbstractSDCTest {
+
+	/** Session parameter with the number of parallel downloads. */
+	public static final String PARALLEL = "com.sap.sdc.tck.download.parallel";
+
+	/** Session parameter with the maximum number of documents to download. */
+	public static final String MAX_DOCUMENTS = "com.sap.sdc.tck.download.maxDocuments";
+
+	/** Session parameter with the maximum number of megabytes to download. */
+	public static final String MAX_MEGABYTES = "com.sap.sdc.tck.download.maxMegabytes";
+
+	private static final int DEFAULT_PARALLEL = 1;
+	private static final int DEFAULT_MAX_DOCUMENTS = 100;
+	private static final int DEFAULT_MAX_MEGABYTES = 100;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final double MB = 1024.0 * 1024.0;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Content Download Test");
+		setDescription("Streams the content of the documents in the test folder and measures the download speed.");
+	}
+
+	@Override
+	public void run(Session session) {
+		Folder testFolder = getReadOnlyTestFolder(session);
+		if (testFolder == null) {
+			return;
+		}
+
+		int maxDocuments = getIntParameter(MAX_DOCUMENTS, DEFAULT_MAX_DOCUMENTS);
+		long maxBytes = getIntParameter(MAX_MEGABYTES, DEFAULT_MAX_MEGABYTES) * 1024L * 1024L;
+
+		// select documents until one of the limits is reached
+		List<Document> documents = new ArrayList<Document>();
+		long selectedBytes = 0;
+		for (CmisObject child : testFolder.getChildren(createContentContext(session))) {
+			if (!(child instanceof Document)) {
+				continue;
+			}
+
+			long length = Math.max(0, ((Document) child).getContentStreamLength());
+			if (!documents.isEmpty() && selectedBytes + length > maxBytes) {
+				addResult(createResult(INFO, "Download limited to " + documents.size() + " documents with "
+						+ selectedBytes + " bytes (" + MAX_MEGABYTES + ")."));
+				break;
+			}
+
+			documents.add((Document) child);
+			selectedBytes += length;
+			if (documents.size() >= maxDocuments) {
+				break;
+			}
+		}
+
+		if (documents.isEmpty()) {
+			addResult(createResult(WARNING, "Test folder does not contain a document, which is required for this test!"));
+			return;
+		}
+
+		int parallel = Math.min(getIntParameter(PARALLEL, DEFAULT_PARALLEL), documents.size());
+		Download[] downloads = download(session, documents, parallel, maxBytes);
+
+		LatencyHistogram ttfb = new LatencyHistogram();
+		long bytes = 0;
+		long wallTime = 0;
+		int failed = 0;
+		int noContent = 0;
+		int skipped = 0;
+		for (Download download : downloads) {
+			if (download == null) {
+				// cancelled or interrupted
+				skipped++;
+				continue;
+			}
+			if (download.skipped) {
+				skipped++;
+				continue;
+			}
+			wallTime = Math.max(wallTime, download.end);
+
+			if (download.noContent) {
+				noContent++;
+				continue;
+			}
+			if (download.error != null) {
+				failed++;
+				addResult(createResult(WARNING, "Downloading the content of '" + download.name + "' failed: "
+						+ download.error.toString()));
+				continue;
+			}
+
+			bytes += download.bytes;
+			ttfb.record(download.timeToFirstByte);
+
+			addResult(createResult(INFO, String.format(Locale.ENGLISH,
+					"%s: %d bytes in %s ms, first byte after %s ms, %.2f MB/s", download.name, download.bytes,
+					LatencyHistogram.formatMillis(download.time),
+					LatencyHistogram.formatMillis(download.timeToFirstByte),
+					download.bytes / MB * 1000000.0 / Math.max(1, download.time))));
+
+			checkLength(download, "cmis:contentStreamLength", download.propertyLength);
+			checkLength(download, "the Content-Length header", download.streamLength);
+		}
+
+		addResult(createResult(INFO, String.format(Locale.ENGLISH,
+				"%d documents with %d parallel downloads: %.2f MB in %s ms, %.2f MB/s, first byte p50 %s ms, "
+						+ "p90 %s ms, max %s ms, %d failed, %d without content, %d skipped",
+				downloads.length - skipped, parallel, bytes / MB, LatencyHistogram.formatMillis(wallTime),
+				bytes / MB * 1000000.0 / Math.max(1, wallTime), LatencyHistogram.formatMillis(ttfb.getPercentile(50)),
+				LatencyHistogram.formatMillis(ttfb.getPercentile(90)), LatencyHistogram.formatMillis(ttfb.getMax()),
+				failed, noContent, skipped)));
+	}
+
+	private void checkLength(Download download, String source, long expected) {
+		if (expected >= 0 && expected != download.bytes) {
+			addResult(createResult(WARNING, "'" + download.name + "': " + source + " is " + expected + " but "
+					+ download.bytes + " bytes have been downloaded!"));
+		}
+	}
+
+	/**
+	 * Downloads the documents with the given number of workers. Each worker
+	 * reuses one buffer for all its downloads. Once the downloaded bytes
+	 * reach the limit, the remaining documents are skipped. This catches
+	 * documents without a known content length.
+	 */
+	private Download[] download(final Session session, List<Document> documents, int parallel,
+			final long maxBytes) {
+		final Download[] downloads = new Download[documents.size()];
+		final AtomicLong downloadedBytes = new AtomicLong();
+		final long start = System.nanoTime();
+
+		ExecutorService executor = Executors.newFixedThreadPool(parallel);
+		final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+			@Override
+			protected byte[] initialValue() {
+				return new byte[BUFFER_SIZE];
+			}
+		};
+
+		for (int i = 0; i < documents.size(); i++) {
+			final int index = i;
+			final Document document = documents.get(i);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (downloadedBytes.get() >= maxBytes) {
+						Download download = new Download(document.getName());
+						download.skipped = true;
+						downloads[index] = download;
+						return;
+					}
+
+					Download download = download(session, document, buffers.get());
+					download.end = (System.nanoTime() - start) / 1000L;
+					downloadedBytes.addAndGet(download.bytes);
+					downloads[index] = download;
+				}
+			});
+		}
+		awaitWorkers(executor, "The downloads");
+
+		return downloads;
+	}
+
+	private Download download(Session session, Document document, byte[] buffer) {
+		Download download = new Download(document.getName());
+		download.propertyLength = document.getContentStreamLength();
+
+		long start = System.nanoTime();
+		InputStream stream = null;
+		try {
+			ContentStream contentStream = session.getContentStream(document);
+			if (contentStream == null || contentStream.getStream() == null) {
+				download.noContent = true;
+				return download;
+			}
+			download.streamLength = contentStream.getLength();
+			stream = contentStream.getStream();
+
+			int n;
+			while ((n = stream.read(buffer)) > -1) {
+				if (download.timeToFirstByte < 0 && n > 0) {
+					download.timeToFirstByte = (System.nanoTime() - start) / 1000L;
+				}
+				download.bytes += n;
+			}
+			if (download.timeToFirstByte < 0) {
+				download.timeToFirstByte = (System.nanoTime() - start) / 1000L;
+			}
+		} catch (CmisConstraintException e) {
+			download.noContent = true;
+		} catch (IOException e) {
+			download.error = e;
+		} catch (RuntimeException e) {
+			download.error = e;
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+		download.time = (System.nanoTime() - start) / 1000L;
+
+		return download;
+	}
+
+	private static class Download {
+		final String name;
+		long propertyLength = -1;
+		long streamLength = -1;
+		long bytes;
+		long timeToFirstByte = -1;
+		long time;
+		long end;
+		boolean noContent;
+		boolean skipped;
+		Exception error;
+
+		Download(String name) {
+			this.name = name;
+		}
+	}
+}
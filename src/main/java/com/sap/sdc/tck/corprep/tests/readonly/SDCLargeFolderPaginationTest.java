@@ -0,0 +1,368 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readonly;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.UNEXPECTED_EXCEPTION;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.ObjectType;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderData;
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderList;
+import org.apache.chemistry.opencmis.commons.data.RepositoryCapabilities;
+import org.apache.chemistry.opencmis.commons.definitions.PropertyDefinition;
+import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
+import org.apache.chemistry.opencmis.commons.enums.CapabilityOrderBy;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.spi.NavigationService;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+
+public class SDCLargeFolderPaginationTest extends AbstractSDCTest {
+
+	/**
+	 * Session parameter with the path of a folder with many children. The
+	 * default is the test folder.
+	 */
+	public static final String FOLDER = "com.sap.sdc.tck.pagination.folder";
+
+	/** Session parameter with the comma separated page sizes. */
+	public static final String PAGE_SIZES = "com.sap.sdc.tck.pagination.pageSizes";
+
+	/** Session parameter with the maximum number of children to read. */
+	public static final String MAX_CHILDREN = "com.sap.sdc.tck.pagination.maxChildren";
+
+	private static final String DEFAULT_PAGE_SIZES = "100,1000";
+	private static final int DEFAULT_MAX_CHILDREN = 10000;
+
+	/** Fewer pages do not show how the latency scales. */
+	private static final int MIN_PAGES = 8;
+
+	/** Number of points of the latency series in the report. */
+	private static final int SERIES_POINTS = 10;
+
+	/**
+	 * Deep pages that are this much slower than the first pages hint at a
+	 * server that reads all skipped children.
+	 */
+	private static final double DEEP_PAGE_FACTOR = 2.0;
+
+	/** Smaller growths of the page latency in microseconds are noise. */
+	private static final long MIN_PAGE_GROWTH = 50000;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Large Folder Pagination Test");
+		setDescription("Pages through a large folder with several page sizes and checks how the page latency scales with the skip count.");
+	}
+
+	@Override
+	public void run(Session session) {
+		Folder folder = getLargeFolder(session);
+		if (folder == null) {
+			return;
+		}
+
+		int maxChildren = getIntParameter(MAX_CHILDREN, DEFAULT_MAX_CHILDREN);
+		String orderBy = getOrderBy(session);
+		if (orderBy == null) {
+			addResult(createResult(INFO, "The children can't be ordered by " + PropertyIds.OBJECT_ID + " or "
+					+ PropertyIds.NAME + ", so the page sizes may return them in different orders."));
+		}
+
+		List<Paging> pagings = new ArrayList<Paging>();
+		for (int pageSize : getIntListParameter(PAGE_SIZES, DEFAULT_PAGE_SIZES, 1)) {
+			Paging paging;
+			try {
+				paging = page(session, folder.getId(), pageSize, maxChildren, orderBy);
+			} catch (CmisBaseException e) {
+				addResult(createResult(FAILURE,
+						"Paging with a page size of " + pageSize + " failed: " + e.toString(), e, false));
+				continue;
+			}
+			pagings.add(paging);
+
+			addResult(createResult(INFO, String.format(Locale.ENGLISH,
+					"Page size %d: %d children%s in %d pages, %s ms, numItems %s", pageSize, paging.ids.size(),
+					paging.truncated ? " (stopped at " + maxChildren + ")" : "", paging.latencies.size(),
+					LatencyHistogram.formatMillis(paging.totalTime()),
+					paging.numItems < 0 ? "unknown" : String.valueOf(paging.numItems))));
+
+			if (paging.duplicates > 0) {
+				addResult(createResult(FAILURE, "Page size " + pageSize + ": " + paging.duplicates
+						+ " children were returned on more than one page!"));
+			}
+			if (paging.emptyPage) {
+				addResult(createResult(FAILURE, "Page size " + pageSize + ": the repository returned an empty page "
+						+ "at skip count " + paging.skipCounts.get(paging.skipCounts.size() - 1)
+						+ " but reported more items!"));
+			}
+			if (!paging.truncated && paging.numItems >= 0 && paging.numItems != paging.ids.size()) {
+				addResult(createResult(WARNING, "Page size " + pageSize + ": numItems is " + paging.numItems + " but "
+						+ paging.ids.size() + " children were returned!"));
+			}
+
+			checkScaling(paging);
+		}
+
+		checkConsistency(pagings, orderBy != null);
+	}
+
+	/**
+	 * Returns a property that orders the children completely, or
+	 * {@code null} if the repository can't order them.
+	 */
+	private String getOrderBy(Session session) {
+		RepositoryCapabilities capabilities = session.getRepositoryInfo().getCapabilities();
+		if (capabilities == null || capabilities.getOrderByCapability() == null
+				|| capabilities.getOrderByCapability() == CapabilityOrderBy.NONE) {
+			return null;
+		}
+
+		for (String propertyId : new String[] { PropertyIds.OBJECT_ID, PropertyIds.NAME }) {
+			if (isOrderable(session, BaseTypeId.CMIS_DOCUMENT, propertyId)
+					&& isOrderable(session, BaseTypeId.CMIS_FOLDER, propertyId)) {
+				return propertyId;
+			}
+		}
+
+		return null;
+	}
+
+	private boolean isOrderable(Session session, BaseTypeId baseType, String propertyId) {
+		try {
+			ObjectType type = session.getTypeDefinition(baseType.value());
+			PropertyDefinition<?> definition = type.getPropertyDefinitions().get(propertyId);
+			return definition != null && Boolean.TRUE.equals(definition.isOrderable());
+		} catch (CmisBaseException e) {
+			return false;
+		}
+	}
+
+	private Folder getLargeFolder(Session session) {
+		String path = getParameters().get(FOLDER);
+		if (path == null || path.trim().isEmpty()) {
+			return getReadOnlyTestFolder(session);
+		}
+
+		try {
+			CmisObject object = session.getObjectByPath(path.trim(), ReadOnlyFixture.createScanContext());
+			if (object instanceof Folder) {
+				return (Folder) object;
+			}
+
+			addResult(createResult(FAILURE, "Pagination folder is not a folder! Path: " + path));
+		} catch (CmisBaseException e) {
+			addResult(createResult(UNEXPECTED_EXCEPTION, "Pagination folder could not be retrieved! Exception: "
+					+ e.getMessage(), e, false));
+		}
+
+		return null;
+	}
+
+	/**
+	 * Pages through the children with the navigation service, so that the
+	 * latency of every single page request is measured.
+	 */
+	private Paging page(Session session, String folderId, int pageSize, int maxChildren, String orderBy) {
+		NavigationService navigation = session.getBinding().getNavigationService();
+		String repositoryId = session.getRepositoryInfo().getId();
+
+		Paging paging = new Paging(pageSize);
+		long skipCount = 0;
+		while (true) {
+			long start = System.nanoTime();
+			ObjectInFolderList page = navigation.getChildren(repositoryId, folderId, PropertyIds.OBJECT_ID, orderBy,
+					false, IncludeRelationships.NONE, "cmis:none", false, BigInteger.valueOf(pageSize),
+					BigInteger.valueOf(skipCount), null);
+			paging.skipCounts.add(skipCount);
+			paging.latencies.add((System.nanoTime() - start) / 1000L);
+
+			if (skipCount == 0 && page.getNumItems() != null) {
+				paging.numItems = page.getNumItems().longValue();
+			}
+
+			List<ObjectInFolderData> objects = page.getObjects();
+			int count = objects == null ? 0 : objects.size();
+			if (objects != null) {
+				for (ObjectInFolderData object : objects) {
+					if (object.getObject() == null) {
+						continue;
+					}
+					if (paging.ids.add(object.getObject().getId())) {
+						paging.order.add(object.getObject().getId());
+					} else {
+						paging.duplicates++;
+					}
+				}
+			}
+
+			boolean hasMoreItems = Boolean.TRUE.equals(page.hasMoreItems());
+			if (hasMoreItems && count == 0) {
+				paging.emptyPage = true;
+				break;
+			}
+			if (!hasMoreItems) {
+				break;
+			}
+
+			skipCount += count;
+			if (skipCount >= maxChildren) {
+				paging.truncated = true;
+				break;
+			}
+		}
+
+		return paging;
+	}
+
+	/**
+	 * Compares the first quarter of the pages with the last quarter.
+	 */
+	private void checkScaling(Paging paging) {
+		int pages = paging.latencies.size();
+		if (pages < MIN_PAGES) {
+			addResult(createResult(INFO, "Page size " + paging.pageSize + ": too few pages to measure the scaling. "
+					+ "Set " + FOLDER + " to a folder with tens of thousands of children."));
+			return;
+		}
+
+		StringBuilder series = new StringBuilder();
+		for (int i = 0; i < SERIES_POINTS; i++) {
+			int index = (int) ((long) i * (pages - 1) / (SERIES_POINTS - 1));
+			if (series.length() > 0) {
+				series.append(", ");
+			}
+			series.append(paging.skipCounts.get(index)).append(": ")
+					.append(LatencyHistogram.formatMillis(paging.latencies.get(index))).append(" ms");
+		}
+		addResult(createResult(INFO, "Page size " + paging.pageSize + ", latency by skip count: " + series));
+
+		int quarter = pages / 4;
+		long first = median(paging.latencies.subList(0, quarter));
+		long last = median(paging.latencies.subList(pages - quarter, pages));
+
+		if (last > first * DEEP_PAGE_FACTOR && last - first > MIN_PAGE_GROWTH) {
+			addResult(createResult(WARNING, String.format(Locale.ENGLISH,
+					"Page size %d: deep pages are %.1fx slower than the first pages (median %s ms vs %s ms). "
+							+ "The repository probably reads all skipped children for every page!",
+					paging.pageSize, (double) last / Math.max(1, first), LatencyHistogram.formatMillis(last),
+					LatencyHistogram.formatMillis(first))));
+		}
+	}
+
+	/**
+	 * Children that were returned with one page size but not with another
+	 * are missing from the listing. Pagings that stopped at the limit are
+	 * compared up to the shortest of them, which only works if the children
+	 * are ordered.
+	 */
+	private void checkConsistency(List<Paging> pagings, boolean ordered) {
+		int limit = Integer.MAX_VALUE;
+		for (Paging paging : pagings) {
+			if (paging.truncated) {
+				limit = Math.min(limit, paging.order.size());
+			}
+		}
+
+		Set<String> all = new HashSet<String>();
+		for (Paging paging : pagings) {
+			all.addAll(paging.prefix(limit));
+		}
+
+		Paging reference = null;
+		for (Paging paging : pagings) {
+			int missing = 0;
+			for (String id : all) {
+				if (!paging.ids.contains(id)) {
+					missing++;
+				}
+			}
+
+			if (missing > 0) {
+				if (!paging.truncated || ordered) {
+					addResult(createResult(FAILURE, "Page size " + paging.pageSize + ": " + missing
+							+ " children were missing that were returned with other page sizes!"));
+				} else {
+					addResult(createResult(INFO, "Page size " + paging.pageSize + ": " + missing
+							+ " of the first " + limit + " children of other page sizes were not read. "
+							+ "The repository returned the children in a different order."));
+				}
+			} else if (reference == null) {
+				reference = paging;
+			} else if (!paging.prefix(limit).equals(reference.prefix(limit))) {
+				addResult(createResult(ordered ? WARNING : INFO, "Page sizes " + reference.pageSize + " and "
+						+ paging.pageSize + " returned the children in a different order"
+						+ (ordered ? " although they were ordered!" : ".")));
+			}
+		}
+	}
+
+	private static long median(List<Long> values) {
+		List<Long> sorted = new ArrayList<Long>(values);
+		Collections.sort(sorted);
+		return sorted.get(sorted.size() / 2);
+	}
+
+	private static class Paging {
+		final int pageSize;
+		final Set<String> ids = new HashSet<String>();
+		final List<String> order = new ArrayList<String>();
+		final List<Long> skipCounts = new ArrayList<Long>();
+		final List<Long> latencies = new ArrayList<Long>();
+		long numItems = -1;
+		int duplicates;
+		boolean truncated;
+		boolean emptyPage;
+
+		Paging(int pageSize) {
+			this.pageSize = pageSize;
+		}
+
+		/**
+		 * Returns the first children in the order they were returned.
+		 */
+		List<String> prefix(int limit) {
+			return order.subList(0, Math.min(limit, order.size()));
+		}
+
+		long totalTime() {
+			long sum = 0;
+			for (long latency : latencies) {
+				sum += latency;
+			}
+			return sum;
+		}
+	}
+}
@@ -0,0 +1,395 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readonly;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.SKIPPED;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.UNEXPECTED_EXCEPTION;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.data.ContentStream;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.impl.IOUtils;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+
+public class SDCRangeDownloadTest extends AbstractSDCTest {
+
+	/**
+	 * Session parameter with the path of a large document. The default is
+	 * the largest document in the test folder.
+	 */
+	public static final String DOCUMENT = "com.sap.sdc.tck.rangeDownload.document";
+
+	/** Session parameter with the comma separated range counts. */
+	public static final String RANGE_COUNTS = "com.sap.sdc.tck.rangeDownload.rangeCounts";
+
+	/**
+	 * Session parameter with the maximum size of the document in megabytes.
+	 * The document is downloaded once per range count and kept in a
+	 * temporary file.
+	 */
+	public static final String MAX_MEGABYTES = "com.sap.sdc.tck.rangeDownload.maxMegabytes";
+
+	private static final String DEFAULT_RANGE_COUNTS = "2,4,8";
+	private static final int DEFAULT_MAX_MEGABYTES = 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final double MB = 1024.0 * 1024.0;
+
+	/** Smaller documents are downloaded, but the speedup says little. */
+	private static final long MIN_SIZE = 1024 * 1024;
+
+	/** Smaller speedups do not justify the additional connections. */
+	private static final double MIN_SPEEDUP = 1.2;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Range Download Test");
+		setDescription("Downloads a large document in parallel byte ranges and compares the speed with a single stream.");
+	}
+
+	@Override
+	public void run(Session session) {
+		Document document = getLargeDocument(session);
+		if (document == null) {
+			return;
+		}
+
+		long size = document.getContentStreamLength();
+		if (size <= 0) {
+			addResult(createResult(WARNING, "Document '" + document.getName()
+					+ "' has no content or does not report its content length!"));
+			return;
+		}
+		if (size > getMaxSize()) {
+			addResult(createResult(SKIPPED, "Document '" + document.getName() + "' has " + size
+					+ " bytes, which is more than " + MAX_MEGABYTES + " allows. Test skipped!"));
+			return;
+		}
+		if (size < MIN_SIZE) {
+			addResult(createResult(INFO, "Document '" + document.getName() + "' has only " + size
+					+ " bytes. Set " + DOCUMENT + " to a large document to get a meaningful speedup."));
+		}
+
+		File file = null;
+		try {
+			file = File.createTempFile("sdc-tck-range", ".bin");
+
+			// single stream, the reference checksum
+			long start = System.nanoTime();
+			byte[] expected = downloadSingle(session, document, file);
+			long singleTime = (System.nanoTime() - start) / 1000L;
+
+			if (file.length() != size) {
+				addResult(createResult(WARNING, "Single stream download returned " + file.length()
+						+ " bytes, but the content length is " + size + "!"));
+				return;
+			}
+
+			addResult(createResult(INFO, String.format(Locale.ENGLISH,
+					"'%s': %d bytes (%.1f MB) as single stream in %s ms, %.2f MB/s", document.getName(), size,
+					size / MB, LatencyHistogram.formatMillis(singleTime), size / MB * 1000000.0 / Math.max(1, singleTime))));
+
+			int bestCount = 1;
+			double bestSpeedup = 1.0;
+			for (int count : getIntListParameter(RANGE_COUNTS, DEFAULT_RANGE_COUNTS, 2)) {
+				if (count > size) {
+					break;
+				}
+
+				start = System.nanoTime();
+				try {
+					downloadRanges(session, document, size, count, file);
+				} catch (RangeIgnoredException e) {
+					addResult(createResult(WARNING, "The repository ignored the requested byte range "
+							+ e.getMessage() + ". Ranged downloads do not work!"));
+					return;
+				} catch (ExecutionException e) {
+					addResult(createResult(WARNING, "Download with " + count + " ranges failed: "
+							+ e.getCause().toString()));
+					continue;
+				} catch (TimeoutException e) {
+					addResult(createResult(FAILURE, "Download with " + count + " ranges did not finish within "
+							+ getWorkerTimeout() / 1000 + " seconds and has been cancelled! (" + WORKER_TIMEOUT + ")"));
+					return;
+				}
+				long time = (System.nanoTime() - start) / 1000L;
+
+				if (!Arrays.equals(expected, checksum(file))) {
+					addResult(createResult(FAILURE, "Download with " + count
+							+ " ranges has a different checksum than the single stream download!"));
+					continue;
+				}
+
+				double speedup = (double) singleTime / Math.max(1, time);
+				addResult(createResult(INFO, String.format(Locale.ENGLISH,
+						"%d ranges in %s ms, %.2f MB/s, %.2fx the speed of a single stream (checksum ok)", count,
+						LatencyHistogram.formatMillis(time), size / MB * 1000000.0 / Math.max(1, time), speedup)));
+
+				if (speedup > bestSpeedup) {
+					bestSpeedup = speedup;
+					bestCount = count;
+				}
+			}
+
+			// small documents are too noisy for a recommendation
+			if (size >= MIN_SIZE) {
+				if (bestSpeedup < MIN_SPEEDUP) {
+					addResult(createResult(INFO, "Ranged parallel downloads are not faster than a single stream."));
+				} else {
+					addResult(createResult(INFO, String.format(Locale.ENGLISH,
+							"Recommended number of ranges: %d (%.2fx speedup)", bestCount, bestSpeedup)));
+				}
+			}
+		} catch (IOException e) {
+			addResult(createResult(UNEXPECTED_EXCEPTION, "Download failed: " + e.toString(), e, false));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (file != null && !file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	private Document getLargeDocument(Session session) {
+		OperationContext context = createContentContext(session);
+
+		String path = getParameters().get(DOCUMENT);
+		if (path != null && !path.trim().isEmpty()) {
+			try {
+				CmisObject object = session.getObjectByPath(path.trim(), context);
+				if (object instanceof Document) {
+					return (Document) object;
+				}
+
+				addResult(createResult(FAILURE, "Range download document is not a document! Path: " + path));
+			} catch (CmisBaseException e) {
+				addResult(createResult(UNEXPECTED_EXCEPTION, "Range download document could not be retrieved! "
+						+ "Exception: " + e.getMessage(), e, false));
+			}
+
+			return null;
+		}
+
+		Folder testFolder = getReadOnlyTestFolder(session);
+		if (testFolder == null) {
+			return null;
+		}
+
+		// the largest document within the size limit
+		long maxSize = getMaxSize();
+		Document largest = null;
+		boolean tooLarge = false;
+		for (CmisObject child : testFolder.getChildren(context)) {
+			if (!(child instanceof Document)) {
+				continue;
+			}
+
+			long length = ((Document) child).getContentStreamLength();
+			if (length > maxSize) {
+				tooLarge = true;
+			} else if (largest == null || length > largest.getContentStreamLength()) {
+				largest = (Document) child;
+			}
+		}
+
+		if (largest == null) {
+			addResult(createResult(WARNING, tooLarge ? "All documents in the test folder are larger than "
+					+ MAX_MEGABYTES + " allows!"
+					: "Test folder does not contain a document, which is required for this test!"));
+		}
+
+		return largest;
+	}
+
+	private long getMaxSize() {
+		return getIntParameter(MAX_MEGABYTES, DEFAULT_MAX_MEGABYTES) * 1024L * 1024L;
+	}
+
+	/**
+	 * Streams the content into the file and returns its checksum.
+	 */
+	private byte[] downloadSingle(Session session, Document document, File file) throws IOException {
+		MessageDigest digest = createDigest();
+
+		ContentStream contentStream = session.getContentStream(document);
+		InputStream stream = contentStream.getStream();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = stream.read(buffer)) > -1) {
+				digest.update(buffer, 0, n);
+				ByteBuffer bb = ByteBuffer.wrap(buffer, 0, n);
+				while (bb.hasRemaining()) {
+					channel.write(bb);
+				}
+			}
+		} finally {
+			IOUtils.closeQuietly(stream);
+			raf.close();
+		}
+
+		return digest.digest();
+	}
+
+	/**
+	 * Downloads the content in the given number of ranges, one thread per
+	 * range, and writes each range at its position into the file.
+	 */
+	private void downloadRanges(final Session session, final Document document, long size, int count, File file)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException, RangeIgnoredException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		ExecutorService executor = Executors.newFixedThreadPool(count);
+		try {
+			raf.setLength(0);
+			raf.setLength(size);
+			final FileChannel channel = raf.getChannel();
+
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			long rangeSize = (size + count - 1) / count;
+			for (long offset = 0; offset < size; offset += rangeSize) {
+				final long rangeOffset = offset;
+				final long rangeLength = Math.min(rangeSize, size - offset);
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						downloadRange(session, document, rangeOffset, rangeLength, channel);
+						return null;
+					}
+				}));
+			}
+
+			long deadline = System.currentTimeMillis() + getWorkerTimeout();
+			for (Future<Void> future : futures) {
+				try {
+					future.get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RangeIgnoredException) {
+						throw (RangeIgnoredException) e.getCause();
+					}
+					throw e;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			raf.close();
+		}
+	}
+
+	private static void downloadRange(Session session, Document document, long offset, long length,
+			FileChannel channel) throws IOException, RangeIgnoredException {
+		ContentStream contentStream = session.getContentStream(document, null, BigInteger.valueOf(offset),
+				BigInteger.valueOf(length));
+		InputStream stream = contentStream.getStream();
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long position = offset;
+			long end = offset + length;
+			int n;
+			while ((n = stream.read(buffer)) > -1) {
+				if (position + n > end) {
+					throw new RangeIgnoredException(offset + "-" + (end - 1));
+				}
+
+				ByteBuffer bb = ByteBuffer.wrap(buffer, 0, n);
+				while (bb.hasRemaining()) {
+					position += channel.write(bb, position);
+				}
+			}
+
+			if (position != end) {
+				throw new IOException("Range " + offset + "-" + (end - 1) + " returned " + (position - offset)
+						+ " bytes instead of " + length);
+			}
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+	}
+
+	private static byte[] checksum(File file) throws IOException {
+		MessageDigest digest = createDigest();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			while (channel.read(buffer) > -1) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		} finally {
+			raf.close();
+		}
+
+		return digest.digest();
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * Thrown if the repository returns more than the requested range.
+	 */
+	private static class RangeIgnoredException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		RangeIgnoredException(String range) {
+			super(range);
+		}
+	}
+}
@@ -30,6 +30,7 @@ import org.apache.chemistry.opencmis.client.api.Session;
 import org.apache.chemistry.opencmis.tck.CmisTestResult;
 
 import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
 
 public class SDCSyncTest extends AbstractSDCTest {
 
@@ -44,9 +45,10 @@ public class SDCSyncTest extends AbstractSDCTest {
 	public void run(Session session) {
 		if (supportsQuery(session) && !isFulltextOnly(session)) {
 
-			Folder testFolder = getReadOnlyTestFolder(session);
-			Document doc = findADocument(testFolder);
-			Folder folder = findAFolder(testFolder);
+			ReadOnlyFixture fixture = getReadOnlyFixture(session);
+			Folder testFolder = fixture.getFolder(session);
+			Document doc = fixture.getDocument(session);
+			Folder folder = fixture.getSubFolder(session);
 
 			if (doc == null) {
 				addResult(createResult(WARNING,
@@ -59,7 +61,7 @@ public class SDCSyncTest extends AbstractSDCTest {
 				QueryStatement stmt = session.createQueryStatement(
 						"SELECT * FROM cmis:document WHERE in_tree(?) AND cmis:lastModificationDate >= TIMESTAMP ?");
 				stmt.setString(1, testFolder.getId());
-				GregorianCalendar dateTime = doc.getLastModificationDate();
+				GregorianCalendar dateTime = (GregorianCalendar) doc.getLastModificationDate().clone();
 				dateTime.add(Calendar.MINUTE, -5);
 				stmt.setDateTime(2, dateTime);
 				runQueryNoException(session, stmt.toQueryString());
@@ -76,7 +78,7 @@ public class SDCSyncTest extends AbstractSDCTest {
 				QueryStatement stmt = session.createQueryStatement(
 						"SELECT * FROM cmis:folder WHERE in_tree(?) AND cmis:lastModificationDate >= TIMESTAMP ?");
 				stmt.setString(1, testFolder.getId());
-				GregorianCalendar dateTime = folder.getLastModificationDate();
+				GregorianCalendar dateTime = (GregorianCalendar) folder.getLastModificationDate().clone();
 				dateTime.add(Calendar.MINUTE, -5);
 				stmt.setDateTime(2, dateTime);
 				runQueryNoException(session, stmt.toQueryString());
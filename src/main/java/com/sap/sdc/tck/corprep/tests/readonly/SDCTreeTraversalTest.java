@@ -0,0 +1,380 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readonly;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.SKIPPED;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.UNEXPECTED_EXCEPTION;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.ObjectData;
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderContainer;
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderData;
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderList;
+import org.apache.chemistry.opencmis.commons.data.RepositoryCapabilities;
+import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.spi.NavigationService;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+
+public class SDCTreeTraversalTest extends AbstractSDCTest {
+
+	/**
+	 * Session parameter with the path of the folder whose tree is walked.
+	 * The test is skipped if it is not set.
+	 */
+	public static final String FOLDER = "com.sap.sdc.tck.traversal.folder";
+
+	/** Session parameter with the parallelism of the parallel walk. */
+	public static final String PARALLELISM = "com.sap.sdc.tck.traversal.parallelism";
+
+	/**
+	 * Session parameter with the comma separated depths of the
+	 * getDescendants and getFolderTree calls. -1 is the whole tree and only
+	 * used if it is configured.
+	 */
+	public static final String DEPTHS = "com.sap.sdc.tck.traversal.depths";
+
+	/** Session parameter with the maximum number of objects a walk reads. */
+	public static final String MAX_OBJECTS = "com.sap.sdc.tck.traversal.maxObjects";
+
+	/** Session parameter with the maximum number of levels a walk reads. */
+	public static final String MAX_DEPTH = "com.sap.sdc.tck.traversal.maxDepth";
+
+	private static final int DEFAULT_PARALLELISM = 4;
+	private static final String DEFAULT_DEPTHS = "1,2";
+	private static final int DEFAULT_MAX_OBJECTS = 10000;
+	private static final int DEFAULT_MAX_DEPTH = 5;
+	private static final int PAGE_SIZE = 1000;
+	private static final String FILTER = PropertyIds.OBJECT_ID + "," + PropertyIds.BASE_TYPE_ID;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Tree Traversal Test");
+		setDescription("Walks a folder tree with getDescendants, getFolderTree, and serial and parallel getChildren calls.");
+	}
+
+	@Override
+	public void run(Session session) {
+		String path = getParameters().get(FOLDER);
+		if (path == null || path.trim().isEmpty()) {
+			addResult(createResult(SKIPPED, "Set " + FOLDER + " to the folder whose tree should be walked. "
+					+ "Test skipped!"));
+			return;
+		}
+
+		Folder root = getRootFolder(session, path.trim());
+		if (root == null) {
+			return;
+		}
+
+		String repositoryId = session.getRepositoryInfo().getId();
+		NavigationService navigation = session.getBinding().getNavigationService();
+		RepositoryCapabilities capabilities = session.getRepositoryInfo().getCapabilities();
+		int maxObjects = getIntParameter(MAX_OBJECTS, DEFAULT_MAX_OBJECTS);
+		int maxDepth = getIntParameter(MAX_DEPTH, DEFAULT_MAX_DEPTH);
+
+		List<Walk> fullWalks = new ArrayList<Walk>();
+
+		// serial getChildren
+		Walk serial = new Walk("serial getChildren", maxObjects, maxDepth);
+		long start = System.nanoTime();
+		walkSerial(navigation, repositoryId, root.getId(), 1, serial);
+		serial.time = (System.nanoTime() - start) / 1000L;
+		report(serial);
+		fullWalks.add(serial);
+
+		// parallel getChildren
+		int parallelism = getIntParameter(PARALLELISM, DEFAULT_PARALLELISM);
+		Walk parallel = new Walk("parallel getChildren (" + parallelism + " threads)", maxObjects, maxDepth);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			start = System.nanoTime();
+			pool.invoke(new ChildrenTask(navigation, repositoryId, root.getId(), 1, parallel));
+			parallel.time = (System.nanoTime() - start) / 1000L;
+		} finally {
+			pool.shutdown();
+		}
+		report(parallel);
+		fullWalks.add(parallel);
+
+		// walks that stopped at a limit read different parts of the tree
+		boolean complete = !serial.truncated && !parallel.truncated;
+		if (!complete) {
+			addResult(createResult(INFO, "The tree has more than " + maxObjects + " objects (" + MAX_OBJECTS
+					+ ") or more than " + maxDepth + " levels (" + MAX_DEPTH + "). The walks read only a part of it."));
+		} else if (parallel.objects.get() != serial.objects.get()) {
+			addResult(createResult(WARNING, "The parallel walk found " + parallel.objects.get()
+					+ " objects, the serial walk " + serial.objects.get() + "!"));
+		}
+
+		// getDescendants and getFolderTree
+		boolean descendants = capabilities != null && Boolean.TRUE.equals(capabilities.isGetDescendantsSupported());
+		boolean folderTree = capabilities != null && Boolean.TRUE.equals(capabilities.isGetFolderTreeSupported());
+
+		List<Integer> depths = getIntListParameter(DEPTHS, DEFAULT_DEPTHS, -1);
+		if (depths.remove(Integer.valueOf(0))) {
+			addResult(createResult(WARNING, "Depth 0 in " + DEPTHS + " is ignored!"));
+		}
+
+		for (int depth : depths) {
+			if (depth > maxDepth) {
+				addResult(createResult(INFO, "Depth " + depth + " is larger than " + MAX_DEPTH + " and skipped."));
+				continue;
+			}
+
+			Walk walk = new Walk("getDescendants depth " + depth, maxObjects, maxDepth);
+			if (runTreeCall(navigation, repositoryId, root.getId(), depth, false, walk, descendants)) {
+				report(walk);
+				if (depth == -1 && complete) {
+					fullWalks.add(walk);
+					if (walk.objects.get() != serial.objects.get()) {
+						addResult(createResult(WARNING, "getDescendants of the whole tree returned "
+								+ walk.objects.get() + " objects, the serial walk found " + serial.objects.get() + "!"));
+					}
+				}
+			}
+
+			walk = new Walk("getFolderTree depth " + depth, maxObjects, maxDepth);
+			if (runTreeCall(navigation, repositoryId, root.getId(), depth, true, walk, folderTree)) {
+				report(walk);
+				if (depth == -1 && complete && walk.objects.get() != serial.folders.get()) {
+					addResult(createResult(WARNING, "getFolderTree of the whole tree returned " + walk.objects.get()
+							+ " folders, the serial walk found " + serial.folders.get() + "!"));
+				}
+			}
+		}
+
+		// walks of a part of the tree are compared by their speed
+		Walk fastest = null;
+		for (Walk walk : fullWalks) {
+			if (fastest == null || walk.getObjectsPerSecond() > fastest.getObjectsPerSecond()) {
+				fastest = walk;
+			}
+		}
+		addResult(createResult(INFO,
+				(complete ? "Fastest walk of the whole tree: " : "Fastest walk: ") + fastest.name));
+	}
+
+	private Folder getRootFolder(Session session, String path) {
+		try {
+			CmisObject object = session.getObjectByPath(path, ReadOnlyFixture.createScanContext());
+			if (object instanceof Folder) {
+				return (Folder) object;
+			}
+
+			addResult(createResult(FAILURE, "Traversal folder is not a folder! Path: " + path));
+		} catch (CmisBaseException e) {
+			addResult(createResult(UNEXPECTED_EXCEPTION, "Traversal folder could not be retrieved! Exception: "
+					+ e.getMessage(), e, false));
+		}
+
+		return null;
+	}
+
+	private boolean runTreeCall(NavigationService navigation, String repositoryId, String folderId, int depth,
+			boolean foldersOnly, Walk walk, boolean supported) {
+		String operation = foldersOnly ? "getFolderTree" : "getDescendants";
+		if (!supported) {
+			addResult(createResult(INFO, "Repository does not support " + operation + ", skipped depth " + depth));
+			return false;
+		}
+
+		long start = System.nanoTime();
+		List<ObjectInFolderContainer> containers;
+		try {
+			if (foldersOnly) {
+				containers = navigation.getFolderTree(repositoryId, folderId, BigInteger.valueOf(depth), FILTER,
+						false, IncludeRelationships.NONE, "cmis:none", false, null);
+			} else {
+				containers = navigation.getDescendants(repositoryId, folderId, BigInteger.valueOf(depth), FILTER,
+						false, IncludeRelationships.NONE, "cmis:none", false, null);
+			}
+		} catch (CmisBaseException e) {
+			addResult(createResult(WARNING, operation + " with depth " + depth
+					+ " failed although the repository supports it: " + e.toString()));
+			return false;
+		}
+		walk.time = (System.nanoTime() - start) / 1000L;
+		walk.requests.incrementAndGet();
+		count(containers, walk);
+
+		return true;
+	}
+
+	private static void count(List<ObjectInFolderContainer> containers, Walk walk) {
+		if (containers == null) {
+			return;
+		}
+
+		for (ObjectInFolderContainer container : containers) {
+			if (container.getObject() != null) {
+				walk.add(container.getObject().getObject());
+			}
+			count(container.getChildren(), walk);
+		}
+	}
+
+	private static void walkSerial(NavigationService navigation, String repositoryId, String folderId, int level,
+			Walk walk) {
+		for (String subFolderId : listChildren(navigation, repositoryId, folderId, level, walk)) {
+			walkSerial(navigation, repositoryId, subFolderId, level + 1, walk);
+		}
+	}
+
+	/**
+	 * Reads all pages of the children of a folder and returns the IDs of the
+	 * subfolders that the walk should read next. The children are on the
+	 * given level below the root. The walk stops at its object and depth
+	 * limits.
+	 */
+	private static List<String> listChildren(NavigationService navigation, String repositoryId, String folderId,
+			int level, Walk walk) {
+		List<String> subFolders = new ArrayList<String>();
+
+		long skipCount = 0;
+		while (true) {
+			if (walk.objects.get() >= walk.maxObjects) {
+				walk.truncated = true;
+				return new ArrayList<String>();
+			}
+
+			ObjectInFolderList page = navigation.getChildren(repositoryId, folderId, FILTER, null, false,
+					IncludeRelationships.NONE, "cmis:none", false, BigInteger.valueOf(PAGE_SIZE),
+					BigInteger.valueOf(skipCount), null);
+			walk.requests.incrementAndGet();
+
+			List<ObjectInFolderData> objects = page.getObjects();
+			if (objects == null || objects.isEmpty()) {
+				break;
+			}
+
+			for (ObjectInFolderData object : objects) {
+				if (walk.add(object.getObject())) {
+					subFolders.add(object.getObject().getId());
+				}
+			}
+
+			if (!Boolean.TRUE.equals(page.hasMoreItems())) {
+				break;
+			}
+			skipCount += objects.size();
+		}
+
+		if (level >= walk.maxDepth && !subFolders.isEmpty()) {
+			walk.truncated = true;
+			return new ArrayList<String>();
+		}
+
+		return subFolders;
+	}
+
+	private void report(Walk walk) {
+		addResult(createResult(INFO, String.format(Locale.ENGLISH,
+				"%s: %d objects (%d folders) with %d requests in %s ms, %.0f objects/s", walk.name,
+				walk.objects.get(), walk.folders.get(), walk.requests.get(), LatencyHistogram.formatMillis(walk.time),
+				walk.getObjectsPerSecond())));
+	}
+
+	/**
+	 * Lists the children of a folder and forks a task for each subfolder.
+	 */
+	private static class ChildrenTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient NavigationService navigation;
+		private final String repositoryId;
+		private final String folderId;
+		private final int level;
+		private final transient Walk walk;
+
+		ChildrenTask(NavigationService navigation, String repositoryId, String folderId, int level, Walk walk) {
+			this.navigation = navigation;
+			this.repositoryId = repositoryId;
+			this.folderId = folderId;
+			this.level = level;
+			this.walk = walk;
+		}
+
+		@Override
+		protected void compute() {
+			List<ChildrenTask> tasks = new ArrayList<ChildrenTask>();
+			for (String subFolderId : listChildren(navigation, repositoryId, folderId, level, walk)) {
+				tasks.add(new ChildrenTask(navigation, repositoryId, subFolderId, level + 1, walk));
+			}
+
+			invokeAll(tasks);
+		}
+	}
+
+	private static class Walk {
+		final String name;
+		final int maxObjects;
+		final int maxDepth;
+		final AtomicLong objects = new AtomicLong();
+		final AtomicLong folders = new AtomicLong();
+		final AtomicLong requests = new AtomicLong();
+		volatile boolean truncated;
+		long time;
+
+		Walk(String name, int maxObjects, int maxDepth) {
+			this.name = name;
+			this.maxObjects = maxObjects;
+			this.maxDepth = maxDepth;
+		}
+
+		double getObjectsPerSecond() {
+			return objects.get() * 1000000.0 / Math.max(1, time);
+		}
+
+		/**
+		 * Counts an object and returns whether it is a folder.
+		 */
+		boolean add(ObjectData object) {
+			if (object == null) {
+				return false;
+			}
+
+			objects.incrementAndGet();
+			if (object.getBaseTypeId() == BaseTypeId.CMIS_FOLDER) {
+				folders.incrementAndGet();
+				return true;
+			}
+
+			return false;
+		}
+	}
+}
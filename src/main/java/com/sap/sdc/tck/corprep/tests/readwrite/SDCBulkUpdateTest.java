@@ -0,0 +1,320 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readwrite;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.SKIPPED;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.ObjectType;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.BulkUpdateObjectIdAndChangeToken;
+import org.apache.chemistry.opencmis.commons.data.Properties;
+import org.apache.chemistry.opencmis.commons.definitions.PropertyDefinition;
+import org.apache.chemistry.opencmis.commons.enums.CmisVersion;
+import org.apache.chemistry.opencmis.commons.enums.Updatability;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.BulkUpdateObjectIdAndChangeTokenImpl;
+import org.apache.chemistry.opencmis.commons.spi.Holder;
+import org.apache.chemistry.opencmis.commons.spi.ObjectService;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+
+public class SDCBulkUpdateTest extends AbstractSDCTest {
+
+	/** Session parameter with the number of documents to update. */
+	public static final String DOCUMENTS = "com.sap.sdc.tck.bulkUpdate.documents";
+
+	/** Session parameter with the comma separated batch sizes. */
+	public static final String BATCH_SIZES = "com.sap.sdc.tck.bulkUpdate.batchSizes";
+
+	private static final int DEFAULT_DOCUMENTS = 2000;
+	private static final String DEFAULT_BATCH_SIZES = "10,100,1000";
+
+	/** Number of valid objects in the batch that checks partial failures. */
+	private static final int PARTIAL_BATCH = 10;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Bulk Update Test");
+		setDescription("Compares bulkUpdateProperties in several batch sizes with one updateProperties call per document.");
+	}
+
+	@Override
+	public void run(Session session) {
+		if (session.getRepositoryInfo().getCmisVersion() != CmisVersion.CMIS_1_1) {
+			addResult(createResult(SKIPPED, "bulkUpdateProperties requires CMIS 1.1. Test skipped!"));
+			return;
+		}
+
+		ObjectType type = session.getTypeDefinition(getDocumentTestTypeId());
+		PropertyDefinition<?> description = type.getPropertyDefinitions().get(PropertyIds.DESCRIPTION);
+		if (description == null || description.getUpdatability() != Updatability.READWRITE) {
+			addResult(createResult(SKIPPED, "The type '" + type.getId()
+					+ "' has no updatable cmis:description property. Test skipped!"));
+			return;
+		}
+
+		int count = getIntParameter(DOCUMENTS, DEFAULT_DOCUMENTS);
+
+		// batches larger than the number of documents are sent as one batch
+		List<Integer> batchSizes = new ArrayList<Integer>();
+		for (int batchSize : getIntListParameter(BATCH_SIZES, DEFAULT_BATCH_SIZES, 1)) {
+			if (!batchSizes.contains(Math.min(batchSize, count))) {
+				batchSizes.add(Math.min(batchSize, count));
+			}
+		}
+
+		try {
+			Folder testFolder = createTestFolder(session);
+
+			long start = System.nanoTime();
+			List<Document> documents = createDocuments(session, testFolder, "bulk-", count);
+			addResult(createResult(INFO, String.format(Locale.ENGLISH, "Created %d documents in %s ms", count,
+					LatencyHistogram.formatMillis((System.nanoTime() - start) / 1000L))));
+
+			List<String> ids = new ArrayList<String>(count);
+			for (Document doc : documents) {
+				ids.add(doc.getId());
+			}
+
+			double single = updateSingle(session, type, ids);
+
+			int bestBatchSize = 0;
+			double bestThroughput = 0;
+			for (int batchSize : batchSizes) {
+				double throughput = updateBulk(session, type, ids, batchSize);
+				if (throughput > bestThroughput) {
+					bestThroughput = throughput;
+					bestBatchSize = batchSize;
+				}
+			}
+
+			if (bestBatchSize > 0) {
+				addResult(createResult(INFO, String.format(Locale.ENGLISH,
+						"Batch size with the best throughput: %d (%.1f documents/s, %.1fx one call per document)",
+						bestBatchSize, bestThroughput, bestThroughput / Math.max(0.001, single))));
+			}
+
+			checkPartialFailure(session, testFolder, type, ids);
+		} finally {
+			deleteTestFolder();
+		}
+	}
+
+	/**
+	 * Updates the documents with one updateProperties call each and returns
+	 * the documents per second.
+	 */
+	private double updateSingle(Session session, ObjectType type, List<String> ids) {
+		String repositoryId = session.getRepositoryInfo().getId();
+		ObjectService objectService = session.getBinding().getObjectService();
+		Properties properties = createProperties(session, type, "single");
+
+		LatencyHistogram latencies = new LatencyHistogram();
+		int errors = 0;
+		String lastError = null;
+
+		long start = System.nanoTime();
+		for (String id : ids) {
+			long callStart = System.nanoTime();
+			try {
+				objectService.updateProperties(repositoryId, new Holder<String>(id), null, properties, null);
+				latencies.recordSince(callStart);
+			} catch (CmisBaseException e) {
+				errors++;
+				lastError = e.toString();
+			}
+		}
+		long time = (System.nanoTime() - start) / 1000L;
+
+		double throughput = latencies.getCount() * 1000000.0 / Math.max(1, time);
+		addResult(createResult(INFO, String.format(Locale.ENGLISH,
+				"updateProperties per document: %d documents in %s ms, %.1f documents/s, p50 %s ms, p90 %s ms, max %s ms",
+				latencies.getCount(), LatencyHistogram.formatMillis(time), throughput,
+				LatencyHistogram.formatMillis(latencies.getPercentile(50)),
+				LatencyHistogram.formatMillis(latencies.getPercentile(90)),
+				LatencyHistogram.formatMillis(latencies.getMax()))));
+
+		if (errors > 0) {
+			addResult(createResult(WARNING, errors + " of " + ids.size() + " updateProperties calls failed! Last error: "
+					+ lastError));
+		}
+
+		return throughput;
+	}
+
+	/**
+	 * Updates the documents with bulkUpdateProperties in batches of the given
+	 * size and returns the documents per second.
+	 */
+	private double updateBulk(Session session, ObjectType type, List<String> ids, int batchSize) {
+		String repositoryId = session.getRepositoryInfo().getId();
+		ObjectService objectService = session.getBinding().getObjectService();
+		Properties properties = createProperties(session, type, "batch-" + batchSize);
+
+		LatencyHistogram latencies = new LatencyHistogram();
+		int updated = 0;
+		int failedBatches = 0;
+		String lastError = null;
+
+		long start = System.nanoTime();
+		for (int offset = 0; offset < ids.size(); offset += batchSize) {
+			List<BulkUpdateObjectIdAndChangeToken> batch = createBatch(ids.subList(offset,
+					Math.min(offset + batchSize, ids.size())));
+
+			long callStart = System.nanoTime();
+			try {
+				List<BulkUpdateObjectIdAndChangeToken> result = objectService.bulkUpdateProperties(repositoryId,
+						batch, properties, null, null, null);
+				latencies.recordSince(callStart);
+				updated += result == null ? 0 : result.size();
+			} catch (CmisBaseException e) {
+				failedBatches++;
+				lastError = e.toString();
+			}
+		}
+		long time = (System.nanoTime() - start) / 1000L;
+
+		double throughput = updated * 1000000.0 / Math.max(1, time);
+		addResult(createResult(INFO, String.format(Locale.ENGLISH,
+				"bulkUpdateProperties in batches of %d: %d documents in %s ms, %.1f documents/s, "
+						+ "batch p50 %s ms, p90 %s ms, max %s ms",
+				batchSize, updated, LatencyHistogram.formatMillis(time), throughput,
+				LatencyHistogram.formatMillis(latencies.getPercentile(50)),
+				LatencyHistogram.formatMillis(latencies.getPercentile(90)),
+				LatencyHistogram.formatMillis(latencies.getMax()))));
+
+		if (failedBatches > 0) {
+			addResult(createResult(WARNING, failedBatches + " batches of " + batchSize
+					+ " documents failed! Last error: " + lastError));
+		} else if (updated != ids.size()) {
+			addResult(createResult(WARNING, "bulkUpdateProperties in batches of " + batchSize + " reported "
+					+ updated + " of " + ids.size() + " documents as updated!"));
+		}
+
+		return failedBatches > 0 ? 0 : throughput;
+	}
+
+	/**
+	 * Sends a batch that contains a deleted document. The repository should
+	 * update the other documents and leave the deleted one out of the result.
+	 */
+	private void checkPartialFailure(Session session, Folder folder, ObjectType type, List<String> ids) {
+		String deletedId = createDocuments(session, folder, "bulk-deleted-", 1).get(0).getId();
+		session.getBinding().getObjectService().deleteObject(session.getRepositoryInfo().getId(), deletedId,
+				Boolean.TRUE, null);
+
+		List<String> batchIds = new ArrayList<String>(ids.subList(0, Math.min(PARTIAL_BATCH, ids.size())));
+		batchIds.add(batchIds.size() / 2, deletedId);
+
+		String value = "partial";
+		List<BulkUpdateObjectIdAndChangeToken> result;
+		try {
+			result = session.getBinding().getObjectService().bulkUpdateProperties(
+					session.getRepositoryInfo().getId(), createBatch(batchIds), createProperties(session, type, value),
+					null, null, null);
+		} catch (CmisBaseException e) {
+			int applied = countDescriptions(session, batchIds, deletedId, value);
+			addResult(createResult(applied > 0 ? WARNING : INFO, "A batch with a deleted document fails completely ("
+					+ e.getClass().getSimpleName() + "), but " + applied + " of " + (batchIds.size() - 1)
+					+ " valid documents were updated. "
+					+ (applied > 0 ? "Clients cannot tell which updates were applied!"
+							: "Clients have to retry without the failed document.")));
+			return;
+		}
+
+		Set<String> reported = new HashSet<String>();
+		if (result != null) {
+			for (BulkUpdateObjectIdAndChangeToken entry : result) {
+				reported.add(entry.getId());
+			}
+		}
+
+		if (reported.contains(deletedId)) {
+			addResult(createResult(WARNING, "bulkUpdateProperties reported a deleted document as updated!"));
+		}
+
+		int applied = countDescriptions(session, batchIds, deletedId, value);
+		int expected = batchIds.size() - 1;
+		if (applied != expected || reported.size() != expected) {
+			addResult(createResult(WARNING, String.format(Locale.ENGLISH,
+					"A batch with a deleted document reported %d and updated %d of %d valid documents!",
+					reported.size(), applied, expected)));
+		} else {
+			addResult(createResult(INFO, "A batch with a deleted document updates all " + expected
+					+ " valid documents and leaves the deleted one out of the result."));
+		}
+	}
+
+	/**
+	 * Counts the documents that have the given description.
+	 */
+	private static int countDescriptions(Session session, List<String> ids, String excludedId, String value) {
+		OperationContext context = ReadOnlyFixture.createScanContext();
+		context.setFilter(new HashSet<String>(Arrays.asList(PropertyIds.OBJECT_ID, PropertyIds.OBJECT_TYPE_ID,
+				PropertyIds.BASE_TYPE_ID, PropertyIds.DESCRIPTION)));
+
+		int result = 0;
+		for (String id : ids) {
+			if (id.equals(excludedId)) {
+				continue;
+			}
+
+			Object description = session.getObject(id, context).getPropertyValue(PropertyIds.DESCRIPTION);
+			if (value.equals(description)) {
+				result++;
+			}
+		}
+
+		return result;
+	}
+
+	private static Properties createProperties(Session session, ObjectType type, String description) {
+		return session.getObjectFactory().convertProperties(
+				Collections.singletonMap(PropertyIds.DESCRIPTION, (Object) description), type, null,
+				Collections.singleton(Updatability.READWRITE));
+	}
+
+	/**
+	 * Creates a batch without change tokens, so that all rounds update the
+	 * same documents without refetching them.
+	 */
+	private static List<BulkUpdateObjectIdAndChangeToken> createBatch(List<String> ids) {
+		List<BulkUpdateObjectIdAndChangeToken> result = new ArrayList<BulkUpdateObjectIdAndChangeToken>(ids.size());
+		for (String id : ids) {
+			result.add(new BulkUpdateObjectIdAndChangeTokenImpl(id, null));
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readwrite;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.ContentStream;
+
+import com.sap.sdc.tck.corprep.bench.ByteSize;
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+import com.sap.sdc.tck.corprep.tests.GeneratedInputStream;
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+
+public class SDCBulkUploadTest extends AbstractSDCTest {
+
+	/** Session parameter with the number of documents to create. */
+	public static final String DOCUMENTS = "com.sap.sdc.tck.upload.documents";
+
+	/** Session parameter with the number of concurrent workers. */
+	public static final String WORKERS = "com.sap.sdc.tck.upload.workers";
+
+	/**
+	 * Session parameter with the size distribution, a comma separated list
+	 * of sizes and their weights, for example {@code 4k:60,256k:30,4m:10}.
+	 */
+	public static final String SIZES = "com.sap.sdc.tck.upload.sizes";
+
+	private static final int DEFAULT_DOCUMENTS = 100;
+	private static final int DEFAULT_WORKERS = 4;
+	private static final String DEFAULT_SIZES = "4k:60,256k:30,4m:10";
+	private static final long SEED = 20170101L;
+	private static final double MB = 1024.0 * 1024.0;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Bulk Upload Test");
+		setDescription("Creates many documents with generated content from concurrent workers and measures the upload throughput.");
+	}
+
+	@Override
+	public void run(final Session session) {
+		List<long[]> distribution = getSizes();
+		int count = getIntParameter(DOCUMENTS, DEFAULT_DOCUMENTS);
+		int workers = Math.min(getIntParameter(WORKERS, DEFAULT_WORKERS), count);
+
+		// the same sizes in every run
+		final long[] sizes = new long[count];
+		long totalWeight = 0;
+		for (long[] entry : distribution) {
+			totalWeight += entry[1];
+		}
+		Random random = new Random(SEED);
+		for (int i = 0; i < count; i++) {
+			long r = (long) (random.nextDouble() * totalWeight);
+			for (long[] entry : distribution) {
+				r -= entry[1];
+				if (r < 0) {
+					sizes[i] = entry[0];
+					break;
+				}
+			}
+		}
+
+		final Map<Long, LatencyHistogram> latencies = new HashMap<Long, LatencyHistogram>();
+		for (long[] entry : distribution) {
+			latencies.put(entry[0], new LatencyHistogram());
+		}
+
+		try {
+			final Folder testFolder = createTestFolder(session);
+			final AtomicInteger next = new AtomicInteger();
+			final AtomicInteger errors = new AtomicInteger();
+			final String[] lastError = new String[1];
+
+			long start = System.nanoTime();
+			ExecutorService executor = Executors.newFixedThreadPool(workers);
+			for (int w = 0; w < workers; w++) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						int i;
+						while ((i = next.getAndIncrement()) < sizes.length) {
+							long createStart = System.nanoTime();
+							try {
+								upload(session, testFolder, i, sizes[i]);
+								latencies.get(sizes[i]).recordSince(createStart);
+							} catch (RuntimeException e) {
+								errors.incrementAndGet();
+								synchronized (lastError) {
+									lastError[0] = e.toString();
+								}
+							}
+						}
+					}
+				});
+			}
+			if (!awaitWorkers(executor, "The uploads")) {
+				return;
+			}
+			long time = (System.nanoTime() - start) / 1000L;
+
+			long bytes = 0;
+			int created = 0;
+			for (long[] entry : distribution) {
+				LatencyHistogram histogram = latencies.get(entry[0]);
+				if (histogram.getCount() == 0) {
+					continue;
+				}
+
+				bytes += entry[0] * histogram.getCount();
+				created += histogram.getCount();
+
+				addResult(createResult(INFO, String.format(Locale.ENGLISH,
+						"%s documents: %d created, p50 %s ms, p90 %s ms, p99 %s ms, max %s ms, %.2f MB/s per upload at p50",
+						ByteSize.format(entry[0]), histogram.getCount(),
+						LatencyHistogram.formatMillis(histogram.getPercentile(50)),
+						LatencyHistogram.formatMillis(histogram.getPercentile(90)),
+						LatencyHistogram.formatMillis(histogram.getPercentile(99)),
+						LatencyHistogram.formatMillis(histogram.getMax()),
+						entry[0] / MB * 1000000.0 / Math.max(1, histogram.getPercentile(50)))));
+			}
+
+			addResult(createResult(INFO, String.format(Locale.ENGLISH,
+					"%d documents (%.1f MB) with %d workers in %s ms: %.1f documents/s, %.2f MB/s, %d errors",
+					created, bytes / MB, workers, LatencyHistogram.formatMillis(time),
+					created * 1000000.0 / Math.max(1, time), bytes / MB * 1000000.0 / Math.max(1, time),
+					errors.get())));
+
+			if (errors.get() > 0) {
+				addResult(createResult(WARNING, errors.get() + " of " + count + " uploads failed! Last error: "
+						+ lastError[0]));
+			}
+		} finally {
+			deleteTestFolder();
+		}
+	}
+
+	private void upload(Session session, Folder folder, int index, long size) {
+		String name = "upload-" + index + ".bin";
+
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(PropertyIds.NAME, name);
+		properties.put(PropertyIds.OBJECT_TYPE_ID, getDocumentTestTypeId());
+
+		ContentStream contentStream = session.getObjectFactory().createContentStream(name, size,
+				"application/octet-stream", new GeneratedInputStream(SEED + index, size));
+
+		folder.createDocument(properties, contentStream, null, null, null, null, ReadOnlyFixture.createScanContext());
+	}
+
+	/**
+	 * Returns the sizes and weights of the size distribution.
+	 */
+	private List<long[]> getSizes() {
+		List<long[]> result = parseSizes(getParameters().get(SIZES));
+		if (result.isEmpty()) {
+			result = parseSizes(DEFAULT_SIZES);
+		}
+
+		return result;
+	}
+
+	private static List<long[]> parseSizes(String value) {
+		List<long[]> result = new ArrayList<long[]>();
+		if (value == null) {
+			return result;
+		}
+
+		for (String entry : value.split(",")) {
+			String[] parts = entry.trim().split(":");
+			try {
+				long size = ByteSize.parse(parts[0]);
+				long weight = parts.length > 1 ? Long.parseLong(parts[1].trim()) : 1;
+				if (size < 0 || weight < 1) {
+					continue;
+				}
+
+				boolean merged = false;
+				for (long[] existing : result) {
+					if (existing[0] == size) {
+						existing[1] += weight;
+						merged = true;
+					}
+				}
+				if (!merged) {
+					result.add(new long[] { size, weight });
+				}
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+
+		return result;
+	}
+}
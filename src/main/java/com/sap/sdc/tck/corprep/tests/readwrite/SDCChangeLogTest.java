@@ -0,0 +1,255 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readwrite;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.chemistry.opencmis.client.api.ChangeEvent;
+import org.apache.chemistry.opencmis.client.api.ChangeEvents;
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.QueryResult;
+import org.apache.chemistry.opencmis.client.api.QueryStatement;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.data.RepositoryInfo;
+import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
+import org.apache.chemistry.opencmis.commons.enums.CapabilityChanges;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+
+public class SDCChangeLogTest extends AbstractSDCTest {
+
+	private static final int[] PAGE_SIZES = { 100, 1000, 5000 };
+	private static final int MAX_EVENTS = 10000;
+	private static final int DELTA_PAGE_SIZE = 1000;
+	private static final int CHANGES = 20;
+
+	private static final long VISIBILITY_TIMEOUT = 30000;
+	private static final long POLL_INTERVAL = 250;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Change Log Test");
+		setDescription("Checks the change log capabilities and compares the change log based sync with the query based delta sync.");
+	}
+
+	@Override
+	public void run(Session session) {
+		// the repository info of the session is cached, the token must be fresh
+		RepositoryInfo info = getFreshRepositoryInfo(session);
+
+		CapabilityChanges capability = info.getCapabilities() == null ? null
+				: info.getCapabilities().getChangesCapability();
+		List<BaseTypeId> changesOnType = info.getChangesOnType();
+
+		addResult(createResult(INFO, "Change log capability: " + capability + ", changes incomplete: "
+				+ info.getChangesIncomplete() + ", changes on types: " + changesOnType + ", latest change log token: "
+				+ info.getLatestChangeLogToken()));
+
+		if (capability == null || capability == CapabilityChanges.NONE) {
+			addResult(createResult(INFO, "Repository has no change log. Clients have to use the query based sync."));
+			return;
+		}
+
+		if (info.getLatestChangeLogToken() == null) {
+			addResult(createResult(WARNING, "Repository has a change log but does not provide a latest change log token! "
+					+ "Clients cannot use it for incremental sync."));
+			return;
+		}
+
+		boolean usable = true;
+		if (Boolean.TRUE.equals(info.getChangesIncomplete())) {
+			addResult(createResult(WARNING, "The change log is incomplete. "
+					+ "Clients cannot rely on it and have to use the query based sync."));
+			usable = false;
+		}
+
+		if (changesOnType != null && !changesOnType.isEmpty() && !changesOnType.contains(BaseTypeId.CMIS_DOCUMENT)) {
+			addResult(createResult(WARNING, "The change log does not contain document changes. "
+					+ "Clients cannot use it for sync."));
+			usable = false;
+		}
+
+		// throughput from the start of the log
+		for (int pageSize : PAGE_SIZES) {
+			LogRead read;
+			try {
+				read = readLog(session, null, pageSize, MAX_EVENTS, null);
+			} catch (Exception e) {
+				addResult(createResult(INFO, "Reading the change log in pages of " + pageSize
+						+ " events failed: " + e.toString()));
+				break;
+			}
+
+			addResult(createResult(INFO, String.format(Locale.ENGLISH,
+					"Change log in pages of %d: %d events%s in %d pages, %s ms, %.0f events/s", pageSize,
+					read.events, read.events >= MAX_EVENTS ? " (stopped at " + MAX_EVENTS + ")" : "", read.pages,
+					LatencyHistogram.formatMillis(read.time), read.events * 1000000.0 / Math.max(1, read.time))));
+		}
+
+		String startToken = info.getLatestChangeLogToken();
+
+		try {
+			Folder testFolder = createTestFolder(session);
+			List<Document> documents = createDocuments(session, testFolder, "changed-", CHANGES);
+			long writeEnd = System.nanoTime();
+
+			Set<String> pending = new HashSet<String>();
+			GregorianCalendar watermark = null;
+			for (Document doc : documents) {
+				pending.add(doc.getId());
+				GregorianCalendar modified = doc.getLastModificationDate();
+				if (modified != null && (watermark == null || modified.before(watermark))) {
+					watermark = modified;
+				}
+			}
+
+			// write to visibility
+			String token = startToken;
+			int polls = 0;
+			while (!pending.isEmpty() && System.nanoTime() - writeEnd < VISIBILITY_TIMEOUT * 1000000L) {
+				if (polls > 0) {
+					sleep(POLL_INTERVAL);
+				}
+				polls++;
+				token = readLog(session, token, DELTA_PAGE_SIZE, Integer.MAX_VALUE, pending).latestToken;
+			}
+			long visibility = (System.nanoTime() - writeEnd) / 1000L;
+
+			if (!pending.isEmpty()) {
+				addResult(createResult(WARNING, String.format(Locale.ENGLISH,
+						"%d of %d new documents did not appear in the change log within %d s! "
+								+ "Clients cannot use it for sync.",
+						pending.size(), CHANGES, VISIBILITY_TIMEOUT / 1000)));
+				usable = false;
+			} else {
+				addResult(createResult(INFO, String.format(Locale.ENGLISH,
+						"All %d new documents appeared in the change log %s ms after the last write (%d polls)",
+						CHANGES, LatencyHistogram.formatMillis(visibility), polls)));
+			}
+
+			// delta sync cost, change log versus query
+			LogRead delta = readLog(session, startToken, DELTA_PAGE_SIZE, Integer.MAX_VALUE, null);
+			addResult(createResult(INFO, String.format(Locale.ENGLISH,
+					"Delta sync via change log: %d events in %s ms (the change log covers the whole repository)",
+					delta.events, LatencyHistogram.formatMillis(delta.time))));
+
+			long queryTime = -1;
+			if (supportsQuery(session) && !isFulltextOnly(session) && watermark != null) {
+				QueryStatement stmt = session.createQueryStatement("SELECT cmis:objectId FROM cmis:document "
+						+ "WHERE in_tree(?) AND cmis:lastModificationDate >= TIMESTAMP ?");
+				stmt.setString(1, testFolder.getId());
+				stmt.setDateTime(2, watermark);
+
+				OperationContext context = session.createOperationContext();
+				context.setIncludeAllowableActions(false);
+				context.setCacheEnabled(false);
+				context.setMaxItemsPerPage(DELTA_PAGE_SIZE);
+
+				int results = 0;
+				long start = System.nanoTime();
+				for (Iterator<QueryResult> it = session.query(stmt.toQueryString(), false, context).iterator(); it
+						.hasNext();) {
+					it.next();
+					results++;
+				}
+				queryTime = (System.nanoTime() - start) / 1000L;
+
+				addResult(createResult(INFO, String.format(Locale.ENGLISH,
+						"Delta sync via query: %d results in %s ms, the change log takes %.1fx the time of the query",
+						results, LatencyHistogram.formatMillis(queryTime), (double) delta.time / Math.max(1, queryTime))));
+			}
+
+			if (!usable) {
+				addResult(createResult(INFO, "Recommended sync strategy: query"));
+			} else if (queryTime >= 0 && queryTime < delta.time) {
+				addResult(createResult(INFO, "Recommended sync strategy: query (the change log works but is slower)"));
+			} else {
+				addResult(createResult(INFO, "Recommended sync strategy: change log"));
+			}
+		} finally {
+			deleteTestFolder();
+		}
+	}
+
+	private RepositoryInfo getFreshRepositoryInfo(Session session) {
+		String repositoryId = session.getRepositoryInfo().getId();
+		session.getBinding().clearRepositoryCache(repositoryId);
+		return session.getBinding().getRepositoryService().getRepositoryInfo(repositoryId, null);
+	}
+
+	/**
+	 * Pages through the change log from the given token until no more events
+	 * are available or the maximum is reached. Object IDs that show up in the
+	 * log are removed from the given set.
+	 */
+	private LogRead readLog(Session session, String token, int pageSize, int maxEvents, Set<String> pending) {
+		LogRead read = new LogRead();
+		read.latestToken = token;
+
+		long start = System.nanoTime();
+		while (read.events < maxEvents) {
+			ChangeEvents page = session.getContentChanges(read.latestToken, false, pageSize);
+			read.pages++;
+
+			for (ChangeEvent event : page.getChangeEvents()) {
+				read.events++;
+				if (pending != null) {
+					pending.remove(event.getObjectId());
+				}
+			}
+
+			String next = page.getLatestChangeLogToken();
+			if (!page.getHasMoreItems() || next == null || next.equals(read.latestToken)) {
+				if (next != null) {
+					read.latestToken = next;
+				}
+				break;
+			}
+			read.latestToken = next;
+		}
+		read.time = (System.nanoTime() - start) / 1000L;
+
+		return read;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class LogRead {
+		String latestToken;
+		int events;
+		int pages;
+		long time;
+	}
+}
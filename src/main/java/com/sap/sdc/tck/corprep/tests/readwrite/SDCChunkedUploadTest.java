@@ -0,0 +1,501 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readwrite;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.SKIPPED;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.UNEXPECTED_EXCEPTION;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.ContentStream;
+import org.apache.chemistry.opencmis.commons.enums.CmisVersion;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.impl.IOUtils;
+import org.apache.chemistry.opencmis.commons.spi.Holder;
+import org.apache.chemistry.opencmis.commons.spi.ObjectService;
+
+import com.sap.sdc.tck.corprep.bench.ByteSize;
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+import com.sap.sdc.tck.corprep.tests.GeneratedInputStream;
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+
+public class SDCChunkedUploadTest extends AbstractSDCTest {
+
+	/** Session parameter with the size of the uploaded file, for example 4g. */
+	public static final String SIZE = "com.sap.sdc.tck.chunkedUpload.size";
+
+	/** Session parameter with the comma separated chunk sizes. */
+	public static final String CHUNK_SIZES = "com.sap.sdc.tck.chunkedUpload.chunkSizes";
+
+	private static final String DEFAULT_SIZE = "64m";
+	private static final String DEFAULT_CHUNK_SIZES = "1m,4m,16m";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long SEED = 20170102L;
+	private static final double MB = 1024.0 * 1024.0;
+
+	/** The resume check uploads this many chunks of the smallest size. */
+	private static final int RESUME_CHUNKS = 4;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Chunked Upload Test");
+		setDescription("Uploads a large generated file with setContentStream and appendContentStream in several chunk sizes.");
+	}
+
+	@Override
+	public void run(Session session) {
+		if (session.getRepositoryInfo().getCmisVersion() != CmisVersion.CMIS_1_1) {
+			addResult(createResult(SKIPPED, "Chunked uploads require CMIS 1.1. Test skipped!"));
+			return;
+		}
+
+		long size = getSize();
+		List<Long> chunkSizes = getChunkSizes();
+
+		File file = null;
+		try {
+			file = File.createTempFile("sdc-tck-chunked", ".bin");
+			byte[] expected = generate(file, size);
+
+			Folder testFolder = createTestFolder(session);
+
+			long bestChunkSize = 0;
+			double bestThroughput = 0;
+			for (long chunkSize : chunkSizes) {
+				Upload upload = new Upload(chunkSize);
+				try {
+					upload(session, testFolder, file, size, upload, -1);
+				} catch (CmisBaseException e) {
+					addResult(createResult(WARNING, "Upload in chunks of " + ByteSize.format(chunkSize) + " failed after "
+							+ upload.chunks.getCount() + " chunks: " + e.toString()));
+					continue;
+				}
+
+				double throughput = size / MB * 1000000.0 / Math.max(1, upload.time);
+				addResult(createResult(INFO, String.format(Locale.ENGLISH,
+						"%s in chunks of %s: %d chunks in %s ms, %.2f MB/s, chunk p50 %s ms, p90 %s ms, max %s ms",
+						ByteSize.format(size), ByteSize.format(chunkSize), upload.chunks.getCount(),
+						LatencyHistogram.formatMillis(upload.time), throughput,
+						LatencyHistogram.formatMillis(upload.chunks.getPercentile(50)),
+						LatencyHistogram.formatMillis(upload.chunks.getPercentile(90)),
+						LatencyHistogram.formatMillis(upload.chunks.getMax()))));
+
+				if (verify(session, upload.documentId, expected, size, "chunks of " + ByteSize.format(chunkSize))
+						&& throughput > bestThroughput) {
+					bestThroughput = throughput;
+					bestChunkSize = chunkSize;
+				}
+			}
+
+			if (bestChunkSize > 0) {
+				addResult(createResult(INFO, String.format(Locale.ENGLISH,
+						"Chunk size with the best throughput: %s (%.2f MB/s)", ByteSize.format(bestChunkSize),
+						bestThroughput)));
+			}
+
+			checkResume(session, testFolder, file, size, chunkSizes.get(0));
+		} catch (IOException e) {
+			addResult(createResult(UNEXPECTED_EXCEPTION, "Chunked upload failed: " + e.toString(), e, false));
+		} finally {
+			deleteTestFolder();
+			if (file != null && !file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Uploads the first chunks of the file, lets the upload of one chunk fail
+	 * halfway and resumes at the content length the repository reports.
+	 */
+	private void checkResume(Session session, Folder folder, File file, long size, long chunkSize)
+			throws IOException {
+		long length = Math.min(size, RESUME_CHUNKS * chunkSize);
+		long failAt = (RESUME_CHUNKS / 2) * chunkSize;
+		if (failAt >= length) {
+			addResult(createResult(INFO, "The file is too small to check resuming an interrupted upload."));
+			return;
+		}
+
+		Upload upload = new Upload(chunkSize);
+		try {
+			upload(session, folder, file, length, upload, failAt);
+		} catch (CmisBaseException e) {
+			addResult(createResult(WARNING, "Resuming an interrupted upload failed: " + e.toString()));
+			return;
+		}
+
+		if (upload.resumeLength < 0) {
+			addResult(createResult(WARNING, "After an interrupted chunk the repository does not report the "
+					+ "content length. Clients cannot resume interrupted uploads!"));
+			return;
+		}
+		if (upload.resumeLength < failAt) {
+			addResult(createResult(FAILURE, "After an interrupted chunk the content length dropped from " + failAt
+					+ " to " + upload.resumeLength + " bytes! Previous chunks were lost."));
+			return;
+		}
+
+		addResult(createResult(INFO, upload.resumeLength == failAt
+				? "The repository discarded the interrupted chunk. The upload was resumed at byte " + failAt + "."
+				: "The repository kept " + (upload.resumeLength - failAt) + " bytes of the interrupted chunk. "
+						+ "The upload was resumed at byte " + upload.resumeLength + "."));
+
+		verify(session, upload.documentId, checksum(file, length), length, "the resumed upload");
+	}
+
+	/**
+	 * Creates a document without content and uploads the file in chunks. Each
+	 * chunk is read from a memory mapped region of the file. If
+	 * {@code failAt} is not negative, the chunk that starts there breaks off
+	 * halfway and the upload resumes at the length reported by the repository.
+	 */
+	private void upload(Session session, Folder folder, File file, long size, Upload upload, long failAt)
+			throws IOException {
+		String name = "chunked-" + ByteSize.format(upload.chunkSize).replace(' ', '-') + (failAt < 0 ? "" : "-resume")
+				+ ".bin";
+
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(PropertyIds.NAME, name);
+		properties.put(PropertyIds.OBJECT_TYPE_ID, getDocumentTestTypeId());
+
+		String repositoryId = session.getRepositoryInfo().getId();
+		ObjectService objectService = session.getBinding().getObjectService();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+
+			long start = System.nanoTime();
+			Document doc = folder.createDocument(properties, null, null, null, null, null,
+					ReadOnlyFixture.createScanContext());
+			Holder<String> objectId = new Holder<String>(doc.getId());
+
+			long offset = 0;
+			boolean failed = false;
+			while (offset < size) {
+				long length = Math.min(upload.chunkSize, size - offset);
+				boolean last = offset + length == size;
+				InputStream stream = new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+
+				if (!failed && failAt >= 0 && offset >= failAt) {
+					failed = true;
+					try {
+						objectService.appendContentStream(repositoryId, objectId, null,
+								createContentStream(session, name, length, new BrokenInputStream(stream, length / 2)),
+								last, null);
+					} catch (RuntimeException e) {
+						// expected
+					}
+
+					upload.resumeLength = getContentLength(session, objectId.getValue());
+					if (upload.resumeLength < failAt) {
+						break;
+					}
+					offset = upload.resumeLength;
+					continue;
+				}
+
+				long chunkStart = System.nanoTime();
+				if (offset == 0) {
+					objectService.setContentStream(repositoryId, objectId, Boolean.TRUE, null,
+							createContentStream(session, name, length, stream), null);
+				} else {
+					objectService.appendContentStream(repositoryId, objectId, null,
+							createContentStream(session, name, length, stream), last, null);
+				}
+				upload.chunks.recordSince(chunkStart);
+
+				offset += length;
+			}
+
+			upload.time = (System.nanoTime() - start) / 1000L;
+			upload.documentId = objectId.getValue();
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static ContentStream createContentStream(Session session, String name, long length, InputStream stream) {
+		return session.getObjectFactory().createContentStream(name, length, "application/octet-stream", stream);
+	}
+
+	private static long getContentLength(Session session, String objectId) {
+		OperationContext context = ReadOnlyFixture.createScanContext();
+		context.setFilter(new HashSet<String>(Arrays.asList(PropertyIds.OBJECT_ID, PropertyIds.OBJECT_TYPE_ID,
+				PropertyIds.BASE_TYPE_ID, PropertyIds.CONTENT_STREAM_LENGTH)));
+
+		return ((Document) session.getObject(objectId, context)).getContentStreamLength();
+	}
+
+	/**
+	 * Downloads the content and compares its length and checksum.
+	 */
+	private boolean verify(Session session, String objectId, byte[] expected, long size, String upload)
+			throws IOException {
+		MessageDigest digest = createDigest();
+		long length = 0;
+
+		ContentStream contentStream = session.getContentStream(session.createObjectId(objectId));
+		InputStream stream = contentStream.getStream();
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = stream.read(buffer)) > -1) {
+				digest.update(buffer, 0, n);
+				length += n;
+			}
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+
+		if (length != size) {
+			addResult(createResult(FAILURE, "The content of " + upload + " has " + length + " bytes instead of "
+					+ size + "!"));
+			return false;
+		}
+		if (!Arrays.equals(expected, digest.digest())) {
+			addResult(createResult(FAILURE, "The content of " + upload + " differs from the uploaded file!"));
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Writes the generated content to the file and returns its checksum.
+	 */
+	private static byte[] generate(File file, long size) throws IOException {
+		MessageDigest digest = createDigest();
+		InputStream stream = new GeneratedInputStream(SEED, size);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = stream.read(buffer)) > -1) {
+				digest.update(buffer, 0, n);
+				ByteBuffer bb = ByteBuffer.wrap(buffer, 0, n);
+				while (bb.hasRemaining()) {
+					channel.write(bb);
+				}
+			}
+		} finally {
+			raf.close();
+		}
+
+		return digest.digest();
+	}
+
+	private static byte[] checksum(File file, long length) throws IOException {
+		MessageDigest digest = createDigest();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long remaining = length;
+			while (remaining > 0) {
+				buffer.limit((int) Math.min(BUFFER_SIZE, remaining));
+				int n = channel.read(buffer);
+				if (n < 0) {
+					break;
+				}
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+				remaining -= n;
+			}
+		} finally {
+			raf.close();
+		}
+
+		return digest.digest();
+	}
+
+	private long getSize() {
+		String value = getParameters().get(SIZE);
+		if (value != null) {
+			try {
+				long size = ByteSize.parse(value);
+				if (size > 0) {
+					return size;
+				}
+			} catch (NumberFormatException e) {
+				// reported below
+			}
+
+			addResult(createResult(WARNING, "Invalid value '" + value + "' of " + SIZE + "! Using " + DEFAULT_SIZE
+					+ " instead."));
+		}
+
+		return ByteSize.parse(DEFAULT_SIZE);
+	}
+
+	private List<Long> getChunkSizes() {
+		String value = getParameters().get(CHUNK_SIZES);
+		if (value == null) {
+			value = DEFAULT_CHUNK_SIZES;
+		}
+
+		List<Long> result = new ArrayList<Long>();
+		List<String> invalid = new ArrayList<String>();
+		for (String chunkSize : value.split(",")) {
+			long n = -1;
+			try {
+				n = ByteSize.parse(chunkSize);
+			} catch (NumberFormatException e) {
+				// reported below
+			}
+
+			// a mapped region must not exceed 2 GB
+			if (n > 0 && n <= Integer.MAX_VALUE) {
+				if (!result.contains(n)) {
+					result.add(n);
+				}
+			} else {
+				invalid.add(chunkSize.trim());
+			}
+		}
+
+		if (!invalid.isEmpty()) {
+			addResult(createResult(WARNING, "Invalid values " + invalid + " of " + CHUNK_SIZES + " are ignored!"));
+		}
+		if (result.isEmpty()) {
+			result.add(ByteSize.parse(DEFAULT_CHUNK_SIZES.split(",")[0]));
+		}
+		Collections.sort(result);
+
+		return result;
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private static class Upload {
+		final long chunkSize;
+		final LatencyHistogram chunks = new LatencyHistogram();
+		String documentId;
+		long time;
+		long resumeLength = -1;
+
+		Upload(long chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+	}
+
+	/**
+	 * Reads a memory mapped region of the file.
+	 */
+	private static class MappedInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		MappedInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	/**
+	 * Fails after the given number of bytes, like a dropped connection.
+	 */
+	private static class BrokenInputStream extends InputStream {
+		private final InputStream stream;
+		private long remaining;
+
+		BrokenInputStream(InputStream stream, long breakAfter) {
+			this.stream = stream;
+			this.remaining = breakAfter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				throw new IOException("Simulated connection loss");
+			}
+
+			remaining--;
+			return stream.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				throw new IOException("Simulated connection loss");
+			}
+
+			int n = stream.read(b, off, (int) Math.min(len, remaining));
+			if (n > 0) {
+				remaining -= n;
+			}
+			return n;
+		}
+	}
+}
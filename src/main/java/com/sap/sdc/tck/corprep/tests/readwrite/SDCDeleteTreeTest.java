@@ -0,0 +1,303 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readwrite;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.ObjectId;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.ContentStream;
+import org.apache.chemistry.opencmis.commons.enums.UnfileObject;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisObjectNotFoundException;
+import org.apache.chemistry.opencmis.commons.impl.IOUtils;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+import com.sap.sdc.tck.corprep.tests.ReadOnlyFixture;
+import com.sap.sdc.tck.corprep.tests.TreeCleaner;
+
+public class SDCDeleteTreeTest extends AbstractSDCTest {
+
+	/** Session parameter with the comma separated tree sizes in objects. */
+	public static final String SIZES = "com.sap.sdc.tck.deleteTree.sizes";
+
+	/** Session parameter with the number of workers that build and clean up trees. */
+	public static final String WORKERS = "com.sap.sdc.tck.deleteTree.workers";
+
+	private static final String DEFAULT_SIZES = "100,1000,10000";
+	private static final int DEFAULT_WORKERS = 8;
+	private static final int CLEANUP_RETRIES = 3;
+
+	/** Every folder has this many subfolders and about as many documents. */
+	private static final int FANOUT = 10;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Delete Tree Test");
+		setDescription("Measures deleteTree on trees of increasing size and compares it with a parallel bottom-up cleanup.");
+	}
+
+	@Override
+	public void run(Session session) {
+		List<Integer> sizes = getIntListParameter(SIZES, DEFAULT_SIZES, 1);
+		int workers = getIntParameter(WORKERS, DEFAULT_WORKERS);
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			Folder testFolder = createTestFolder(session);
+			TreeCleaner cleaner = new TreeCleaner(session, workers, CLEANUP_RETRIES);
+
+			double firstPerObject = -1;
+			double lastPerObject = -1;
+			long largestDeleteTree = -1;
+			for (int size : sizes) {
+				Tree tree = buildTree(session, executor, testFolder, "tree-" + size, size);
+				if (tree == null) {
+					return;
+				}
+
+				long time = deleteTree(session, cleaner, tree);
+				if (time < 0) {
+					continue;
+				}
+
+				double perObject = (double) time / tree.objects;
+				if (firstPerObject < 0) {
+					firstPerObject = perObject;
+				}
+				lastPerObject = perObject;
+				largestDeleteTree = time;
+			}
+
+			if (sizes.size() > 1 && firstPerObject > 0 && lastPerObject > 2 * firstPerObject) {
+				addResult(createResult(WARNING, String.format(Locale.ENGLISH,
+						"deleteTree takes %.1fx longer per object on the largest tree than on the smallest tree. "
+								+ "Deleting large trees does not scale!",
+						lastPerObject / firstPerObject)));
+			}
+
+			// the same tree once more, deleted by the parallel cleanup
+			int size = sizes.get(sizes.size() - 1);
+			Tree tree = buildTree(session, executor, testFolder, "cleanup-" + size, size);
+			if (tree == null) {
+				return;
+			}
+
+			TreeCleaner.Result result = cleaner.delete(tree.rootId);
+			addResult(createResult(INFO, String.format(Locale.ENGLISH,
+					"Parallel bottom-up cleanup of %d objects with %d workers: %s ms, %.0f objects/s, "
+							+ "%d deleted, %d failed, %d retries%s",
+					tree.objects, workers, LatencyHistogram.formatMillis(result.getTime() * 1000L),
+					tree.objects * 1000.0 / Math.max(1, result.getTime()), result.getDeleted(), result.getFailed(),
+					result.getRetries(), largestDeleteTree < 0 ? ""
+							: String.format(Locale.ENGLISH, ", %.1fx the speed of deleteTree",
+									(double) largestDeleteTree / Math.max(1, result.getTime() * 1000L)))));
+
+			if (result.getFailed() > 0) {
+				addResult(createResult(WARNING, "The cleanup could not delete " + result.getFailed()
+						+ " objects! First errors: " + result.getErrors()));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+			deleteTestFolder();
+		}
+	}
+
+	/**
+	 * Deletes the tree with deleteTree and returns the time in microseconds,
+	 * or -1 if the tree could not be deleted completely. Leftovers are
+	 * removed with the cleaner.
+	 */
+	private long deleteTree(Session session, TreeCleaner cleaner, Tree tree) throws InterruptedException {
+		Folder root = (Folder) session.getObject(tree.rootId, ReadOnlyFixture.createScanContext());
+
+		List<String> failed;
+		long start = System.nanoTime();
+		try {
+			failed = root.deleteTree(true, UnfileObject.DELETE, true);
+		} catch (CmisBaseException e) {
+			long time = (System.nanoTime() - start) / 1000L;
+			addResult(createResult(WARNING, "deleteTree of " + tree.objects + " objects failed after "
+					+ LatencyHistogram.formatMillis(time) + " ms: " + e.toString()));
+			cleanUp(cleaner, tree);
+			return -1;
+		}
+		long time = (System.nanoTime() - start) / 1000L;
+
+		addResult(createResult(INFO, String.format(Locale.ENGLISH,
+				"%d objects (%d folders, depth %d): built in %s ms, deleteTree in %s ms, %.0f objects/s",
+				tree.objects, tree.folders, tree.depth, LatencyHistogram.formatMillis(tree.buildTime),
+				LatencyHistogram.formatMillis(time), tree.objects * 1000000.0 / Math.max(1, time))));
+
+		boolean exists = true;
+		try {
+			session.getObject(tree.rootId, ReadOnlyFixture.createScanContext());
+		} catch (CmisObjectNotFoundException e) {
+			exists = false;
+		}
+
+		if (failed != null && !failed.isEmpty()) {
+			addResult(createResult(WARNING, "deleteTree of " + tree.objects + " objects reported " + failed.size()
+					+ " objects that could not be deleted!"));
+		} else if (exists) {
+			addResult(createResult(WARNING, "deleteTree of " + tree.objects
+					+ " objects reported no failures, but the tree still exists!"));
+		}
+
+		if (exists) {
+			cleanUp(cleaner, tree);
+			return -1;
+		}
+
+		return time;
+	}
+
+	private void cleanUp(TreeCleaner cleaner, Tree tree) throws InterruptedException {
+		TreeCleaner.Result result = cleaner.delete(tree.rootId);
+		addResult(createResult(result.getFailed() > 0 ? WARNING : INFO, "The cleanup removed the remaining "
+				+ result.getDeleted() + " objects in " + result.getTime() + " ms, " + result.getFailed()
+				+ " objects could not be deleted."));
+	}
+
+	/**
+	 * Builds a tree with about the given number of objects. A tenth of them
+	 * are folders, each with up to {@link #FANOUT} subfolders. The documents
+	 * are spread evenly over all folders. Each level is created in parallel.
+	 */
+	private Tree buildTree(final Session session, ExecutorService executor, Folder parent, String name, int size)
+			throws InterruptedException {
+		final Tree tree = new Tree();
+		tree.folders = Math.max(1, size / FANOUT);
+		tree.objects = size;
+
+		final String folderTypeId = getFolderTestTypeId();
+		final String documentTypeId = getDocumentTestTypeId();
+		final String[] folderIds = new String[tree.folders];
+
+		long start = System.nanoTime();
+		folderIds[0] = session.createFolder(createProperties(name, folderTypeId), parent).getId();
+		tree.rootId = folderIds[0];
+		tree.depth = 1;
+
+		// folder k is the parent of the folders FANOUT * k + 1 to FANOUT * k + FANOUT
+		int levelStart = 1;
+		while (levelStart < tree.folders) {
+			int levelEnd = Math.min(tree.folders, levelStart * FANOUT + 1);
+
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (int k = levelStart; k < levelEnd; k++) {
+				final int index = k;
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						ObjectId parentId = session.createObjectId(folderIds[(index - 1) / FANOUT]);
+						folderIds[index] = session.createFolder(createProperties("folder-" + index, folderTypeId),
+								parentId).getId();
+						return null;
+					}
+				});
+			}
+			if (!invokeAll(executor, tasks, "folders of " + name)) {
+				return null;
+			}
+
+			tree.depth++;
+			levelStart = levelEnd;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int j = 0; j < size - tree.folders; j++) {
+			final int index = j;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					String documentName = "document-" + index + ".txt";
+					byte[] content = IOUtils.toUTF8Bytes("SDC TCK document " + documentName);
+					ContentStream contentStream = session.getObjectFactory().createContentStream(documentName,
+							content.length, "text/plain", new ByteArrayInputStream(content));
+
+					session.createDocument(createProperties(documentName, documentTypeId),
+							session.createObjectId(folderIds[index % folderIds.length]), contentStream, null);
+					return null;
+				}
+			});
+		}
+		if (!invokeAll(executor, tasks, "documents of " + name)) {
+			return null;
+		}
+
+		tree.buildTime = (System.nanoTime() - start) / 1000L;
+
+		return tree;
+	}
+
+	private boolean invokeAll(ExecutorService executor, List<Callable<Void>> tasks, String what)
+			throws InterruptedException {
+		long timeout = getWorkerTimeout();
+		for (Future<Void> future : executor.invokeAll(tasks, timeout, TimeUnit.MILLISECONDS)) {
+			try {
+				future.get();
+			} catch (CancellationException e) {
+				addResult(createResult(FAILURE, "Creating the " + what + " did not finish within " + timeout / 1000
+						+ " seconds and has been cancelled! (" + WORKER_TIMEOUT + ")"));
+				return false;
+			} catch (ExecutionException e) {
+				addResult(createResult(WARNING, "Creating the " + what + " failed: " + e.getCause().toString()));
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static Map<String, Object> createProperties(String name, String typeId) {
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(PropertyIds.NAME, name);
+		properties.put(PropertyIds.OBJECT_TYPE_ID, typeId);
+
+		return properties;
+	}
+
+	private static class Tree {
+		String rootId;
+		int objects;
+		int folders;
+		int depth;
+		long buildTime;
+	}
+}
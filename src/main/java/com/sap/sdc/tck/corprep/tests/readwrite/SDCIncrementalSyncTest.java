@@ -0,0 +1,294 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readwrite;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.QueryResult;
+import org.apache.chemistry.opencmis.client.api.QueryStatement;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+
+public class SDCIncrementalSyncTest extends AbstractSDCTest {
+
+	/** Session parameter with the comma separated tree sizes. */
+	public static final String TREE_SIZES = "com.sap.sdc.tck.sync.treeSizes";
+
+	/**
+	 * Session parameter with the fraction of the smallest tree that is
+	 * changed. The same number of documents is changed in all trees.
+	 */
+	public static final String CHANGE_FRACTION = "com.sap.sdc.tck.sync.changeFraction";
+
+	private static final String DEFAULT_TREE_SIZES = "25,100,400";
+	private static final double DEFAULT_CHANGE_FRACTION = 0.2;
+	private static final int DOCUMENTS_PER_FOLDER = 25;
+	private static final int PAGE_SIZE = 1000;
+
+	/**
+	 * If the delta query cost grows by more than this share of the tree
+	 * growth, the repository most likely scans the whole tree.
+	 */
+	private static final double FULL_SCAN_SHARE = 0.5;
+
+	/** Smaller growths of the delta sync time in microseconds are noise. */
+	private static final long MIN_DELTA_GROWTH = 20000;
+
+	/** Time the query index may take to return the new documents. */
+	private static final long INDEX_TIMEOUT = 30000;
+	private static final long INDEX_POLL_INTERVAL = 1000;
+
+	/** Wait time that puts the changes in a later second than the watermark. */
+	private static final long TIMESTAMP_GRANULARITY = 1100;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Incremental Sync Test");
+		setDescription("Measures how the cost of the delta sync query scales with the tree size.");
+	}
+
+	@Override
+	public void run(Session session) {
+		if (!supportsQuery(session) || isFulltextOnly(session)) {
+			addResult(createResult(WARNING, "Repository does not support metadata queries! Sync will not work!"));
+			return;
+		}
+
+		List<Integer> treeSizes = getIntListParameter(TREE_SIZES, DEFAULT_TREE_SIZES, 1);
+		int changes = Math.max(1, (int) Math.ceil(treeSizes.get(0) * getChangeFraction()));
+
+		try {
+			Folder testFolder = createTestFolder(session);
+
+			long firstDelta = -1;
+			int firstSize = 0;
+			for (int size : treeSizes) {
+				SyncRun run = runSync(session, testFolder, size, changes);
+				if (run == null) {
+					return;
+				}
+
+				addResult(createResult(INFO, String.format(Locale.ENGLISH,
+						"Tree with %d documents: full sync %s ms, delta sync of %d changes %s ms (%d results), "
+								+ "delta costs %.0f%% of a full sync",
+						size, LatencyHistogram.formatMillis(run.fullTime), changes,
+						LatencyHistogram.formatMillis(run.deltaTime), run.deltaResults,
+						run.deltaTime * 100.0 / Math.max(1, run.fullTime))));
+
+				if (firstDelta < 0) {
+					firstDelta = run.deltaTime;
+					firstSize = size;
+				} else {
+					double treeGrowth = (double) size / firstSize;
+					double deltaGrowth = (double) run.deltaTime / Math.max(1, firstDelta);
+
+					addResult(createResult(INFO, String.format(Locale.ENGLISH,
+							"Tree grew %.1fx, delta sync cost grew %.1fx with the same number of changes", treeGrowth,
+							deltaGrowth)));
+
+					if (deltaGrowth - 1 > (treeGrowth - 1) * FULL_SCAN_SHARE
+							&& run.deltaTime - firstDelta > MIN_DELTA_GROWTH) {
+						addResult(createResult(WARNING, String.format(Locale.ENGLISH,
+								"The delta sync cost grows with the tree size (%.1fx for a %.1fx larger tree) "
+										+ "although only %d documents changed. "
+										+ "The repository probably scans the whole tree for every delta sync!",
+								deltaGrowth, treeGrowth, changes)));
+					}
+				}
+			}
+		} finally {
+			deleteTestFolder();
+		}
+	}
+
+	/**
+	 * Creates a tree, syncs it, changes some documents and runs the delta
+	 * query. Returns {@code null} if the delta query missed changes.
+	 */
+	private SyncRun runSync(Session session, Folder testFolder, int size, int changes) {
+		Folder root = createFolder(session, testFolder, "sync-" + size);
+
+		List<Document> documents = new ArrayList<Document>(size);
+		for (int i = 0; documents.size() < size; i++) {
+			Folder folder = createFolder(session, root, "folder-" + i);
+			documents.addAll(createDocuments(session, folder, "doc-",
+					Math.min(DOCUMENTS_PER_FOLDER, size - documents.size())));
+		}
+
+		SyncRun run = new SyncRun();
+
+		// full sync, the watermark is the latest server timestamp
+		QueryStatement fullStmt = session.createQueryStatement(
+				"SELECT cmis:objectId, cmis:lastModificationDate FROM cmis:document WHERE in_tree(?)");
+		fullStmt.setString(1, root.getId());
+
+		// the query is repeated until the index has caught up with the new
+		// documents
+		GregorianCalendar watermark;
+		int fullResults;
+		long start;
+		long deadline = System.currentTimeMillis() + INDEX_TIMEOUT;
+		while (true) {
+			watermark = null;
+			fullResults = 0;
+			start = System.nanoTime();
+			for (Iterator<QueryResult> it = query(session, fullStmt); it.hasNext();) {
+				GregorianCalendar modified = it.next().getPropertyValueByQueryName(
+						PropertyIds.LAST_MODIFICATION_DATE);
+				if (modified != null && (watermark == null || modified.after(watermark))) {
+					watermark = modified;
+				}
+				fullResults++;
+			}
+			run.fullTime = (System.nanoTime() - start) / 1000L;
+
+			if (fullResults >= size || System.currentTimeMillis() >= deadline) {
+				break;
+			}
+
+			if (!waitForIndex()) {
+				return null;
+			}
+		}
+
+		if (fullResults > size) {
+			addResult(createResult(FAILURE, "Full sync query returned " + fullResults + " documents instead of "
+					+ size + "!"));
+			return null;
+		}
+		if (fullResults < size || watermark == null) {
+			addResult(createResult(WARNING, "Full sync query returned only " + fullResults + " of " + size
+					+ " documents after waiting " + INDEX_TIMEOUT / 1000 + " seconds for the query index. "
+					+ "Test stopped!"));
+			return null;
+		}
+
+		// change documents spread over the tree
+		try {
+			Thread.sleep(TIMESTAMP_GRANULARITY);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		for (int i = 0; i < changes; i++) {
+			Document doc = documents.get((int) ((long) i * size / changes));
+			Map<String, Object> properties = new HashMap<String, Object>();
+			properties.put(PropertyIds.NAME, "changed-" + i + ".txt");
+			doc.updateProperties(properties, false);
+		}
+
+		// delta sync
+		QueryStatement deltaStmt = session.createQueryStatement("SELECT cmis:objectId FROM cmis:document "
+				+ "WHERE in_tree(?) AND cmis:lastModificationDate > TIMESTAMP ?");
+		deltaStmt.setString(1, root.getId());
+		deltaStmt.setDateTime(2, watermark);
+
+		// the changes may also take a while to reach the index
+		deadline = System.currentTimeMillis() + INDEX_TIMEOUT;
+		while (true) {
+			run.deltaResults = 0;
+			start = System.nanoTime();
+			for (Iterator<QueryResult> it = query(session, deltaStmt); it.hasNext();) {
+				it.next();
+				run.deltaResults++;
+			}
+			run.deltaTime = (System.nanoTime() - start) / 1000L;
+
+			if (run.deltaResults >= changes || System.currentTimeMillis() >= deadline) {
+				break;
+			}
+
+			if (!waitForIndex()) {
+				return null;
+			}
+		}
+
+		if (run.deltaResults < changes) {
+			addResult(createResult(FAILURE, "Delta sync query returned " + run.deltaResults + " documents after "
+					+ "waiting " + INDEX_TIMEOUT / 1000 + " seconds for the query index, but " + changes
+					+ " documents have been changed! Sync would miss changes."));
+			return null;
+		}
+
+		return run;
+	}
+
+	/**
+	 * Waits before the query is repeated. Returns {@code false} if the test
+	 * has been interrupted.
+	 */
+	private static boolean waitForIndex() {
+		try {
+			Thread.sleep(INDEX_POLL_INTERVAL);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private Iterator<QueryResult> query(Session session, QueryStatement stmt) {
+		OperationContext context = session.createOperationContext();
+		context.setIncludeAllowableActions(false);
+		context.setCacheEnabled(false);
+		context.setMaxItemsPerPage(PAGE_SIZE);
+
+		return session.query(stmt.toQueryString(), false, context).iterator();
+	}
+
+	private double getChangeFraction() {
+		String value = getParameters().get(CHANGE_FRACTION);
+		if (value == null) {
+			return DEFAULT_CHANGE_FRACTION;
+		}
+
+		try {
+			double fraction = Double.parseDouble(value.trim());
+			if (fraction > 0 && fraction <= 1) {
+				return fraction;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+
+		addResult(createResult(WARNING, "Invalid value '" + value + "' of " + CHANGE_FRACTION + "! Using "
+				+ DEFAULT_CHANGE_FRACTION + " instead."));
+		return DEFAULT_CHANGE_FRACTION;
+	}
+
+	private static class SyncRun {
+		long fullTime;
+		long deltaTime;
+		int deltaResults;
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2013-2017, SAP SE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sap.sdc.tck.corprep.tests.readwrite;
+
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.FAILURE;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.INFO;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.SKIPPED;
+import static org.apache.chemistry.opencmis.tck.CmisTestResultStatus.WARNING;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.chemistry.opencmis.client.api.Document;
+import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.ObjectType;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.data.Properties;
+import org.apache.chemistry.opencmis.commons.data.PropertyData;
+import org.apache.chemistry.opencmis.commons.definitions.PropertyDefinition;
+import org.apache.chemistry.opencmis.commons.enums.Updatability;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisUpdateConflictException;
+import org.apache.chemistry.opencmis.commons.spi.Holder;
+import org.apache.chemistry.opencmis.commons.spi.ObjectService;
+
+import com.sap.sdc.tck.corprep.bench.LatencyHistogram;
+import com.sap.sdc.tck.corprep.tests.AbstractSDCTest;
+
+public class SDCWriteContentionTest extends AbstractSDCTest {
+
+	/** Session parameter with the number of shared documents. */
+	public static final String DOCUMENTS = "com.sap.sdc.tck.contention.documents";
+
+	/** Session parameter with the comma separated numbers of writers. */
+	public static final String WRITERS = "com.sap.sdc.tck.contention.writers";
+
+	/** Session parameter with the number of updates each writer commits. */
+	public static final String UPDATES = "com.sap.sdc.tck.contention.updates";
+
+	private static final int DEFAULT_DOCUMENTS = 5;
+	private static final String DEFAULT_WRITERS = "1,2,4,8,16";
+	private static final int DEFAULT_UPDATES = 25;
+	private static final long SEED = 20170103L;
+
+	/** A writer gives up an update after this many conflicts in a row. */
+	private static final int MAX_ATTEMPTS = 100;
+
+	private static final String PROPERTY_FILTER = PropertyIds.OBJECT_ID + "," + PropertyIds.CHANGE_TOKEN + ","
+			+ PropertyIds.DESCRIPTION;
+
+	@Override
+	public void init(Map<String, String> parameters) {
+		super.init(parameters);
+		setName("SDC Write Contention Test");
+		setDescription("Lets concurrent writers update a small set of shared documents with change tokens.");
+	}
+
+	@Override
+	public void run(Session session) {
+		ObjectType type = session.getTypeDefinition(getDocumentTestTypeId());
+		PropertyDefinition<?> description = type.getPropertyDefinitions().get(PropertyIds.DESCRIPTION);
+		if (description == null || description.getUpdatability() != Updatability.READWRITE) {
+			addResult(createResult(SKIPPED, "The type '" + type.getId()
+					+ "' has no updatable cmis:description property. Test skipped!"));
+			return;
+		}
+
+		int count = getIntParameter(DOCUMENTS, DEFAULT_DOCUMENTS);
+		int updates = getIntParameter(UPDATES, DEFAULT_UPDATES);
+		List<Integer> writers = getIntListParameter(WRITERS, DEFAULT_WRITERS, 1);
+
+		try {
+			Folder testFolder = createTestFolder(session);
+			List<Document> documents = createDocuments(session, testFolder, "shared-", count);
+
+			List<String> ids = new ArrayList<String>(count);
+			for (Document doc : documents) {
+				ids.add(doc.getId());
+			}
+
+			boolean changeTokens = readState(session, ids.get(0)).changeToken != null;
+			if (!changeTokens) {
+				addResult(createResult(WARNING, "The repository does not provide change tokens. "
+						+ "Concurrent updates overwrite each other!"));
+			}
+
+			long baseline = -1;
+			for (int n : writers) {
+				Round round = runRound(session, type, ids, n, updates);
+				if (round == null) {
+					// cancelled or interrupted
+					return;
+				}
+
+				int attempts = round.commits.get() + round.conflicts.get();
+				long p50 = round.latencies.getPercentile(50);
+				if (baseline < 0) {
+					baseline = p50;
+				}
+
+				addResult(createResult(INFO, String.format(Locale.ENGLISH,
+						"%d writers on %d documents: %d commits, %d conflicts (%.1f%% of %d attempts), "
+								+ "%.1f commits/s, update p50 %s ms (%.1fx), p90 %s ms, p99 %s ms, max %s ms",
+						n, count, round.commits.get(), round.conflicts.get(),
+						100.0 * round.conflicts.get() / Math.max(1, attempts), attempts,
+						round.commits.get() * 1000000.0 / Math.max(1, round.time), LatencyHistogram.formatMillis(p50),
+						(double) p50 / Math.max(1, baseline),
+						LatencyHistogram.formatMillis(round.latencies.getPercentile(90)),
+						LatencyHistogram.formatMillis(round.latencies.getPercentile(99)),
+						LatencyHistogram.formatMillis(round.latencies.getMax()))));
+
+				if (round.errors.get() > 0) {
+					addResult(createResult(WARNING, round.errors.get() + " updates with " + n
+							+ " writers failed or gave up! Last error: " + round.lastError));
+				}
+
+				// each commit increments one counter, a smaller sum means that
+				// an update based on a stale change token has been accepted
+				long sum = 0;
+				for (String id : ids) {
+					sum += readState(session, id).counter;
+				}
+				long lost = round.start + round.commits.get() - sum;
+				if (lost > 0) {
+					addResult(createResult(changeTokens ? FAILURE : WARNING, lost + " of " + round.commits.get()
+							+ " commits with " + n + " writers were lost! The repository does not detect conflicting updates."));
+				}
+			}
+		} finally {
+			deleteTestFolder();
+		}
+	}
+
+	/**
+	 * Starts the writers and waits until each of them has committed its
+	 * updates. A writer reads the change token and the counter of a random
+	 * document and writes the incremented counter with this change token. On
+	 * a conflict it reads the document again and retries.
+	 */
+	private Round runRound(final Session session, final ObjectType type, final List<String> ids, int writers,
+			final int updates) {
+		final Round round = new Round();
+		for (String id : ids) {
+			round.start += readState(session, id).counter;
+		}
+
+		final String repositoryId = session.getRepositoryInfo().getId();
+		final ObjectService objectService = session.getBinding().getObjectService();
+
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		for (int w = 0; w < writers; w++) {
+			final Random random = new Random(SEED + w);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < updates; i++) {
+						String id = ids.get(random.nextInt(ids.size()));
+						try {
+							update(session, objectService, repositoryId, type, id, round);
+						} catch (RuntimeException e) {
+							round.errors.incrementAndGet();
+							round.lastError = e.toString();
+						}
+					}
+				}
+			});
+		}
+		if (!awaitWorkers(executor, "The " + writers + " writers")) {
+			return null;
+		}
+		round.time = (System.nanoTime() - start) / 1000L;
+
+		return round;
+	}
+
+	private void update(Session session, ObjectService objectService, String repositoryId, ObjectType type,
+			String id, Round round) {
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			State state = readState(session, id);
+			Properties properties = session.getObjectFactory().convertProperties(
+					Collections.singletonMap(PropertyIds.DESCRIPTION, (Object) String.valueOf(state.counter + 1)),
+					type, null, Collections.singleton(Updatability.READWRITE));
+
+			long start = System.nanoTime();
+			try {
+				objectService.updateProperties(repositoryId, new Holder<String>(id),
+						new Holder<String>(state.changeToken), properties, null);
+				round.latencies.recordSince(start);
+				round.commits.incrementAndGet();
+				return;
+			} catch (CmisUpdateConflictException e) {
+				round.latencies.recordSince(start);
+				round.conflicts.incrementAndGet();
+			}
+		}
+
+		throw new CmisUpdateConflictException("Gave up after " + MAX_ATTEMPTS + " conflicts in a row");
+	}
+
+	private static State readState(Session session, String id) {
+		Properties properties = session.getBinding().getObjectService()
+				.getProperties(session.getRepositoryInfo().getId(), id, PROPERTY_FILTER, null);
+
+		State result = new State();
+		PropertyData<?> changeToken = properties.getProperties().get(PropertyIds.CHANGE_TOKEN);
+		if (changeToken != null && changeToken.getFirstValue() != null) {
+			result.changeToken = changeToken.getFirstValue().toString();
+		}
+
+		PropertyData<?> description = properties.getProperties().get(PropertyIds.DESCRIPTION);
+		if (description != null && description.getFirstValue() != null) {
+			try {
+				result.counter = Long.parseLong(description.getFirstValue().toString());
+			} catch (NumberFormatException e) {
+				// not yet a counter
+			}
+		}
+
+		return result;
+	}
+
+	private static class State {
+		String changeToken;
+		long counter;
+	}
+
+	private static class Round {
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final AtomicInteger commits = new AtomicInteger();
+		final AtomicInteger conflicts = new AtomicInteger();
+		final AtomicInteger errors = new AtomicInteger();
+		volatile String lastError;
+		long start;
+		long time;
+	}
+}